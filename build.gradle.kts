@@ -2,6 +2,7 @@ plugins {
     id("io.micronaut.application") version "4.6.1"
     id("com.gradleup.shadow") version "8.3.9"
     id("io.micronaut.aot") version "4.6.1"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 version = "0.1"
@@ -16,11 +17,18 @@ dependencies {
     annotationProcessor("io.micronaut.serde:micronaut-serde-processor")
     annotationProcessor("org.projectlombok:lombok:1.18.42")
     annotationProcessor("io.micronaut.openapi:micronaut-openapi")
+    annotationProcessor("io.micronaut.micrometer:micronaut-micrometer-annotation")
 
     implementation("io.micronaut.serde:micronaut-serde-jackson")
+    implementation("io.micronaut.reactor:micronaut-reactor")
+    implementation("io.micronaut:micronaut-management")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-core")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-annotation")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-registry-prometheus")
     implementation("io.swagger.core.v3:swagger-annotations")
     implementation("io.micronaut.openapi:micronaut-openapi-annotations")
     implementation("org.slf4j:slf4j-api:1.7.25")
+    implementation("org.roaringbitmap:RoaringBitmap:1.3.0")
     implementation("io.swagger.core.v3:swagger-annotations")
     implementation("io.micronaut.openapi:micronaut-openapi-annotations")
 
@@ -75,6 +83,44 @@ tasks.named<io.micronaut.gradle.docker.NativeImageDockerfile>("dockerfileNative"
     jdkVersion = "21"
 }
 
+// ./gradlew jmh -PjmhInclude=LedgerService -PjmhThreads=8
+// results go to build/results/jmh/results.json, compare against a baseline run of the same command
+jmh {
+    includes = listOf(providers.gradleProperty("jmhInclude").getOrElse(".*"))
+    threads = providers.gradleProperty("jmhThreads").getOrElse("1").toInt()
+    fork = 1
+    warmupIterations = 3
+    warmup = "2s"
+    iterations = 5
+    timeOnIteration = "2s"
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+}
+
+// HTTP load against an embedded server on localhost, see com.app.load.LoadTest for the options
+// ./gradlew loadTest -Pload.rate=5000 -Pload.duration=60 -Pload.ledger.engine.mode=SHARDED -Pload.label=sharded
+// results go to build/results/load/<label>.json, compare against a baseline run of the same command
+val load: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations[load.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[load.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+    "loadImplementation"("org.hdrhistogram:HdrHistogram:2.2.2")
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Drives an open-loop HTTP load against the ledger on localhost"
+    classpath = load.runtimeClasspath
+    mainClass = "com.app.load.LoadTest"
+    jvmArgs("-Xms1g", "-Xmx1g")
+    workingDir = projectDir
+    systemProperties(providers.gradlePropertiesPrefixedBy("load.").get())
+}
+
 tasks.withType<JavaCompile>().configureEach {
     options.compilerArgs.add("-parameters")
 }
@@ -0,0 +1,39 @@
+package com.app.account;
+
+import com.app.transaction.Currency;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int accounts;
+
+    private AccountRepository repository;
+    private String[] accountNos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new AccountRepository();
+        accountNos = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNos[i] = String.format("%08d", i);
+            repository.insert(Account.builder().accountNo(accountNos[i]).baseCcy(Currency.GBP).build());
+        }
+    }
+
+    @Benchmark
+    public Object findByAccountNo() {
+        return repository.findByAccountNo(accountNos[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public Object findMissing() {
+        return repository.findByAccountNo("missing");
+    }
+}
@@ -0,0 +1,58 @@
+package com.app.account;
+
+import com.app.transaction.Currency;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of making one posting visible to readers. A publication should cost the same whatever the
+// number of accounts; run with -PjmhThreads=N to see how publications combine under contention.
+// A million accounts do not fit in the default heap of a fork.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Xmx3g")
+public class BalanceViewsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int accounts;
+
+    private BalanceViews views;
+    private Account[] opened;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        views = new BalanceViews();
+        opened = new Account[accounts];
+        final List<Account> batch = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            opened[i] = Account.builder().accountNo(String.format("%08d", i)).baseCcy(Currency.GBP).build();
+            batch.add(opened[i]);
+        }
+        views.publish(views.stage(batch));
+    }
+
+    @Benchmark
+    public Object publishOne() {
+        final var account = opened[ThreadLocalRandom.current().nextInt(accounts)];
+        account.lock();
+        final BalanceViews.Update update;
+        try {
+            account.setBalance(account.getBalance() + 1);
+            account.setVersion(account.getVersion() + 1);
+            update = views.stage(account);
+        } finally {
+            account.unlock();
+        }
+        views.publish(update);
+        return update;
+    }
+
+    @Benchmark
+    public Object readOne() {
+        return views.snapshot().get(opened[ThreadLocalRandom.current().nextInt(accounts)].getViewSlot());
+    }
+}
@@ -0,0 +1,63 @@
+package com.app.api.mapper;
+
+import com.app.account.Account;
+import com.app.transaction.Currency;
+import com.app.transaction.Money;
+import com.app.transaction.Transaction;
+import com.app.transaction.Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionMapperBenchmark {
+
+    @Param({"1000", "1000000"})
+    int history;
+
+    private Account account;
+    private Transaction transaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        account = Account.builder().accountNo("00000001").baseCcy(Currency.GBP).build();
+        account.lock();
+        try {
+            for (int i = 0; i < history; i++) {
+                account.post(Transaction.builder()
+                        .id(Long.toString(i + 1))
+                        .accountNo(account.getAccountNo())
+                        .type(Type.DEPOSIT)
+                        .amount(Money.ofMinor(100, Currency.GBP))
+                        .currency(Currency.GBP)
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+        } finally {
+            account.unlock();
+        }
+        transaction = Transaction.builder()
+                .id("1")
+                .accountNo(account.getAccountNo())
+                .type(Type.DEPOSIT)
+                .amount(Money.ofMinor(100, Currency.GBP))
+                .currency(Currency.GBP)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    @Benchmark
+    public Object fromTransaction() {
+        return TransactionMapper.toDTO(transaction);
+    }
+
+    // the history endpoints map straight from the columns
+    @Benchmark
+    public Object fromColumns() {
+        return TransactionMapper.toDTO(account, ThreadLocalRandom.current().nextInt(history));
+    }
+}
@@ -0,0 +1,108 @@
+package com.app.ledger;
+
+import com.app.api.dto.BatchOperation;
+import com.app.transaction.Currency;
+import io.micronaut.context.ApplicationContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Posting throughput through LedgerService with the journal off, so only the in-memory path is
+// measured. Run with -PjmhThreads=N to see how it scales under contention: fewer accounts means
+// more threads queueing on the same account locks, or on the same shard in sharded mode.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LedgerServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1", "1000"})
+    int accounts;
+
+    // postings already on each account before measuring
+    @Param({"0", "1000"})
+    int history;
+
+    @Param({"LOCKING", "SHARDED"})
+    String mode;
+
+    private ApplicationContext context;
+    private LedgerService ledger;
+    private String[] accountNos;
+    private List<BatchOperation> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ApplicationContext.run(Map.of(
+                "ledger.journal.enabled", false,
+                "ledger.snapshot.enabled", false,
+                "ledger.engine.mode", mode));
+        ledger = context.getBean(LedgerService.class);
+        accountNos = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNos[i] = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            // enough to never run dry during a run
+            ledger.depositIntoAccount(accountNos[i], BigDecimal.valueOf(1_000_000_000), Currency.GBP);
+            for (int j = 1; j < history; j++) {
+                ledger.depositIntoAccount(accountNos[i], AMOUNT, Currency.GBP);
+            }
+        }
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(BatchOperation.builder()
+                    .type(BatchOperation.Kind.TRANSFER)
+                    .account(accountNos[i % accounts])
+                    .toAccount(accountNos[(i + 1) % accounts])
+                    .amount(AMOUNT)
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object deposit() {
+        return ledger.depositIntoAccount(randomAccount(), AMOUNT, Currency.GBP);
+    }
+
+    @Benchmark
+    public Object depositWithConversion() {
+        return ledger.depositIntoAccount(randomAccount(), AMOUNT, Currency.USD);
+    }
+
+    @Benchmark
+    public Object withdraw() {
+        return ledger.withdrawFromAccount(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public Object transfer() {
+        return ledger.transferMoney(randomAccount(), randomAccount(), AMOUNT);
+    }
+
+    // BATCH_SIZE transfers per invocation
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object batchTransfer() {
+        return ledger.postBatch(batch, false);
+    }
+
+    @Benchmark
+    public Object balance() {
+        return ledger.getAccountBalance(randomAccount());
+    }
+
+    private String randomAccount() {
+        return accountNos[ThreadLocalRandom.current().nextInt(accounts)];
+    }
+}
@@ -0,0 +1,36 @@
+package com.app.ledger;
+
+import com.app.transaction.Currency;
+import com.app.transaction.TransactionStore;
+import com.app.transaction.Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Full recomputation of a balance from history, the cost of ledger.verify-balances
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LedgerUtilBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int history;
+
+    @Param({"false", "true"})
+    boolean offHeap;
+
+    private TransactionStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = TransactionStore.create(offHeap);
+        for (int i = 0; i < history; i++) {
+            store.append(i, Type.DEPOSIT, Currency.GBP, 100 + i % 7, 1_700_000_000_000_000L + i, 0);
+        }
+    }
+
+    @Benchmark
+    public Object getBalance() {
+        return LedgerUtil.getBalance(store, Currency.GBP);
+    }
+}
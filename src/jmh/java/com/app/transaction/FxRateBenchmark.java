@@ -0,0 +1,30 @@
+package com.app.transaction;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FxRateBenchmark {
+
+    private final FxRate fxRate = new FxRate();
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        amount = Money.ofMinor(123_456, Currency.GBP);
+    }
+
+    @Benchmark
+    public Money convert() {
+        return fxRate.current().convert(amount, Currency.USD, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public Money convertSameCurrency() {
+        return fxRate.current().convert(amount, Currency.GBP, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,337 @@
+package com.app.load;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Open-loop HTTP load against LedgerApi on an embedded server bound to localhost. Requests are sent
+// at seeded Poisson arrival times whatever the server does, and latency is measured from the time a
+// request was due rather than when it was sent, so a stalled server is charged for every request it
+// held back (coordinated omission). Run with ./gradlew loadTest, options are -Pload.* properties.
+public final class LoadTest {
+
+    enum Operation { OPEN, DEPOSIT, WITHDRAWAL, TRANSFER, BALANCE, HISTORY }
+
+    private static final Pattern ACCOUNT_NO = Pattern.compile("\"accountNo\":\"([0-9]+)\"");
+
+    // opening balance of every account, withdrawals and transfers move cents so none runs dry
+    private static final String FUNDING = "1000000";
+    private static final int SETUP_CONCURRENCY = 64;
+    private static final int FUNDING_BATCH = 1000;
+
+    private final int rate = Integer.getInteger("load.rate", 1000);
+    private final int warmupSeconds = Integer.getInteger("load.warmup", 10);
+    private final int durationSeconds = Integer.getInteger("load.duration", 30);
+    private final int accounts = Integer.getInteger("load.accounts", 10_000);
+    private final double zipfExponent = Double.parseDouble(System.getProperty("load.zipf", "1.0"));
+    private final String mix = System.getProperty("load.mix",
+            "open=1,deposit=35,withdrawal=20,transfer=24,balance=15,history=5");
+    private final long seed = Long.getLong("load.seed", 42);
+    // requests waiting for a response, beyond this the schedule stalls and the wait counts as latency
+    private final int maxInFlight = Integer.getInteger("load.max-in-flight", 4096);
+    private final Path output = Path.of(System.getProperty("load.output", "build/results/load"));
+    private final String label = System.getProperty("load.label", "results");
+
+    private final EnumMap<Operation, Recorder> latency = new EnumMap<>(Operation.class);
+    private final EnumMap<Operation, Recorder> service = new EnumMap<>(Operation.class);
+    private final EnumMap<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private String[] accountNos;
+    private URI base;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+        // the HTTP client keeps selector threads alive
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        final var weights = parseMix(mix);
+        for (var operation : Operation.values()) {
+            latency.put(operation, new Recorder(3));
+            service.put(operation, new Recorder(3));
+            errors.put(operation, new AtomicLong());
+        }
+
+        final var data = Files.createTempDirectory("ledger-load");
+        try (var server = ApplicationContext.run(EmbeddedServer.class, serverProperties(data))) {
+            base = URI.create("http://localhost:" + server.getPort() + "/ledger");
+            System.out.printf("server on %s, opening %d accounts%n", base, accounts);
+            openAccounts();
+
+            final var random = new SplittableRandom(seed);
+            final var zipf = new Zipf(accounts, zipfExponent, random.split());
+            System.out.printf("warming up for %ds at %d req/s%n", warmupSeconds, rate);
+            drive(warmupSeconds, weights, zipf, random);
+            for (var operation : Operation.values()) {
+                latency.get(operation).reset();
+                service.get(operation).reset();
+                errors.get(operation).set(0);
+            }
+
+            System.out.printf("measuring for %ds at %d req/s%n", durationSeconds, rate);
+            final var started = Instant.now();
+            final long elapsed = drive(durationSeconds, weights, zipf, random);
+            write(started, elapsed);
+        } finally {
+            try (Stream<Path> files = Files.walk(data)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // The embedded server keeps its journal in a temporary directory; -Pload.ledger.* and
+    // -Pload.micronaut.* properties override the server's configuration
+    private static Map<String, Object> serverProperties(Path data) {
+        final var properties = new HashMap<String, Object>();
+        properties.put("micronaut.server.host", "localhost");
+        properties.put("micronaut.server.port", -1);
+        properties.put("ledger.journal.directory", data.resolve("journal").toString());
+        properties.put("ledger.snapshot.directory", data.resolve("snapshots").toString());
+        properties.put("ledger.history.directory", data.resolve("history").toString());
+        properties.put("ledger.bulk.directory", data.resolve("bulk").toString());
+        for (var name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("load.ledger.") || name.startsWith("load.micronaut.")) {
+                properties.put(name.substring("load.".length()), System.getProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    // Accounts are opened through the API too, then funded with batches so setup stays short
+    private void openAccounts() throws Exception {
+        accountNos = new String[accounts];
+        final var permits = new Semaphore(SETUP_CONCURRENCY);
+        final var opened = new ArrayList<CompletableFuture<Void>>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            final int index = i;
+            permits.acquire();
+            opened.add(client.sendAsync(post("/accounts?baseCcy=GBP", ""), HttpResponse.BodyHandlers.ofString())
+                    .thenAccept(response -> {
+                        final var matcher = ACCOUNT_NO.matcher(response.body());
+                        if (response.statusCode() != 200 || !matcher.find()) {
+                            throw new IllegalStateException("cannot open an account: " + response.body());
+                        }
+                        accountNos[index] = matcher.group(1);
+                    })
+                    .whenComplete((ignored, failure) -> permits.release()));
+        }
+        CompletableFuture.allOf(opened.toArray(CompletableFuture[]::new)).join();
+
+        for (int from = 0; from < accounts; from += FUNDING_BATCH) {
+            final var body = new StringBuilder("[");
+            for (int i = from; i < Math.min(accounts, from + FUNDING_BATCH); i++) {
+                body.append(i == from ? "" : ",")
+                        .append("{\"type\":\"DEPOSIT\",\"account\":\"").append(accountNos[i])
+                        .append("\",\"amount\":").append(FUNDING).append('}');
+            }
+            final var response = client.send(post("/batch?atomic=true", body.append(']').toString()),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("cannot fund accounts: " + response.body());
+            }
+        }
+    }
+
+    // Sends requests at their scheduled times for the given number of seconds, then waits for the
+    // responses. Returns the nanoseconds from the first request to the last response.
+    private long drive(int seconds, Operation[] weights, Zipf zipf, SplittableRandom random) throws Exception {
+        final var permits = new Semaphore(maxInFlight);
+        final double meanInterval = 1e9 / rate;
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        double due = start;
+        while (due < end) {
+            final long intended = (long) due;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            final var operation = weights[random.nextInt(weights.length)];
+            final var request = request(operation, zipf, random);
+            permits.acquire();
+            final long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                final long now = System.nanoTime();
+                latency.get(operation).recordValue(now - intended);
+                service.get(operation).recordValue(now - sent);
+                if (failure != null || response.statusCode() >= 400) {
+                    errors.get(operation).incrementAndGet();
+                }
+                permits.release();
+            });
+            due += -Math.log(1 - random.nextDouble()) * meanInterval;
+        }
+        permits.acquire(maxInFlight);
+        return System.nanoTime() - start;
+    }
+
+    private HttpRequest request(Operation operation, Zipf zipf, SplittableRandom random) {
+        final var account = accountNos[zipf.next(random)];
+        // amounts of 0.01 to 9.99 keep accounts funded for any realistic run
+        final var amount = String.format(Locale.ROOT, "%d.%02d", random.nextInt(10), 1 + random.nextInt(99));
+        return switch (operation) {
+            case OPEN -> post("/accounts?baseCcy=GBP", "");
+            case DEPOSIT -> post("/accounts/" + account + "/deposit?amount=" + amount + "&currency=GBP", "");
+            case WITHDRAWAL -> post("/accounts/" + account + "/withdrawal?amount=" + amount, "");
+            case TRANSFER -> {
+                var to = accountNos[zipf.next(random)];
+                while (to.equals(account) && accounts > 1) {
+                    to = accountNos[random.nextInt(accounts)];
+                }
+                yield post("/transfer?fromAccount=" + account + "&toAccount=" + to + "&amount=" + amount, "");
+            }
+            case BALANCE -> get("/accounts/" + account + "/balance");
+            case HISTORY -> get("/accounts/" + account + "/transactions?limit=20&order=desc");
+        };
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    // One entry per weight unit, so a uniform pick follows the mix
+    private static Operation[] parseMix(String mix) {
+        final var weights = new ArrayList<Operation>();
+        for (var entry : mix.split(",")) {
+            final var parts = entry.split("=");
+            final var operation = Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) {
+                weights.add(operation);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("load.mix has no weights: " + mix);
+        }
+        return weights.toArray(Operation[]::new);
+    }
+
+    // <label>.json holds the settings and percentiles of every operation, <label>-<operation>.hgrm the
+    // full corrected distribution and <label>.hlog the histograms themselves, for HdrHistogram's tools
+    private void write(Instant started, long elapsed) throws IOException {
+        Files.createDirectories(output);
+        final var json = new StringBuilder();
+        json.append("{\n  \"started\": \"").append(started).append("\",\n")
+                .append("  \"rate\": ").append(rate).append(",\n")
+                .append("  \"durationSeconds\": ").append(durationSeconds).append(",\n")
+                .append("  \"accounts\": ").append(accounts).append(",\n")
+                .append("  \"zipf\": ").append(zipfExponent).append(",\n")
+                .append("  \"mix\": \"").append(mix).append("\",\n")
+                .append("  \"seed\": ").append(seed).append(",\n")
+                .append("  \"operations\": {");
+
+        final var total = new Histogram(3);
+        final var totalService = new Histogram(3);
+        final var histograms = new ArrayList<Histogram>();
+        final List<String> lines = new ArrayList<>();
+        String separator = "\n";
+        for (var operation : Operation.values()) {
+            final var corrected = latency.get(operation).getIntervalHistogram();
+            final var uncorrected = service.get(operation).getIntervalHistogram();
+            if (corrected.getTotalCount() == 0) {
+                continue;
+            }
+            corrected.setTag(operation.name().toLowerCase(Locale.ROOT));
+            histograms.add(corrected);
+            total.add(corrected);
+            totalService.add(uncorrected);
+            json.append(separator);
+            append(json, operation.name().toLowerCase(Locale.ROOT), corrected, uncorrected,
+                    errors.get(operation).get(), elapsed);
+            separator = ",\n";
+            lines.add(summary(corrected.getTag(), corrected, errors.get(operation).get()));
+            try (var out = new PrintStream(output.resolve(label + "-" + corrected.getTag() + ".hgrm").toFile())) {
+                corrected.outputPercentileDistribution(out, 1e6);
+            }
+        }
+        final long totalErrors = errors.values().stream().mapToLong(AtomicLong::get).sum();
+        json.append(separator);
+        append(json, "all", total, totalService, totalErrors, elapsed);
+        json.append("\n  }\n}\n");
+        Files.writeString(output.resolve(label + ".json"), json);
+        try (var out = new PrintStream(output.resolve(label + ".hlog").toFile())) {
+            final var log = new HistogramLogWriter(out);
+            log.outputLogFormatVersion();
+            log.outputLegend();
+            for (var histogram : histograms) {
+                log.outputIntervalHistogram(histogram);
+            }
+        }
+
+        lines.add(summary("all", total, totalErrors));
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms", "errors");
+        lines.forEach(System.out::println);
+        System.out.printf("%d errors, results in %s%n", totalErrors, output.resolve(label + ".json"));
+    }
+
+    private static void append(StringBuilder json, String name, Histogram corrected, Histogram uncorrected,
+                               long errors, long elapsed) {
+        json.append("    \"").append(name).append("\": {")
+                .append("\"count\": ").append(corrected.getTotalCount())
+                .append(", \"errors\": ").append(errors)
+                .append(", \"throughput\": ").append(String.format(Locale.ROOT, "%.1f",
+                        corrected.getTotalCount() * 1e9 / elapsed))
+                .append(", \"latencyMs\": ");
+        percentiles(json, corrected);
+        json.append(", \"serviceTimeMs\": ");
+        percentiles(json, uncorrected);
+        json.append('}');
+    }
+
+    private static void percentiles(StringBuilder json, Histogram histogram) {
+        json.append(String.format(Locale.ROOT,
+                "{\"mean\": %.3f, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"p99.9\": %.3f, \"p99.99\": %.3f, \"max\": %.3f}",
+                histogram.getMean() / 1e6,
+                histogram.getValueAtPercentile(50) / 1e6,
+                histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getValueAtPercentile(99.99) / 1e6,
+                histogram.getMaxValue() / 1e6));
+    }
+
+    private static String summary(String name, Histogram histogram, long errors) {
+        return String.format(Locale.ROOT, "%-10s %10d %10.3f %10.3f %10.3f %10.3f %10d", name,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMaxValue() / 1e6,
+                errors);
+    }
+}
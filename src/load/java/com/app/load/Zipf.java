@@ -0,0 +1,40 @@
+package com.app.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Picks one of n items with probability proportional to 1 / rank^exponent, so a few hot accounts take
+// most of the traffic. An exponent of 0 is uniform. Ranks are shuffled so the hot items are not the
+// first accounts opened, which would also put them on the same shards.
+final class Zipf {
+
+    private final double[] cumulative;
+    private final int[] items;
+
+    Zipf(int n, double exponent, SplittableRandom random) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        items = new int[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int item = items[i];
+            items[i] = items[j];
+            items[j] = item;
+        }
+    }
+
+    int next(SplittableRandom random) {
+        final int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return items[Math.min(rank < 0 ? -rank - 1 : rank, items.length - 1)];
+    }
+}
@@ -1,14 +1,22 @@
 package com.app.account;
 
+import com.app.transaction.ColdSegment;
 import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
+import com.app.transaction.HeapTransactionStore;
+import com.app.transaction.Money;
+import com.app.transaction.TieredHistory;
 import com.app.transaction.Transaction;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.app.transaction.TransactionIndex;
+import com.app.transaction.TransactionStore;
+import lombok.*;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 
 @Data
@@ -19,6 +27,193 @@ public class Account {
     private String id;
     private String accountNo;
     private Currency baseCcy;
+    // guarded by lock
     @Builder.Default
-    private List<Transaction> transactions = new ArrayList<>();
+    private TransactionStore transactions = new HeapTransactionStore();
+    // bitmap indexes over every readable posting, in memory or on disk. Guarded by lock.
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Builder.Default
+    private TransactionIndex index = new TransactionIndex();
+    // running balance in minor units of baseCcy, written under lock and readable without it
+    private volatile long balance;
+    // balance carried by postings no longer held in transactions
+    private long openingBalance;
+    // oldest postings moved to disk, ending just before the first one in transactions. Guarded by lock.
+    @Builder.Default
+    private List<ColdSegment> coldSegments = List.of();
+    // number of postings ever applied, bumped under lock
+    private volatile long version;
+    // id of the newest posting, ids increase within an account. Written under lock.
+    private long lastTransactionId;
+    // set under lock once the account is removed from the repository
+    private volatile boolean closed;
+    // last posting checked by reconciliation and the balance as of it, written under lock
+    private long reconciledSequence;
+    private long reconciledBalance;
+    // position in the read model, assigned when the account is first published and given up once its
+    // removal is staged. Written under lock, readable without it.
+    @Builder.Default
+    private volatile int viewSlot = -1;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Builder.Default
+    private transient ReentrantLock lock = new ReentrantLock();
+
+    // Only a contended acquisition is timed, the uncontended path is a single tryLock
+    public void lock() {
+        if (!lock.tryLock()) {
+            final long start = System.nanoTime();
+            lock.lock();
+            LockStats.contended(System.nanoTime() - start);
+        }
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public Money balance() {
+        return Money.ofMinor(balance, baseCcy);
+    }
+
+    // Append a transaction and apply its amount to the running balance, caller holds the lock.
+    // Nothing changes if the new balance would overflow. Timestamps never go backwards within an
+    // account, a posting stamped before the previous one takes the previous timestamp.
+    public void post(Transaction transaction) {
+        assert lock.isHeldByCurrentThread();
+        final var amount = transaction.getAmount();
+        if (amount.currency() != baseCcy) {
+            throw new IllegalArgumentException("Posting in " + amount.currency() + " to a " + baseCcy + " account");
+        }
+        final long newBalance = Math.addExact(balance, amount.minor());
+        long timestamp = EpochMicros.of(transaction.getTimestamp());
+        final int size = transactions.size();
+        if (size > 0 && timestamp < transactions.timestamp(size - 1)) {
+            timestamp = transactions.timestamp(size - 1);
+            transaction.setTimestamp(EpochMicros.toLocalDateTime(timestamp));
+        }
+        transaction.setSequence(++version);
+        final long id = transaction.getId() == null ? 0 : Long.parseLong(transaction.getId());
+        transactions.append(id, transaction.getType(), transaction.getCurrency(), amount.minor(),
+                timestamp, transaction.getFxVersion());
+        lastTransactionId = Math.max(lastTransactionId, id);
+        index.add(version, transaction.getType(), transaction.getCurrency(), amount.minor());
+        balance = newBalance;
+    }
+
+    // Sequence of the oldest posting still held in transactions, caller holds the lock
+    public long firstSequence() {
+        return version - transactions.size() + 1;
+    }
+
+    // Sequence of the oldest posting still readable, in memory or on disk, caller holds the lock
+    public long firstHistorySequence() {
+        return coldSegments.isEmpty() ? firstSequence() : coldSegments.getFirst().firstSequence();
+    }
+
+    // Run the reader over every readable posting, cold segments first, under the lock, with segments
+    // read from disk only while the lock is released. The segments holding postings in [fromSequence,
+    // toSequence) are loaded up front; a read reaching any other segment releases the lock, loads it
+    // and starts over, so the reader must not act on what it read until it returns. It sees a closed
+    // account before any posting and has to check for one.
+    public <T> T readHistory(long fromSequence, long toSequence, Function<ColdSegment, TransactionStore> loader,
+                             Function<TransactionStore, T> reader) {
+        final var loaded = new HashMap<ColdSegment, TransactionStore>();
+        final List<ColdSegment> wanted;
+        lock();
+        try {
+            wanted = coldSegments.stream()
+                    .filter(segment -> segment.lastSequence() >= fromSequence && segment.firstSequence() < toSequence)
+                    .toList();
+        } finally {
+            unlock();
+        }
+        for (var segment : wanted) {
+            loaded.put(segment, loader.apply(segment));
+        }
+        RuntimeException failed = null;
+        while (true) {
+            final ColdSegment missing;
+            lock();
+            try {
+                return reader.apply(coldSegments.isEmpty() ? transactions : new TieredHistory(coldSegments,
+                        transactions, segment -> {
+                            final var rows = loaded.get(segment);
+                            if (rows == null) {
+                                throw new NotLoaded(segment);
+                            }
+                            return rows;
+                        }));
+            } catch (NotLoaded e) {
+                if (failed != null) {
+                    throw failed;
+                }
+                missing = e.segment;
+            } finally {
+                unlock();
+            }
+            try {
+                loaded.put(missing, loader.apply(missing));
+            } catch (RuntimeException e) {
+                if (!closed) {
+                    throw e;
+                }
+                // a concurrent close deleted it, the reader sees the closed account on the next run
+                failed = e;
+            }
+        }
+    }
+
+    // As above, loading only the segments the reader reaches
+    public <T> T readHistory(Function<ColdSegment, TransactionStore> loader, Function<TransactionStore, T> reader) {
+        return readHistory(0, 0, loader, reader);
+    }
+
+    // Drop the oldest postings from memory once the segment holding them is durable. Their amounts
+    // move into the opening balance and the remaining rows into the given empty store.
+    public void demote(ColdSegment segment, TransactionStore remaining) {
+        assert lock.isHeldByCurrentThread();
+        if (segment.firstSequence() != firstSequence() || segment.count() > transactions.size()) {
+            throw new IllegalStateException("Segment " + segment.path() + " does not start the history of " + accountNo);
+        }
+        long demoted = 0;
+        for (int i = 0; i < segment.count(); i++) {
+            demoted = Math.addExact(demoted, transactions.amount(i));
+        }
+        transactions.copyTo(segment.count(), transactions.size(), remaining);
+        openingBalance = Math.addExact(openingBalance, demoted);
+        transactions = remaining;
+        final var segments = new ArrayList<>(coldSegments);
+        segments.add(segment);
+        coldSegments = List.copyOf(segments);
+    }
+
+    // Map the postings in [from, to) while holding the lock
+    public <T> List<T> readTransactions(int from, int to, IntFunction<T> mapper) {
+        lock.lock();
+        try {
+            final int end = Math.min(to, transactions.size());
+            final var result = new ArrayList<T>(Math.max(0, end - from));
+            for (int i = from; i < end; i++) {
+                result.add(mapper.apply(i));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Thrown out of a read that reached a segment not loaded yet
+    private static final class NotLoaded extends RuntimeException {
+        final transient ColdSegment segment;
+
+        NotLoaded(ColdSegment segment) {
+            super(null, null, false, false);
+            this.segment = segment;
+        }
+    }
 }
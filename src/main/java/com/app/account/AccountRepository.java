@@ -1,31 +1,64 @@
 package com.app.account;
 
+import com.app.ledger.exception.LedgerExceptions;
 import jakarta.inject.Singleton;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
 
 @Singleton
 public class AccountRepository {
 
+    // primary index, keyed by account number
     private final Map<String, Account> map = new ConcurrentHashMap<>();
+    // same accounts in account number order, for scans that page through the ledger
+    private final ConcurrentNavigableMap<String, Account> sorted = new ConcurrentSkipListMap<>();
 
     public Account insert(Account account) {
         if (account.getId() == null) {
             account.setId(UUID.randomUUID().toString());
         }
-        map.put(account.getId(), account);
+        if (map.putIfAbsent(account.getAccountNo(), account) != null) {
+            throw new LedgerExceptions.DuplicateAccountException(account.getAccountNo());
+        }
+        sorted.put(account.getAccountNo(), account);
         return account;
     }
 
+    public Optional<Account> findByAccountNo(String accountNo) {
+        return Optional.ofNullable(map.get(accountNo));
+    }
+
     public List<Account> findAll() {
         return new ArrayList<>(map.values());
     }
 
+    // Live view over the accounts, nothing is copied. Weakly consistent: accounts opened or
+    // deleted while the stream is consumed may or may not be seen.
+    public Stream<Account> streamAll() {
+        return map.values().stream();
+    }
+
+    // Live view over the accounts in account number order, starting at the given number or at the
+    // first account when it is null. Weakly consistent like streamAll.
+    public Collection<Account> findFrom(String accountNo) {
+        return accountNo == null ? sorted.values() : sorted.tailMap(accountNo, true).values();
+    }
+
+    public int count() {
+        return map.size();
+    }
+
     public boolean deleteByAccountNo(String accountNo) {
-        return map.entrySet()
-                .removeIf(account ->
-                    account.getValue().getAccountNo().equals(accountNo));
+        final var removed = map.remove(accountNo);
+        if (removed == null) {
+            return false;
+        }
+        // the number may already belong to a new account
+        sorted.remove(accountNo, removed);
+        return true;
     }
 }
-
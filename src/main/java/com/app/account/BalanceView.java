@@ -0,0 +1,6 @@
+package com.app.account;
+
+import com.app.transaction.Currency;
+
+// An account's balance as of one version, never changes once published
+public record BalanceView(String accountNo, Currency baseCcy, long balance, long version) {}
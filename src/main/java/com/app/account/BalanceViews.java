@@ -0,0 +1,225 @@
+package com.app.account;
+
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Read side of the ledger. Writers stage the state of the accounts they changed while still holding
+// their locks, so changes to one account are queued in the order they happened and changes made
+// together are queued as one. Publishing applies the queue to a persistent trie indexed by account
+// slot, copying only the nodes on the paths it touches, and swaps in a new immutable snapshot. Readers
+// get a consistent point-in-time view of every account from a single volatile read and never wait for
+// a writer, and the work of a publication grows with the accounts it changes, not the accounts there are.
+@Singleton
+public class BalanceViews {
+
+    private static final int SHIFT = 5;
+    private static final int WIDTH = 1 << SHIFT;
+    private static final int MASK = WIDTH - 1;
+
+    // Children are nodes above the bottom level and views at it. A node is only written by the
+    // publication that created it, before the snapshot holding it is published.
+    private static final class Node {
+        private final Object[] children = new Object[WIDTH];
+        private final Object edit;
+
+        private Node(Object edit) {
+            this.edit = edit;
+        }
+
+        private Node copy(Object edit) {
+            final var copy = new Node(edit);
+            System.arraycopy(children, 0, copy.children, 0, WIDTH);
+            return copy;
+        }
+    }
+
+    // The ledger as of one publication
+    public static final class Snapshot {
+        // views indexed by account slot, a null view is a closed or never opened account
+        private final Node root;
+        // levels below the root
+        private final int depth;
+        private final int size;
+        private final long version;
+
+        private Snapshot(Node root, int depth, int size, long version) {
+            this.root = root;
+            this.depth = depth;
+            this.size = size;
+            this.version = version;
+        }
+
+        public BalanceView get(int slot) {
+            if (slot < 0 || !fits(slot, depth)) {
+                return null;
+            }
+            var node = root;
+            for (int level = depth; level > 0; level--) {
+                node = (Node) node.children[(slot >>> (SHIFT * level)) & MASK];
+                if (node == null) {
+                    return null;
+                }
+            }
+            return (BalanceView) node.children[slot & MASK];
+        }
+
+        // open accounts
+        public int size() {
+            return size;
+        }
+
+        // bumped by every publication
+        public long version() {
+            return version;
+        }
+
+        // open accounts by slot, the order they were opened unless slots of closed accounts were reused
+        public Stream<BalanceView> stream() {
+            return stream(root, depth);
+        }
+
+        private static Stream<BalanceView> stream(Node node, int level) {
+            final var children = Arrays.stream(node.children).filter(Objects::nonNull);
+            return level == 0
+                    ? children.map(BalanceView.class::cast)
+                    : children.flatMap(child -> stream((Node) child, level - 1));
+        }
+    }
+
+    // States of accounts changed together
+    public static final class Update {
+        private final int[] slots;
+        // null removes the account
+        private final BalanceView[] views;
+        private volatile boolean visible;
+
+        private Update(int[] slots, BalanceView[] views) {
+            this.slots = slots;
+            this.views = views;
+        }
+    }
+
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    // slots of closed accounts whose removal is published, handed out again before new ones
+    private final Queue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+    private final Queue<Update> staged = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock publishing = new ReentrantLock();
+    private volatile Snapshot current = new Snapshot(new Node(null), 0, 0, 0);
+
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    // Queue the current state of the accounts, the caller holds their locks
+    public Update stage(Account... accounts) {
+        return stage(Arrays.asList(accounts));
+    }
+
+    public Update stage(Collection<Account> accounts) {
+        final var slots = new int[accounts.size()];
+        final var views = new BalanceView[accounts.size()];
+        int count = 0;
+        for (var account : accounts) {
+            int slot = account.getViewSlot();
+            if (account.isClosed()) {
+                if (slot < 0) {
+                    // never published, or its removal is already queued
+                    continue;
+                }
+                // the slot is freed once the removal is published
+                account.setViewSlot(-1);
+            } else if (slot < 0) {
+                final var free = freeSlots.poll();
+                slot = free != null ? free : nextSlot.getAndIncrement();
+                account.setViewSlot(slot);
+            }
+            slots[count] = slot;
+            views[count++] = account.isClosed() ? null : new BalanceView(
+                    account.getAccountNo(), account.getBaseCcy(), account.getBalance(), account.getVersion());
+        }
+        final var update = new Update(Arrays.copyOf(slots, count), Arrays.copyOf(views, count));
+        staged.add(update);
+        return update;
+    }
+
+    // Make the update visible along with everything staged before it. Whoever gets here first
+    // publishes for everyone waiting.
+    public void publish(Update update) {
+        if (update.visible) {
+            return;
+        }
+        publishing.lock();
+        try {
+            if (!update.visible) {
+                apply();
+            }
+        } finally {
+            publishing.unlock();
+        }
+    }
+
+    private void apply() {
+        final var base = current;
+        // nodes created by this publication are changed in place, older ones are copied once
+        final var edit = new Object();
+        var root = base.root;
+        int depth = base.depth;
+        int size = base.size;
+        final List<Update> applied = new ArrayList<>();
+        final List<Integer> freed = new ArrayList<>();
+        Update update;
+        while ((update = staged.poll()) != null) {
+            for (int i = 0; i < update.slots.length; i++) {
+                final int slot = update.slots[i];
+                while (!fits(slot, depth)) {
+                    final var grown = new Node(edit);
+                    grown.children[0] = root;
+                    root = grown;
+                    depth++;
+                }
+                if (root.edit != edit) {
+                    root = root.copy(edit);
+                }
+                var node = root;
+                for (int level = depth; level > 0; level--) {
+                    final int index = (slot >>> (SHIFT * level)) & MASK;
+                    var child = (Node) node.children[index];
+                    if (child == null) {
+                        child = new Node(edit);
+                    } else if (child.edit != edit) {
+                        child = child.copy(edit);
+                    }
+                    node.children[index] = child;
+                    node = child;
+                }
+                final var before = node.children[slot & MASK];
+                final var after = update.views[i];
+                size += (after == null ? 0 : 1) - (before == null ? 0 : 1);
+                node.children[slot & MASK] = after;
+                if (after == null) {
+                    freed.add(slot);
+                }
+            }
+            applied.add(update);
+        }
+        current = new Snapshot(root, depth, size, base.version + 1);
+        freeSlots.addAll(freed);
+        for (var done : applied) {
+            done.visible = true;
+        }
+    }
+
+    private static boolean fits(int slot, int depth) {
+        return ((long) slot >>> (SHIFT * (depth + 1))) == 0;
+    }
+}
@@ -0,0 +1,26 @@
+package com.app.account;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide totals of time spent waiting for contended account locks
+public final class LockStats {
+
+    private static final LongAdder CONTENDED = new LongAdder();
+    private static final LongAdder WAIT_NANOS = new LongAdder();
+
+    private LockStats() {
+    }
+
+    static void contended(long waitNanos) {
+        CONTENDED.increment();
+        WAIT_NANOS.add(waitNanos);
+    }
+
+    public static long contendedCount() {
+        return CONTENDED.sum();
+    }
+
+    public static long waitNanos() {
+        return WAIT_NANOS.sum();
+    }
+}
@@ -13,4 +13,7 @@ public class ApiResponse<T> {
     private String message;
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private T data;
+    // pass back as `after` to fetch the next page, absent on the last page
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 }
\ No newline at end of file
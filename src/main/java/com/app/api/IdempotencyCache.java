@@ -0,0 +1,225 @@
+package com.app.api;
+
+import com.app.api.dto.BatchOperation;
+import com.app.api.dto.IdempotencyStats;
+import com.app.ledger.exception.LedgerBaseException;
+import com.app.ledger.exception.LedgerExceptions;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Remembers the outcome of mutating requests by Idempotency-Key so a retried request gets the
+// original response instead of being executed again. Concurrent requests with the same key wait
+// for the first one. Keys are evicted oldest first, once expired or when the cache is full.
+@Singleton
+public class IdempotencyCache {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // status and body of a completed request, or the ledger error it failed with
+    private record Outcome(HttpStatus status, Object body, LedgerBaseException error) {}
+
+    // the request is the operation followed by its canonical arguments
+    private record Entry(String key, List<Object> request, long createdNanos, CompletableFuture<Outcome> outcome) {}
+
+    private final IdempotencyConfig config;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // entries in insertion order, which is also expiry order
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IdempotencyCache(IdempotencyConfig config) {
+        this.config = config;
+    }
+
+    // Run the action once per key. The operation and its arguments identify the request, reusing a
+    // key for a different request is rejected.
+    public <T> HttpResponse<T> execute(@Nullable String key, String operation, Object[] arguments,
+                                       Supplier<HttpResponse<T>> action) {
+        if (key == null || !config.isEnabled()) {
+            return action.get();
+        }
+        final var entry = new Entry(key, canonical(operation, arguments), System.nanoTime(), new CompletableFuture<>());
+        final var existing = reserve(entry);
+        if (existing != null) {
+            try {
+                return replay(existing.outcome().join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            final var response = action.get();
+            succeeded(entry, response);
+            return response;
+        } catch (RuntimeException e) {
+            failed(entry, e);
+            throw e;
+        }
+    }
+
+    // Same for an action that completes asynchronously, a retry waiting on the first request does
+    // not hold a thread
+    public <T> CompletableFuture<HttpResponse<T>> executeAsync(@Nullable String key, String operation,
+                                                               Object[] arguments,
+                                                               Supplier<CompletableFuture<HttpResponse<T>>> action) {
+        if (key == null || !config.isEnabled()) {
+            return action.get();
+        }
+        final var entry = new Entry(key, canonical(operation, arguments), System.nanoTime(), new CompletableFuture<>());
+        final var existing = reserve(entry);
+        if (existing != null) {
+            return existing.outcome().thenApply(this::replay);
+        }
+        final CompletableFuture<HttpResponse<T>> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            failed(entry, e);
+            throw e;
+        }
+        return response.whenComplete((result, e) -> {
+            if (e == null) {
+                succeeded(entry, result);
+            } else {
+                failed(entry, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+    }
+
+    public IdempotencyStats stats() {
+        return IdempotencyStats.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .size(entries.size())
+                .build();
+    }
+
+    // Drop expired keys, only the head of the queue needs looking at
+    @Scheduled(fixedDelay = "${ledger.idempotency.sweep-interval:1m}")
+    void evictExpired() {
+        Entry head;
+        while ((head = order.peek()) != null && isExpired(head)) {
+            if (order.remove(head) && entries.remove(head.key(), head)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    // Requests are compared whole, not by hash. Amounts compare by value, so 10 and 10.00 are the
+    // same request.
+    private static List<Object> canonical(String operation, Object[] arguments) {
+        final var request = new ArrayList<Object>(arguments.length + 1);
+        request.add(operation);
+        for (var argument : arguments) {
+            request.add(canonical(argument));
+        }
+        return request;
+    }
+
+    private static Object canonical(Object argument) {
+        return switch (argument) {
+            case null -> null;
+            case BigDecimal amount -> amount.stripTrailingZeros();
+            case BatchOperation operation -> BatchOperation.builder()
+                    .type(operation.getType())
+                    .account(operation.getAccount())
+                    .toAccount(operation.getToAccount())
+                    .amount((BigDecimal) canonical(operation.getAmount()))
+                    .currency(operation.getCurrency())
+                    .build();
+            case List<?> list -> list.stream().map(IdempotencyCache::canonical).toList();
+            case Map<?, ?> map -> {
+                final var canonical = new HashMap<Object, Object>();
+                map.forEach((key, value) -> canonical.put(key, canonical(value)));
+                yield canonical;
+            }
+            default -> argument;
+        };
+    }
+
+    // Claim the key for the entry, or return the unexpired entry that already holds it
+    private Entry reserve(Entry entry) {
+        while (true) {
+            final var existing = entries.putIfAbsent(entry.key(), entry);
+            if (existing == null) {
+                break;
+            }
+            if (!isExpired(existing)) {
+                hits.increment();
+                if (!existing.request().equals(entry.request())) {
+                    throw new LedgerExceptions.IdempotencyKeyReusedException(entry.key());
+                }
+                return existing;
+            }
+            if (entries.remove(entry.key(), existing)) {
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        order.add(entry);
+        evictOverflow();
+        return null;
+    }
+
+    private void succeeded(Entry entry, HttpResponse<?> response) {
+        entry.outcome().complete(new Outcome(response.status(), response.body(), null));
+    }
+
+    private void failed(Entry entry, Throwable error) {
+        // client errors are final, server errors may succeed when retried
+        if (error instanceof LedgerBaseException e && e.getStatus().getCode() < 500) {
+            entry.outcome().complete(new Outcome(e.getStatus(), null, e));
+        } else {
+            entries.remove(entry.key(), entry);
+            entry.outcome().completeExceptionally(error);
+        }
+    }
+
+    // Answer a retry with the first request's outcome. A first request that failed without an
+    // answer worth replaying fails the retry the same way.
+    @SuppressWarnings("unchecked")
+    private <T> HttpResponse<T> replay(Outcome outcome) {
+        if (outcome.error() != null) {
+            throw outcome.error();
+        }
+        return HttpResponse.<T>status(outcome.status())
+                .body((T) outcome.body())
+                .header(REPLAYED_HEADER, "true");
+    }
+
+    private void evictOverflow() {
+        while (entries.size() > config.getMaxEntries()) {
+            final var oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (entries.remove(oldest.key(), oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.createdNanos() > config.getTtl().toNanos();
+    }
+}
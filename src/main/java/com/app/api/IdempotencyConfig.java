@@ -0,0 +1,16 @@
+package com.app.api;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("ledger.idempotency")
+public class IdempotencyConfig {
+    private boolean enabled = true;
+    // oldest keys are evicted once the cache holds this many
+    private int maxEntries = 100_000;
+    // how long a response is replayed for its key
+    private Duration ttl = Duration.ofHours(24);
+}
@@ -1,194 +1,608 @@
 package com.app.api;
 
 import com.app.api.dto.AccountBalance;
+import com.app.api.dto.BatchItemResult;
+import com.app.api.dto.BatchOperation;
+import com.app.api.dto.BulkReport;
+import com.app.api.dto.FxRates;
+import com.app.api.dto.IdempotencyStats;
+import com.app.api.dto.ReconciliationReport;
+import com.app.api.dto.ReplicationStatus;
+import com.app.api.dto.SummaryRow;
 import com.app.api.dto.TransactionDTO;
+import com.app.api.mapper.FxRateMapper;
 import com.app.ledger.exception.LedgerBaseException;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.ledger.JournalFollower;
+import com.app.ledger.LedgerAggregates;
+import com.app.ledger.LedgerBulk;
+import com.app.ledger.LedgerMetrics;
+import com.app.ledger.LedgerReconciler;
 import com.app.ledger.LedgerService;
 import com.app.transaction.Currency;
+import com.app.transaction.Type;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
 import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.*;
 import io.micronaut.http.annotation.Error;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.inject.Inject;
+import reactor.core.publisher.Flux;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static com.app.api.LedgerApi.BASE_URL;
 
 @Controller(BASE_URL)
+@ExecuteOn(TaskExecutors.BLOCKING)
 public class LedgerApi {
 
     static final String BASE_URL = "/ledger";
     static final String ACCOUNTS = "/accounts";
+    static final String ACCOUNTS_STREAM = ACCOUNTS + "/stream";
     static final String ACCOUNT = ACCOUNTS + "/{account}";
     static final String BALANCE = ACCOUNT + "/balance";
     static final String TRANSACTIONS = ACCOUNT + "/transactions";
+    static final String TRANSACTIONS_STREAM = TRANSACTIONS + "/stream";
+    static final String TRANSACTIONS_QUERY = "/transactions";
     static final String DEPOSIT = ACCOUNT + "/deposit";
     static final String WITHDRAWAL = ACCOUNT + "/withdrawal";
     static final String TRANSFER = "/transfer";
+    static final String BATCH = "/batch";
+    static final String FX_RATES = "/fx/rates";
+    static final String FX_RATES_VERSION = FX_RATES + "/{version}";
+    static final String REPORT_SUMMARY = "/reports/summary";
+    static final String RECONCILIATION = "/reconciliation";
+    static final String BULK_IMPORT = "/bulk/import";
+    static final String BULK_EXPORT = "/bulk/export";
+    static final String IDEMPOTENCY_STATS = "/idempotency/stats";
+    static final String REPLICATION = "/replication";
+    static final String REPLICATION_PROMOTE = REPLICATION + "/promote";
+
+    private static final String ETAG_EPOCH = Long.toString(System.currentTimeMillis(), 36);
 
     @Inject
     LedgerService ledgerService;
 
+    @Inject
+    IdempotencyCache idempotency;
+
+    @Inject
+    LedgerMetrics metrics;
+
+    @Inject
+    JournalFollower follower;
+
+    @Inject
+    LedgerReconciler reconciler;
+
+    @Inject
+    LedgerBulk bulk;
+
 
     @Post(ACCOUNTS)
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(summary = "Open new account")
-    public HttpResponse<ApiResponse<AccountBalance>> openNewAccount(@QueryValue Currency baseCcy) {
+    public HttpResponse<ApiResponse<AccountBalance>> openNewAccount(
+            @QueryValue Currency baseCcy,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.execute(idempotencyKey, "openNewAccount", new Object[]{baseCcy}, () -> {
+            final var account = ledgerService.openNewAccount(baseCcy);
+
+            ApiResponse<AccountBalance> response =
+                    ApiResponse.<AccountBalance>builder()
+                    .statusCode(HttpStatus.OK.getCode())
+                    .message("Account successfully created")
+                    .data(account)
+                    .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    @Delete(ACCOUNT)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Delete an account")
+    public HttpResponse<ApiResponse<Void>> deleteAccount(
+            @PathVariable String account,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.execute(idempotencyKey, "deleteAccount", new Object[]{account}, () -> {
+            ledgerService.deleteAccount(account);
+
+            ApiResponse<Void> response =
+                    ApiResponse.<Void>builder()
+                    .statusCode(HttpStatus.OK.getCode())
+                    .message("Account successfully deleted")
+                    .data(null)
+                    .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    @Get(BALANCE)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get account balance")
+    public HttpResponse<ApiResponse<AccountBalance>> getAccountBalance(
+            @PathVariable String account,
+            @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+
+        return conditional(ifNoneMatch, ledgerService.accountVersion(account), () -> {
+            final var accountBalance = ledgerService.getAccountBalance(account);
+
+            ApiResponse<AccountBalance> response =
+                    ApiResponse.<AccountBalance>builder()
+                    .statusCode(HttpStatus.OK.getCode())
+                    .message("Account balance successfully retrieved")
+                    .data(accountBalance)
+                    .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    @Get(TRANSACTIONS)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get account transactions history, one page at a time")
+    public HttpResponse<ApiResponse<List<TransactionDTO>>> getTransactionHistory(
+            @PathVariable String account,
+            @QueryValue(defaultValue = "100") int limit,
+            @Nullable @QueryValue String after,
+            @Nullable @QueryValue LocalDateTime from,
+            @Nullable @QueryValue LocalDateTime to,
+            @QueryValue(defaultValue = "asc") String order,
+            @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+
+        // a page is fully determined by its query and the account's version
+        return conditional(ifNoneMatch, ledgerService.accountVersion(account), () -> {
+            final var page = ledgerService.getTransactionHistory(account, after, from, to, limit, newestFirst(order));
+
+            ApiResponse<List<TransactionDTO>> response =
+                    ApiResponse.<List<TransactionDTO>>builder()
+                            .statusCode(HttpStatus.OK.getCode())
+                            .message("Transaction history successfully retrieved")
+                            .data(page.getTransactions())
+                            .nextCursor(page.getNextCursor())
+                            .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    @Get(TRANSACTIONS_QUERY)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Find transactions by type, currency, amount, time and account")
+    public HttpResponse<ApiResponse<List<TransactionDTO>>> queryTransactions(
+            @Nullable @QueryValue String account,
+            @Nullable @QueryValue Type type,
+            @Nullable @QueryValue Currency currency,
+            @Nullable @QueryValue BigDecimal minAmount,
+            @Nullable @QueryValue BigDecimal maxAmount,
+            @Nullable @QueryValue LocalDateTime from,
+            @Nullable @QueryValue LocalDateTime to,
+            @Nullable @QueryValue String after,
+            @QueryValue(defaultValue = "100") int limit,
+            @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+
+        // results can come from any account, so they change with the whole ledger
+        return conditional(ifNoneMatch, ledgerService.ledgerVersion(), () -> {
+            final var page = ledgerService.queryTransactions(account, type, currency, minAmount, maxAmount,
+                    from, to, after, limit);
+
+            ApiResponse<List<TransactionDTO>> response =
+                    ApiResponse.<List<TransactionDTO>>builder()
+                            .statusCode(HttpStatus.OK.getCode())
+                            .message("Transactions successfully retrieved")
+                            .data(page.getTransactions())
+                            .nextCursor(page.getNextCursor())
+                            .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    @Get(ACCOUNTS)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get all accounts and their balances")
+    public HttpResponse<ApiResponse<List<AccountBalance>>> getAllAccountBalances(
+            @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+
+        return conditional(ifNoneMatch, ledgerService.ledgerVersion(), () -> {
+            final var accountBalances = ledgerService.getAllAccounts();
+
+            ApiResponse<List<AccountBalance>> response =
+                    ApiResponse.<List<AccountBalance>>builder()
+                            .statusCode(HttpStatus.OK.getCode())
+                            .message("Accounts successfully retrieved")
+                            .data(accountBalances)
+                            .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    // Streaming variants write each element as soon as it is read instead of building the whole
+    // response first. Elements are not wrapped in ApiResponse; application/json gives one JSON array,
+    // application/x-json-stream one JSON document per element.
+    @Get(ACCOUNTS_STREAM)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_JSON_STREAM})
+    @Operation(summary = "Stream all accounts and their balances")
+    public Flux<AccountBalance> streamAllAccountBalances() {
+        return ledgerService.streamAllAccounts();
+    }
+
+
+    @Get(TRANSACTIONS_STREAM)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_JSON_STREAM})
+    @Operation(summary = "Stream account transactions history")
+    public Flux<TransactionDTO> streamTransactionHistory(
+            @PathVariable String account,
+            @Nullable @QueryValue LocalDateTime from,
+            @Nullable @QueryValue LocalDateTime to,
+            @QueryValue(defaultValue = "asc") String order) {
+        return ledgerService.streamTransactionHistory(account, from, to, newestFirst(order));
+    }
+
+
+    @Post(DEPOSIT)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Deposit money into account")
+    public CompletableFuture<HttpResponse<ApiResponse<TransactionDTO>>> deposit(
+            @PathVariable String account,
+            @QueryValue BigDecimal amount,
+            @QueryValue Currency currency,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.executeAsync(idempotencyKey, "deposit", new Object[]{account, amount, currency}, () ->
+                ledgerService.depositIntoAccountAsync(account, amount, currency).thenApply(transaction -> {
+
+                    ApiResponse<TransactionDTO> response =
+                            ApiResponse.<TransactionDTO>builder()
+                            .statusCode(HttpStatus.OK.getCode())
+                            .message("Deposit successful")
+                            .data(transaction)
+                            .build();
+
+                    return HttpResponse.ok(response);
+                }));
+    }
+
+
+    @Post(WITHDRAWAL)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Withdraw money from account")
+    public CompletableFuture<HttpResponse<ApiResponse<TransactionDTO>>> withdrawal(
+            @PathVariable String account,
+            @QueryValue BigDecimal amount,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.executeAsync(idempotencyKey, "withdrawal", new Object[]{account, amount}, () ->
+                ledgerService.withdrawFromAccountAsync(account, amount).thenApply(transaction -> {
+
+                    ApiResponse<TransactionDTO> response =
+                            ApiResponse.<TransactionDTO>builder()
+                            .statusCode(HttpStatus.OK.getCode())
+                            .message("Withdrawal successful")
+                            .data(transaction)
+                            .build();
+
+                    return HttpResponse.ok(response);
+                }));
+    }
+
+
+    @Post(TRANSFER)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Transfer money between accounts")
+    public CompletableFuture<HttpResponse<ApiResponse<List<TransactionDTO>>>> transfer(
+            @QueryValue String fromAccount,
+            @QueryValue String toAccount,
+            @QueryValue BigDecimal amount,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.executeAsync(idempotencyKey, "transfer", new Object[]{fromAccount, toAccount, amount}, () ->
+                ledgerService.transferMoneyAsync(fromAccount, toAccount, amount).thenApply(transactions -> {
+
+                    ApiResponse<List<TransactionDTO>> response =
+                            ApiResponse.<List<TransactionDTO>>builder()
+                            .statusCode(HttpStatus.OK.getCode())
+                            .message("Transfer successful")
+                            .data(transactions)
+                            .build();
+
+                    return HttpResponse.ok(response);
+                }));
+    }
+
+
+    @Post(BATCH)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Apply a batch of deposits, withdrawals and transfers")
+    public HttpResponse<ApiResponse<List<BatchItemResult>>> batch(
+            @Body List<BatchOperation> operations,
+            @QueryValue(defaultValue = "false") boolean atomic,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.execute(idempotencyKey, "batch", new Object[]{operations, atomic}, () -> {
+            final var results = ledgerService.postBatch(operations, atomic);
+
+            ApiResponse<List<BatchItemResult>> response =
+                    ApiResponse.<List<BatchItemResult>>builder()
+                    .statusCode(HttpStatus.OK.getCode())
+                    .message("Batch processed")
+                    .data(results)
+                    .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
+
+
+    @Get(REPORT_SUMMARY)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Posting counts and totals per hour or day, type and currency")
+    public HttpResponse<ApiResponse<List<SummaryRow>>> getSummary(
+            @Nullable @QueryValue LocalDateTime from,
+            @Nullable @QueryValue LocalDateTime to,
+            @QueryValue(defaultValue = "hour") String granularity) {
 
-        final var account = ledgerService.openNewAccount(baseCcy);
+        final var rows = ledgerService.getSummary(from, to, granularity(granularity));
 
-        ApiResponse<AccountBalance> response =
-                ApiResponse.<AccountBalance>builder()
+        ApiResponse<List<SummaryRow>> response =
+                ApiResponse.<List<SummaryRow>>builder()
+                        .statusCode(HttpStatus.OK.getCode())
+                        .message("Summary successfully retrieved")
+                        .data(rows)
+                        .build();
+
+        return HttpResponse.ok(response);
+    }
+
+
+    @Get(FX_RATES)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get the current FX rates")
+    public HttpResponse<ApiResponse<FxRates>> getFxRates() {
+
+        final var rates = ledgerService.getFxRates(null);
+
+        ApiResponse<FxRates> response =
+                ApiResponse.<FxRates>builder()
                 .statusCode(HttpStatus.OK.getCode())
-                .message("Account successfully created")
-                .data(account)
+                .message("FX rates successfully retrieved")
+                .data(FxRateMapper.toDTO(rates))
                 .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Delete(ACCOUNT)
+    @Get(FX_RATES_VERSION)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Delete an account")
-    public HttpResponse<ApiResponse<Void>> deleteAccount(@PathVariable String account) {
+    @Operation(summary = "Get a past version of the FX rates")
+    public HttpResponse<ApiResponse<FxRates>> getFxRatesVersion(@PathVariable int version) {
 
-        ledgerService.deleteAccount(account);
+        final var rates = ledgerService.getFxRates(version);
 
-        ApiResponse<Void> response =
-                ApiResponse.<Void>builder()
+        ApiResponse<FxRates> response =
+                ApiResponse.<FxRates>builder()
                 .statusCode(HttpStatus.OK.getCode())
-                .message("Account successfully deleted")
-                .data(null)
+                .message("FX rates successfully retrieved")
+                .data(FxRateMapper.toDTO(rates))
                 .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Get(BALANCE)
+    @Put(FX_RATES)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Get account balance")
-    public HttpResponse<ApiResponse<AccountBalance>> getAccountBalance(@PathVariable String account) {
+    @Operation(summary = "Publish new FX rates (admin)")
+    public HttpResponse<ApiResponse<FxRates>> publishFxRates(
+            @Body Map<Currency, Map<Currency, BigDecimal>> rates,
+            @Nullable @Header(IdempotencyCache.HEADER) String idempotencyKey) {
+
+        return idempotency.execute(idempotencyKey, "publishFxRates", new Object[]{rates}, () -> {
+            final var published = ledgerService.publishFxRates(rates);
+
+            ApiResponse<FxRates> response =
+                    ApiResponse.<FxRates>builder()
+                    .statusCode(HttpStatus.OK.getCode())
+                    .message("FX rates successfully published")
+                    .data(FxRateMapper.toDTO(published))
+                    .build();
+
+            return HttpResponse.ok(response);
+        });
+    }
 
-        final var accountBalance = ledgerService.getAccountBalance(account);
 
-        ApiResponse<AccountBalance> response =
-                ApiResponse.<AccountBalance>builder()
+    @Get(RECONCILIATION)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get the report of the latest reconciliation")
+    public HttpResponse<ApiResponse<ReconciliationReport>> getReconciliation() {
+
+        final var report = reconciler.lastReport();
+        if (report == null) {
+            throw new LedgerExceptions.ReconciliationNotRunException();
+        }
+
+        ApiResponse<ReconciliationReport> response =
+                ApiResponse.<ReconciliationReport>builder()
                 .statusCode(HttpStatus.OK.getCode())
-                .message("Account balance successfully retrieved")
-                .data(accountBalance)
+                .message("Reconciliation report successfully retrieved")
+                .data(report)
                 .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Get(TRANSACTIONS)
+    @Post(RECONCILIATION)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Get account transactions history")
-    public HttpResponse<ApiResponse<List<TransactionDTO>>> getTransactionHistory(@PathVariable String account) {
+    @Operation(summary = "Reconcile balances, histories and transfers now (admin)")
+    public HttpResponse<ApiResponse<ReconciliationReport>> reconcile(
+            @QueryValue(defaultValue = "false") boolean full) {
 
-        final var transactions = ledgerService.getTransactionHistory(account);
+        final var report = reconciler.reconcile(full);
 
-        ApiResponse<List<TransactionDTO>> response =
-                ApiResponse.<List<TransactionDTO>>builder()
-                        .statusCode(HttpStatus.OK.getCode())
-                        .message("Transaction history successfully retrieved")
-                        .data(transactions)
-                        .build();
+        ApiResponse<ReconciliationReport> response =
+                ApiResponse.<ReconciliationReport>builder()
+                .statusCode(HttpStatus.OK.getCode())
+                .message("Reconciliation completed")
+                .data(report)
+                .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Get(ACCOUNTS)
+    @Post(BULK_IMPORT)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Get all accounts and their balances")
-    public HttpResponse<ApiResponse<List<AccountBalance>>> getAllAccountBalances() {
+    @Operation(summary = "Import accounts and postings from a CSV file in the bulk directory (admin)")
+    public HttpResponse<ApiResponse<BulkReport>> importCsv(@QueryValue String file) {
 
-        final var accountBalances = ledgerService.getAllAccounts();
+        final var report = bulk.importCsv(file);
 
-        ApiResponse<List<AccountBalance>> response =
-                ApiResponse.<List<AccountBalance>>builder()
-                        .statusCode(HttpStatus.OK.getCode())
-                        .message("Accounts successfully retrieved")
-                        .data(accountBalances)
-                        .build();
+        ApiResponse<BulkReport> response =
+                ApiResponse.<BulkReport>builder()
+                .statusCode(HttpStatus.OK.getCode())
+                .message("Import completed")
+                .data(report)
+                .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Post(DEPOSIT)
+    @Post(BULK_EXPORT)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Deposit money into account")
-    public HttpResponse<ApiResponse<TransactionDTO>> deposit(
-            @PathVariable String account,
-            @QueryValue BigDecimal amount,
-            @QueryValue Currency currency) {
+    @Operation(summary = "Export every account and posting to a CSV file in the bulk directory (admin)")
+    public HttpResponse<ApiResponse<BulkReport>> exportCsv(@QueryValue String file) {
 
-        final var transaction = ledgerService.depositIntoAccount(account, amount, currency);
+        final var report = bulk.exportCsv(file);
 
-        ApiResponse<TransactionDTO> response =
-                ApiResponse.<TransactionDTO>builder()
+        ApiResponse<BulkReport> response =
+                ApiResponse.<BulkReport>builder()
                 .statusCode(HttpStatus.OK.getCode())
-                .message("Deposit successful")
-                .data(transaction)
+                .message("Export completed")
+                .data(report)
                 .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Post(WITHDRAWAL)
+    @Get(IDEMPOTENCY_STATS)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Withdraw money from account")
-    public HttpResponse<ApiResponse<TransactionDTO>> withdrawal(
-            @PathVariable String account,
-            @QueryValue BigDecimal amount) {
-
-        final var transaction = ledgerService.withdrawFromAccount(account, amount);
+    @Operation(summary = "Get idempotency cache hit, miss and eviction counts")
+    public HttpResponse<ApiResponse<IdempotencyStats>> getIdempotencyStats() {
 
-        ApiResponse<TransactionDTO> response =
-                ApiResponse.<TransactionDTO>builder()
+        ApiResponse<IdempotencyStats> response =
+                ApiResponse.<IdempotencyStats>builder()
                 .statusCode(HttpStatus.OK.getCode())
-                .message("Withdrawal successful")
-                .data(transaction)
+                .message("Idempotency stats successfully retrieved")
+                .data(idempotency.stats())
                 .build();
 
         return HttpResponse.ok(response);
     }
 
 
-    @Post(TRANSFER)
+    @Get(REPLICATION)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Transfer money between accounts")
-    public HttpResponse<ApiResponse<List<TransactionDTO>>> transfer(
-            @QueryValue String fromAccount,
-            @QueryValue String toAccount,
-            @QueryValue BigDecimal amount) {
+    @Operation(summary = "Get this instance's replication role, applied LSN and lag")
+    public HttpResponse<ApiResponse<ReplicationStatus>> getReplicationStatus() {
+
+        ApiResponse<ReplicationStatus> response =
+                ApiResponse.<ReplicationStatus>builder()
+                .statusCode(HttpStatus.OK.getCode())
+                .message("Replication status successfully retrieved")
+                .data(follower.status())
+                .build();
 
-        final var transactions = ledgerService.transferMoney(fromAccount, toAccount, amount);
+        return HttpResponse.ok(response);
+    }
+
+
+    @Post(REPLICATION_PROMOTE)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Promote a follower to primary once the primary has stopped (admin)")
+    public HttpResponse<ApiResponse<ReplicationStatus>> promote() {
 
-        ApiResponse<List<TransactionDTO>> response =
-                ApiResponse.<List<TransactionDTO>>builder()
+        ApiResponse<ReplicationStatus> response =
+                ApiResponse.<ReplicationStatus>builder()
                 .statusCode(HttpStatus.OK.getCode())
-                .message("Transfer successful")
-                .data(transactions)
+                .message("Instance is primary")
+                .data(follower.promote())
                 .build();
 
         return HttpResponse.ok(response);
     }
 
 
+    // Answer 304 without building the body when the client already holds this version. Versions
+    // restart with the process, so tags also carry the time it started.
+    private static <T> HttpResponse<T> conditional(String ifNoneMatch, long version,
+                                                   Supplier<MutableHttpResponse<T>> response) {
+        final var etag = "\"" + ETAG_EPOCH + "." + version + "\"";
+        if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+            return HttpResponse.<T>notModified().header(HttpHeaders.ETAG, etag);
+        }
+        return response.get().header(HttpHeaders.ETAG, etag);
+    }
+
+    // If-None-Match compares weakly and may list several tags
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (var candidate : ifNoneMatch.split(",")) {
+            final var tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LedgerAggregates.Granularity granularity(String granularity) {
+        return switch (granularity.toLowerCase()) {
+            case "hour" -> LedgerAggregates.Granularity.HOUR;
+            case "day" -> LedgerAggregates.Granularity.DAY;
+            default -> throw new LedgerExceptions.InvalidReportRequestException("granularity must be hour or day");
+        };
+    }
+
+    private static boolean newestFirst(String order) {
+        return switch (order.toLowerCase()) {
+            case "asc" -> false;
+            case "desc" -> true;
+            default -> throw new LedgerExceptions.InvalidPageRequestException("order must be asc or desc");
+        };
+    }
+
+
     // Global ledger exception handler
     @Error(global = true, exception = LedgerBaseException.class)
     public HttpResponse<ApiResponse<Void>> handleLedgerException(LedgerBaseException ex) {
+        metrics.error(ex);
         ApiResponse<Void> response = ApiResponse.<Void>builder()
                 .statusCode(ex.getStatus().getCode())
                 .message(ex.getMessage())
@@ -0,0 +1,24 @@
+package com.app.api;
+
+import com.app.ledger.JournalFollower;
+import io.micronaut.http.MutableHttpResponse;
+import io.micronaut.http.annotation.ResponseFilter;
+import io.micronaut.http.annotation.ServerFilter;
+import jakarta.inject.Inject;
+
+// Tells clients of a follower how stale the ledger they just read may be
+@ServerFilter("/ledger/**")
+public class ReplicationLagFilter {
+
+    public static final String HEADER = "Replication-Lag-Millis";
+
+    @Inject
+    JournalFollower follower;
+
+    @ResponseFilter
+    public void addLag(MutableHttpResponse<?> response) {
+        if (follower.isFollowing()) {
+            response.header(HEADER, Long.toString(follower.status().getLagMillis()));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.app.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class BatchItemResult {
+    // position of the operation in the request
+    private int index;
+    private int statusCode;
+    private String message;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<TransactionDTO> transactions;
+}
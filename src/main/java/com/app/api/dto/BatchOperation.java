@@ -0,0 +1,29 @@
+package com.app.api.dto;
+
+import com.app.transaction.Currency;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class BatchOperation {
+
+    public enum Kind { DEPOSIT, WITHDRAWAL, TRANSFER }
+
+    private Kind type;
+    // account deposited into or withdrawn from, source of a transfer
+    private String account;
+    // target of a transfer
+    private String toAccount;
+    private BigDecimal amount;
+    // deposits only, the account's base currency when absent
+    private Currency currency;
+}
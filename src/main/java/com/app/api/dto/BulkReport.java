@@ -0,0 +1,27 @@
+package com.app.api.dto;
+
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class BulkReport {
+    private String file;
+    // data rows read or written, the header excluded
+    private long rows;
+    private long rejected;
+    // "line N: reason" for the first rejected rows
+    private List<String> errors;
+    private long bytes;
+    private long durationMillis;
+    private long rowsPerSecond;
+    private double megabytesPerSecond;
+}
@@ -0,0 +1,38 @@
+package com.app.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class Discrepancy {
+
+    public enum Kind {
+        // balance differs from the opening balance plus the postings
+        BALANCE,
+        OVERDRAWN,
+        // deposits and credits must be positive, withdrawals and debits negative
+        AMOUNT_SIGN,
+        // withdrawals and debits must be in the account's base currency
+        CURRENCY,
+        // a posting is stamped before the one it follows
+        TIMESTAMP_ORDER,
+        // a transfer leg with no other half at the FX table it recorded
+        UNMATCHED_TRANSFER_OUT,
+        UNMATCHED_TRANSFER_IN
+    }
+
+    private Kind kind;
+    private String accountNo;
+    // posting concerned, null when it is the account as a whole
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long sequence;
+    private String detail;
+}
@@ -0,0 +1,22 @@
+package com.app.api.dto;
+
+import com.app.transaction.Currency;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class FxRates {
+    private int version;
+    // rates[from][to], one unit of from buys this many units of to
+    private Map<Currency, Map<Currency, BigDecimal>> rates;
+}
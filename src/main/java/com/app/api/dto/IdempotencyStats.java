@@ -0,0 +1,19 @@
+package com.app.api.dto;
+
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class IdempotencyStats {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long size;
+}
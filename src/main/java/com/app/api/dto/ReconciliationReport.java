@@ -0,0 +1,37 @@
+package com.app.api.dto;
+
+import com.app.transaction.Currency;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class ReconciliationReport {
+    private LocalDateTime startedAt;
+    private long durationMillis;
+    // every account was checked from its opening balance rather than from its checkpoint
+    private boolean full;
+    private int accountsChecked;
+    // skipped as nothing was posted to them since their checkpoint
+    private int accountsUnchanged;
+    private long postingsChecked;
+    private long transfersMatched;
+    // unmatched legs still within the grace period or in flight between shards
+    private int transfersAwaiting;
+    // money created or lost by unmatched transfer legs, per base currency
+    private Map<Currency, BigDecimal> transferImbalance;
+    // found since the last full run, only the first ones are listed
+    private int discrepancyCount;
+    private List<Discrepancy> discrepancies;
+}
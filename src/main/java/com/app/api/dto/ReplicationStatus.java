@@ -0,0 +1,26 @@
+package com.app.api.dto;
+
+import com.app.ledger.ReplicationConfig;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class ReplicationStatus {
+    private ReplicationConfig.Role role;
+    // last journal record applied to this instance
+    private long appliedLsn;
+    // how far behind the primary reads may be, followers only
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long lagMillis;
+    // why the follower is not keeping up, if it is not
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+}
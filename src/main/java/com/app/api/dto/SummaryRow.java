@@ -0,0 +1,28 @@
+package com.app.api.dto;
+
+import com.app.transaction.Currency;
+import com.app.transaction.Type;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Serdeable
+public class SummaryRow {
+    // start of the hour or day, UTC
+    private LocalDateTime start;
+    private Type type;
+    // base currency of the accounts posted to
+    private Currency currency;
+    private long count;
+    // signed sum of the postings, withdrawals and outgoing transfers are negative
+    private BigDecimal total;
+}
@@ -22,4 +22,8 @@ public class TransactionDTO {
     private BigDecimal amount;
     private Currency currency;
     private LocalDateTime timestamp;
+    private long sequence;
+    private int fxVersion;
+    // set on query results, which span accounts
+    private String accountNo;
 }
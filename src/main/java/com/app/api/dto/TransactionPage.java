@@ -0,0 +1,18 @@
+package com.app.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPage {
+    private List<TransactionDTO> transactions;
+    // sequence of the last transaction returned, null when there is nothing after this page
+    private String nextCursor;
+}
@@ -0,0 +1,13 @@
+package com.app.api.mapper;
+
+import com.app.api.dto.FxRates;
+import com.app.transaction.FxRate;
+
+public class FxRateMapper {
+    public static FxRates toDTO(FxRate.Rates rates) {
+        return FxRates.builder()
+                .version(rates.version())
+                .rates(FxRate.toMap(rates))
+                .build();
+    }
+}
@@ -1,16 +1,43 @@
 package com.app.api.mapper;
 
+import com.app.account.Account;
 import com.app.api.dto.TransactionDTO;
+import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
 import com.app.transaction.Transaction;
+import com.app.transaction.TransactionStore;
+
+import java.math.BigDecimal;
 
 public class TransactionMapper {
     public static TransactionDTO toDTO(Transaction transaction) {
         return TransactionDTO.builder()
                 .id(transaction.getId())
                 .type(transaction.getType())
-                .amount(transaction.getAmount())
+                .amount(transaction.getAmount().toBigDecimal())
                 .currency(transaction.getCurrency())
                 .timestamp(transaction.getTimestamp())
+                .sequence(transaction.getSequence())
+                .fxVersion(transaction.getFxVersion())
+                .build();
+    }
+
+    // Build the DTO straight from the account's columns, caller holds the account lock
+    public static TransactionDTO toDTO(Account account, int index) {
+        return toDTO(account.getTransactions(), account.getBaseCcy(), account.firstSequence(), index);
+    }
+
+    // Same for a store whose first row has the given sequence
+    public static TransactionDTO toDTO(TransactionStore store, Currency baseCcy, long firstSequence, int index) {
+        final long id = store.id(index);
+        return TransactionDTO.builder()
+                .id(id == 0 ? null : Long.toString(id))
+                .type(store.type(index))
+                .amount(BigDecimal.valueOf(store.amount(index), baseCcy.getScale()))
+                .currency(store.currency(index))
+                .timestamp(EpochMicros.toLocalDateTime(store.timestamp(index)))
+                .sequence(firstSequence + index)
+                .fxVersion(store.fxVersion(index))
                 .build();
     }
 }
@@ -0,0 +1,16 @@
+package com.app.journal;
+
+import com.app.transaction.Currency;
+import com.app.transaction.TransactionStore;
+
+// Point-in-time copy of one account, balances are minor units and openingBalance covers
+// the postings not in transactions. lastTransactionId is the id of the newest posting, trimmed or not
+public record AccountSnapshot(String id,
+                              String accountNo,
+                              Currency baseCcy,
+                              long balance,
+                              long openingBalance,
+                              long version,
+                              long lastTransactionId,
+                              TransactionStore transactions) {
+}
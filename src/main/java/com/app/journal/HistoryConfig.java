@@ -0,0 +1,18 @@
+package com.app.journal;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("ledger.history")
+public class HistoryConfig {
+    // move the oldest postings of long histories to cold segments on disk
+    private boolean enabled;
+    private String directory = "data/history";
+    // most recent postings an account always keeps in memory
+    private int hotRows = 1024;
+    // postings moved per segment, an account demotes once it holds hot-rows + segment-rows
+    private int segmentRows = 4096;
+    // decoded segments kept in memory for reads
+    private int cacheSegments = 64;
+}
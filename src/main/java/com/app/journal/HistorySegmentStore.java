@@ -0,0 +1,289 @@
+package com.app.journal;
+
+import com.app.transaction.ColdSegment;
+import com.app.transaction.Currency;
+import com.app.transaction.HeapTransactionStore;
+import com.app.transaction.TransactionStore;
+import com.app.transaction.Type;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// Cold history segments, one immutable file per run of an account's oldest postings, named
+// <account no>-<first sequence>.segment. Header [magic, format, first sequence, count, first timestamp,
+// last timestamp, body length, crc32c] then the deflated body: each column in turn, ids and timestamps
+// as varint deltas, amounts and fx versions as zigzag varints, types and currencies as bytes. Headers
+// alone make up the sparse index, bodies are read when a row in them is.
+@Singleton
+public class HistorySegmentStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HistorySegmentStore.class);
+
+    private static final int MAGIC = 0x4C485347;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES + 2 * Long.BYTES
+            + 2 * Integer.BYTES;
+    private static final String SUFFIX = ".segment";
+    private static final Type[] TYPES = Type.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final HistoryConfig config;
+    // least recently read segment first
+    private final Map<Path, TransactionStore> cache;
+
+    public HistorySegmentStore(HistoryConfig config) {
+        this.config = config;
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, TransactionStore> eldest) {
+                return size() > config.getCacheSegments();
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public int hotRows() {
+        return config.getHotRows();
+    }
+
+    public int segmentRows() {
+        return config.getSegmentRows();
+    }
+
+    // Write rows to a new segment, durable once this returns
+    public ColdSegment write(String accountNo, long firstSequence, TransactionStore rows) throws IOException {
+        final var directory = Files.createDirectories(Path.of(config.getDirectory()));
+        final var target = directory.resolve(String.format("%s-%020d%s", accountNo, firstSequence, SUFFIX));
+        if (!directory.equals(target.getParent())) {
+            throw new IOException("Account number " + accountNo + " does not name a file in " + directory);
+        }
+        final var temp = directory.resolve(target.getFileName() + ".tmp");
+
+        final var bytes = new ByteArrayOutputStream(rows.size() * 8);
+        final var deflater = new Deflater(Deflater.BEST_SPEED);
+        try (var out = new DeflaterOutputStream(bytes, deflater)) {
+            encode(rows, out);
+        } finally {
+            deflater.end();
+        }
+        final var body = bytes.toByteArray();
+        final var crc = new CRC32C();
+        crc.update(body);
+        final int count = rows.size();
+        final var header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putInt(FORMAT).putLong(firstSequence).putInt(count)
+                .putLong(rows.timestamp(0)).putLong(rows.timestamp(count - 1))
+                .putInt(body.length).putInt((int) crc.getValue())
+                .flip();
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final var buffers = new ByteBuffer[]{header, ByteBuffer.wrap(body)};
+            while (buffers[1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the rename itself is only durable once the directory is
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        return new ColdSegment(target, firstSequence, count, rows.timestamp(0), rows.timestamp(count - 1));
+    }
+
+    // Rows of a segment, from the cache when it was read recently
+    public TransactionStore load(ColdSegment segment) {
+        synchronized (cache) {
+            final var cached = cache.get(segment.path());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final var rows = read(segment);
+        synchronized (cache) {
+            cache.put(segment.path(), rows);
+        }
+        return rows;
+    }
+
+    // Rows of a segment without going through the cache, for one-off scans
+    public TransactionStore read(ColdSegment segment) {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path())))) {
+            final var header = readHeader(segment.path(), in);
+            final var body = new byte[in.readInt()];
+            final int checksum = in.readInt();
+            in.readFully(body);
+            final var crc = new CRC32C();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch");
+            }
+            final var inflater = new Inflater();
+            try (var rows = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(body), inflater))) {
+                return decode(rows, header.count());
+            } finally {
+                inflater.end();
+            }
+        } catch (IOException e) {
+            throw new JournalException("Cannot read history segment " + segment.path(), e);
+        }
+    }
+
+    // Every segment on disk by account number, oldest first. Only headers are read.
+    public Map<String, List<ColdSegment>> list() throws IOException {
+        final var directory = Path.of(config.getDirectory());
+        final var segments = new TreeMap<String, List<ColdSegment>>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (var path : files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                final var name = path.getFileName().toString();
+                try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), HEADER_BYTES))) {
+                    segments.computeIfAbsent(name.substring(0, name.lastIndexOf('-')), accountNo -> new ArrayList<>())
+                            .add(readHeader(path, in));
+                } catch (IOException e) {
+                    LOG.warn("Skipping unreadable history segment {}", name, e);
+                }
+            }
+        }
+        segments.values().forEach(list -> list.sort(Comparator.comparingLong(ColdSegment::firstSequence)));
+        return segments;
+    }
+
+    public void delete(Collection<ColdSegment> segments) {
+        for (var segment : segments) {
+            synchronized (cache) {
+                cache.remove(segment.path());
+            }
+            try {
+                Files.deleteIfExists(segment.path());
+            } catch (IOException e) {
+                LOG.warn("Cannot delete history segment {}", segment.path(), e);
+            }
+        }
+    }
+
+    private static ColdSegment readHeader(Path path, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+            throw new IOException("Not a history segment");
+        }
+        return new ColdSegment(path, in.readLong(), in.readInt(), in.readLong(), in.readLong());
+    }
+
+    private static void encode(TransactionStore rows, OutputStream out) throws IOException {
+        long previous = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            putVarLong(out, zigzag(rows.id(i) - previous));
+            previous = rows.id(i);
+        }
+        previous = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            putVarLong(out, zigzag(rows.timestamp(i) - previous));
+            previous = rows.timestamp(i);
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            putVarLong(out, zigzag(rows.amount(i)));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            putVarLong(out, zigzag(rows.fxVersion(i)));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            out.write(rows.type(i).ordinal());
+            out.write(rows.currency(i).ordinal());
+        }
+    }
+
+    private static TransactionStore decode(InputStream in, int count) throws IOException {
+        final var ids = new long[count];
+        final var timestamps = new long[count];
+        final var amounts = new long[count];
+        final var fxVersions = new int[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            ids[i] = previous += unzigzag(getVarLong(in));
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = previous += unzigzag(getVarLong(in));
+        }
+        for (int i = 0; i < count; i++) {
+            amounts[i] = unzigzag(getVarLong(in));
+        }
+        for (int i = 0; i < count; i++) {
+            fxVersions[i] = (int) unzigzag(getVarLong(in));
+        }
+        final var rows = new HeapTransactionStore(count);
+        for (int i = 0; i < count; i++) {
+            rows.append(ids[i], TYPES[readByte(in)], CURRENCIES[readByte(in)], amounts[i], timestamps[i], fxVersions[i]);
+        }
+        return rows;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long getVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
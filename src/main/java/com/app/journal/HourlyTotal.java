@@ -0,0 +1,9 @@
+package com.app.journal;
+
+import com.app.transaction.Currency;
+import com.app.transaction.Type;
+
+// Number and signed total, in minor units, of the postings of one type and currency within one hour
+// since the epoch
+public record HourlyTotal(long hour, Type type, Currency currency, long count, long total) {
+}
@@ -0,0 +1,6 @@
+package com.app.journal;
+
+// Everything the id allocator had handed out when a snapshot was taken: the first account counter
+// not yet given to a thread and the largest transaction id
+public record IdHighWater(long nextAccountCounter, long lastTransactionId) {
+}
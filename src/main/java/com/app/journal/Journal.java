@@ -0,0 +1,392 @@
+package com.app.journal;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only write-ahead log. Records are numbered with a log sequence number (LSN) and
+// written by a single flusher thread, which fsyncs each batch once for all waiting writers.
+@Singleton
+public class Journal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Journal.class);
+
+    static final String SEGMENT_SUFFIX = ".journal";
+    // held by the instance appending to the directory, a follower has to get it before taking over
+    static final String LOCK_FILE = "journal.lock";
+    // frame = body length, crc32c of lsn + body, lsn, body
+    static final int FRAME_HEADER = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final CompletableFuture<Long> NOT_JOURNALED = CompletableFuture.completedFuture(0L);
+
+    private final JournalConfig config;
+    private final BlockingQueue<PendingAppend> queue;
+    private final CRC32C crc = new CRC32C();
+
+    // owned by the flusher thread once open() returns
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private long nextLsn = 1;
+    private volatile long lastWrittenLsn;
+    // written by the flusher only, read by metrics
+    private volatile long flushCount;
+    private volatile long flushNanos;
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile Throwable failure;
+
+    public Journal(JournalConfig config) {
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    // Replay every record with an LSN above afterLsn, then open the journal for appends
+    public synchronized void open(long afterLsn, ObjLongConsumer<JournalRecord> consumer) {
+        if (!config.isEnabled() || running) {
+            return;
+        }
+        try {
+            final var directory = Path.of(config.getDirectory());
+            Files.createDirectories(directory);
+            lock(directory);
+            final var segments = listSegments(directory);
+
+            long lastLsn = afterLsn;
+            for (int i = 0; i < segments.size(); i++) {
+                final var segment = segments.get(i);
+                final boolean last = i == segments.size() - 1;
+                // every record of this segment precedes the next segment's base
+                if (!last && baseLsn(segments.get(i + 1)) <= afterLsn + 1) {
+                    continue;
+                }
+                lastLsn = Math.max(lastLsn, replaySegment(segment, last, afterLsn, consumer));
+            }
+            nextLsn = lastLsn + 1;
+            lastWrittenLsn = lastLsn;
+
+            final var current = segments.isEmpty()
+                    ? directory.resolve(segmentName(nextLsn))
+                    : segments.get(segments.size() - 1);
+            channel = FileChannel.open(current,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new JournalException("Cannot open journal in " + config.getDirectory(), e);
+        }
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Queue a record for writing, the future completes with its LSN once it is durable.
+    // A null record is a barrier that only waits for the records queued before it.
+    public CompletableFuture<Long> append(JournalRecord record) {
+        if (!config.isEnabled()) {
+            return NOT_JOURNALED;
+        }
+        if (failure != null || !running) {
+            return CompletableFuture.failedFuture(new JournalException("Journal is not accepting writes", failure));
+        }
+        final var pending = new PendingAppend(record, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new JournalException("Interrupted while appending", e));
+        }
+        // the flusher may have failed after the check above and will not drain the queue again
+        if (failure != null) {
+            pending.future().completeExceptionally(new JournalException("Journal is not accepting writes", failure));
+        }
+        return pending.future();
+    }
+
+    // Completes once everything appended before this call is durable
+    public CompletableFuture<Long> sync() {
+        return append(null);
+    }
+
+    // LSN of the last record handed to the file system; every record up to it has been applied
+    public long lastWrittenLsn() {
+        return lastWrittenLsn;
+    }
+
+    // Number of batches written and the total time spent writing and syncing them
+    public long flushCount() {
+        return flushCount;
+    }
+
+    public long flushNanos() {
+        return flushNanos;
+    }
+
+    // Records waiting for the flusher
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    // Remove segments whose records all have an LSN of at most the given one, never the open segment
+    public void deleteSegmentsUpTo(long lsn) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            final var segments = listSegments(Path.of(config.getDirectory()));
+            for (int i = 0; i < segments.size() - 1; i++) {
+                if (baseLsn(segments.get(i + 1)) > lsn + 1) {
+                    break;
+                }
+                Files.delete(segments.get(i));
+                LOG.info("Deleted journal segment {} covered by snapshot", segments.get(i).getFileName());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to delete old journal segments", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join();
+            channel.close();
+            lock.release();
+            lockChannel.close();
+            lock = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.warn("Failed to close journal segment", e);
+        }
+    }
+
+    private void lock(Path directory) throws IOException {
+        if (lock != null) {
+            return;
+        }
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another journal in this JVM
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new JournalException("Journal in " + directory + " is in use by another instance");
+        }
+    }
+
+    private long replaySegment(Path segment, boolean last, long afterLsn,
+                               ObjLongConsumer<JournalRecord> consumer) throws IOException {
+        final var data = ByteBuffer.wrap(Files.readAllBytes(segment));
+        long lastLsn = 0;
+        while (data.remaining() >= FRAME_HEADER) {
+            final int start = data.position();
+            final int length = data.getInt();
+            final int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining() - Long.BYTES) {
+                data.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(data.slice(data.position(), Long.BYTES + length));
+            if ((int) crc.getValue() != checksum) {
+                data.position(start);
+                break;
+            }
+            final long lsn = data.getLong();
+            final var body = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            if (lsn > afterLsn) {
+                consumer.accept(JournalCodec.read(body), lsn);
+            }
+            lastLsn = lsn;
+        }
+
+        if (data.hasRemaining()) {
+            if (!last) {
+                throw new JournalException("Corrupt record in journal segment " + segment + " at " + data.position());
+            }
+            // a torn write at the tail was never acknowledged, drop it
+            LOG.warn("Truncating {} bytes of incomplete journal tail in {}", data.remaining(), segment);
+            try (var ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                ch.truncate(data.position());
+            }
+        }
+        return lastLsn;
+    }
+
+    private void flushLoop() {
+        final var batch = new ArrayList<PendingAppend>(config.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                final var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(batch, e);
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Journal write failed, rejecting further appends", e);
+                fail(batch, e);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Gather more records until the batch is full or the flush interval has passed
+    private void collect(List<PendingAppend> batch) throws InterruptedException {
+        final int batchSize = config.getBatchSize();
+        final long intervalNanos = config.getFlushInterval().toNanos();
+        final long deadline = System.nanoTime() + intervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            final long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            final var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch) throws IOException {
+        int size = 0;
+        for (var pending : batch) {
+            if (pending.record() != null) {
+                size += FRAME_HEADER + JournalCodec.sizeOf(pending.record());
+            }
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        buffer.clear();
+
+        final long firstLsn = nextLsn;
+        for (var pending : batch) {
+            if (pending.record() != null) {
+                writeFrame(pending.record(), nextLsn++);
+            }
+        }
+        if (size > 0) {
+            final long start = System.nanoTime();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            lastWrittenLsn = nextLsn - 1;
+            if (config.isFsync()) {
+                channel.force(false);
+            }
+            flushNanos += System.nanoTime() - start;
+            flushCount++;
+        }
+
+        long lsn = firstLsn - 1;
+        for (var pending : batch) {
+            if (pending.record() != null) {
+                lsn++;
+            }
+            pending.future().complete(lsn);
+        }
+
+        if (channel.position() >= config.getSegmentSize()) {
+            roll();
+        }
+    }
+
+    private void writeFrame(JournalRecord record, long lsn) {
+        final int start = buffer.position();
+        buffer.position(start + Integer.BYTES + Integer.BYTES);
+        buffer.putLong(lsn);
+        JournalCodec.write(record, buffer);
+        final int end = buffer.position();
+
+        crc.reset();
+        crc.update(buffer.slice(start + 2 * Integer.BYTES, end - start - 2 * Integer.BYTES));
+        buffer.putInt(start, end - start - FRAME_HEADER);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    private void roll() throws IOException {
+        channel.force(true);
+        channel.close();
+        final var next = Path.of(config.getDirectory()).resolve(segmentName(nextLsn));
+        channel = FileChannel.open(next,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        LOG.info("Rolled journal to segment {}", next.getFileName());
+    }
+
+    private void fail(List<PendingAppend> batch, Throwable cause) {
+        failure = cause;
+        running = false;
+        final var error = new JournalException("Journal write failed", cause);
+        batch.forEach(pending -> pending.future().completeExceptionally(error));
+        PendingAppend pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(error);
+        }
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static long baseLsn(Path segment) {
+        final var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    static String segmentName(long baseLsn) {
+        return String.format("%020d%s", baseLsn, SEGMENT_SUFFIX);
+    }
+
+    private record PendingAppend(JournalRecord record, CompletableFuture<Long> future) {}
+}
@@ -0,0 +1,191 @@
+package com.app.journal;
+
+import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
+import com.app.transaction.FxRate;
+import com.app.transaction.Money;
+import com.app.transaction.Transaction;
+import com.app.transaction.Type;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+// Binary layout of journal record bodies: a one byte kind, then length-prefixed UTF-8
+// strings (-1 for null), amounts as currency + minor units and timestamps as epoch micros
+final class JournalCodec {
+
+    static final byte ACCOUNT_OPENED = 1;
+    static final byte ACCOUNT_CLOSED = 2;
+    static final byte POSTED = 3;
+    static final byte FX_RATES_PUBLISHED = 4;
+    static final byte TRANSFER_DEBITED = 5;
+    static final byte TRANSFER_CREDITED = 6;
+    // an AccountOpened that was not issued by the allocator
+    static final byte ACCOUNT_IMPORTED = 7;
+
+    private static final Type[] TYPES = Type.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private JournalCodec() {
+    }
+
+    static int sizeOf(JournalRecord record) {
+        return 1 + switch (record) {
+            case JournalRecord.AccountOpened opened ->
+                    sizeOf(opened.id()) + sizeOf(opened.accountNo()) + 1;
+            case JournalRecord.AccountClosed closed ->
+                    sizeOf(closed.accountNo());
+            case JournalRecord.Posted posted -> {
+                int size = Integer.BYTES;
+                for (var txn : posted.transactions()) {
+                    size += sizeOf(txn);
+                }
+                yield size;
+            }
+            case JournalRecord.FxRatesPublished published -> sizeOf(published.rates());
+            case JournalRecord.TransferDebited debited -> sizeOf(debited.debit()) + sizeOf(debited.credit());
+            case JournalRecord.TransferCredited credited ->
+                    sizeOf(credited.debitAccountNo()) + Long.BYTES + sizeOf(credited.credit());
+        };
+    }
+
+    static void write(JournalRecord record, ByteBuffer buffer) {
+        switch (record) {
+            case JournalRecord.AccountOpened opened -> {
+                buffer.put(opened.issued() ? ACCOUNT_OPENED : ACCOUNT_IMPORTED);
+                putString(buffer, opened.id());
+                putString(buffer, opened.accountNo());
+                buffer.put((byte) opened.baseCcy().ordinal());
+            }
+            case JournalRecord.AccountClosed closed -> {
+                buffer.put(ACCOUNT_CLOSED);
+                putString(buffer, closed.accountNo());
+            }
+            case JournalRecord.Posted posted -> {
+                buffer.put(POSTED);
+                buffer.putInt(posted.transactions().size());
+                for (var txn : posted.transactions()) {
+                    putTransaction(buffer, txn);
+                }
+            }
+            case JournalRecord.FxRatesPublished published -> {
+                buffer.put(FX_RATES_PUBLISHED);
+                putRates(buffer, published.rates());
+            }
+            case JournalRecord.TransferDebited debited -> {
+                buffer.put(TRANSFER_DEBITED);
+                putTransaction(buffer, debited.debit());
+                putTransaction(buffer, debited.credit());
+            }
+            case JournalRecord.TransferCredited credited -> {
+                buffer.put(TRANSFER_CREDITED);
+                putString(buffer, credited.debitAccountNo());
+                buffer.putLong(credited.debitSequence());
+                putTransaction(buffer, credited.credit());
+            }
+        }
+    }
+
+    static JournalRecord read(ByteBuffer buffer) {
+        final byte kind = buffer.get();
+        return switch (kind) {
+            case ACCOUNT_OPENED, ACCOUNT_IMPORTED -> new JournalRecord.AccountOpened(
+                    getString(buffer), getString(buffer), CURRENCIES[buffer.get()], kind == ACCOUNT_OPENED);
+            case ACCOUNT_CLOSED -> new JournalRecord.AccountClosed(getString(buffer));
+            case POSTED -> {
+                final int count = buffer.getInt();
+                final var transactions = new ArrayList<Transaction>(count);
+                for (int i = 0; i < count; i++) {
+                    transactions.add(getTransaction(buffer));
+                }
+                yield new JournalRecord.Posted(transactions);
+            }
+            case FX_RATES_PUBLISHED -> new JournalRecord.FxRatesPublished(getRates(buffer));
+            case TRANSFER_DEBITED -> new JournalRecord.TransferDebited(getTransaction(buffer), getTransaction(buffer));
+            case TRANSFER_CREDITED -> new JournalRecord.TransferCredited(
+                    getString(buffer), buffer.getLong(), getTransaction(buffer));
+            default -> throw new JournalException("Unknown journal record kind " + kind);
+        };
+    }
+
+    private static int sizeOf(Transaction txn) {
+        return sizeOf(txn.getId()) + sizeOf(txn.getAccountNo()) + 3 + 3 * Long.BYTES + Integer.BYTES;
+    }
+
+    private static void putTransaction(ByteBuffer buffer, Transaction txn) {
+        putString(buffer, txn.getId());
+        putString(buffer, txn.getAccountNo());
+        buffer.put((byte) txn.getType().ordinal());
+        buffer.put((byte) txn.getCurrency().ordinal());
+        buffer.put((byte) txn.getAmount().currency().ordinal());
+        buffer.putLong(txn.getAmount().minor());
+        buffer.putLong(EpochMicros.of(txn.getTimestamp()));
+        buffer.putLong(txn.getSequence());
+        buffer.putInt(txn.getFxVersion());
+    }
+
+    private static Transaction getTransaction(ByteBuffer buffer) {
+        return Transaction.builder()
+                .id(getString(buffer))
+                .accountNo(getString(buffer))
+                .type(TYPES[buffer.get()])
+                .currency(CURRENCIES[buffer.get()])
+                .amount(getMoney(buffer))
+                .timestamp(EpochMicros.toLocalDateTime(buffer.getLong()))
+                .sequence(buffer.getLong())
+                .fxVersion(buffer.getInt())
+                .build();
+    }
+
+    // version, rate count, then the scaled rates of the whole matrix
+    static int sizeOf(FxRate.Rates rates) {
+        return Integer.BYTES + Short.BYTES + rates.scaled().length * Long.BYTES;
+    }
+
+    static void putRates(ByteBuffer buffer, FxRate.Rates rates) {
+        buffer.putInt(rates.version());
+        buffer.putShort((short) rates.scaled().length);
+        for (long rate : rates.scaled()) {
+            buffer.putLong(rate);
+        }
+    }
+
+    static FxRate.Rates getRates(ByteBuffer buffer) {
+        final int version = buffer.getInt();
+        final var scaled = new long[buffer.getShort()];
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] = buffer.getLong();
+        }
+        return new FxRate.Rates(version, scaled);
+    }
+
+    static int sizeOf(String value) {
+        return Short.BYTES + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        final int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        final var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Money getMoney(ByteBuffer buffer) {
+        final var currency = CURRENCIES[buffer.get()];
+        return Money.ofMinor(buffer.getLong(), currency);
+    }
+}
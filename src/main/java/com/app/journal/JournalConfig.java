@@ -0,0 +1,22 @@
+package com.app.journal;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("ledger.journal")
+public class JournalConfig {
+    private boolean enabled;
+    private String directory = "data/journal";
+    // a new segment is started once the current one grows past this many bytes
+    private long segmentSize = 64L * 1024 * 1024;
+    // how long the flusher waits for more records before writing a batch, zero flushes as soon as it is free
+    private Duration flushInterval = Duration.ZERO;
+    // most records written and fsynced together
+    private int batchSize = 1024;
+    // appends block once this many records are waiting for the flusher
+    private int queueCapacity = 65_536;
+    private boolean fsync = true;
+}
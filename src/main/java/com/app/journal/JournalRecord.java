@@ -0,0 +1,37 @@
+package com.app.journal;
+
+import com.app.transaction.Currency;
+import com.app.transaction.FxRate;
+import com.app.transaction.Transaction;
+
+import java.util.List;
+
+public sealed interface JournalRecord {
+
+    // issued is false for accounts brought in by an import, whose numbers the allocator never handed out
+    record AccountOpened(String id, String accountNo, Currency baseCcy, boolean issued) implements JournalRecord {}
+
+    record AccountClosed(String accountNo) implements JournalRecord {}
+
+    // postings that were applied together, e.g. both legs of a transfer
+    record Posted(List<Transaction> transactions) implements JournalRecord {}
+
+    // first half of a transfer between shards: the debit was applied, the credit is still owed
+    record TransferDebited(Transaction debit, Transaction credit) implements JournalRecord {}
+
+    // the credit owed by a debit was applied, to the destination or back to the source as a refund
+    record TransferCredited(String debitAccountNo, long debitSequence, Transaction credit) implements JournalRecord {}
+
+    // a new FX rate table became current
+    record FxRatesPublished(FxRate.Rates rates) implements JournalRecord {}
+
+    // Postings the record applied
+    default List<Transaction> postings() {
+        return switch (this) {
+            case Posted posted -> posted.transactions();
+            case TransferDebited debited -> List.of(debited.debit());
+            case TransferCredited credited -> List.of(credited.credit());
+            default -> List.of();
+        };
+    }
+}
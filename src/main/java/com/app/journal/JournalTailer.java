@@ -0,0 +1,157 @@
+package com.app.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32C;
+
+import static com.app.journal.Journal.FRAME_HEADER;
+
+// Follows a journal that another instance is appending to. Each poll returns the complete records
+// written since the previous one and stops at a frame still being written. Files are only read,
+// a torn tail is left for the writer or for whoever takes the journal over.
+public class JournalTailer implements AutoCloseable {
+
+    private final Path directory;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+    private Path segment;
+    private FileChannel channel;
+    private long position;
+    private long lastLsn;
+
+    public JournalTailer(Path directory, long afterLsn) {
+        this.directory = directory;
+        this.lastLsn = afterLsn;
+    }
+
+    // LSN of the last record handed to a consumer
+    public long lastLsn() {
+        return lastLsn;
+    }
+
+    // Read every complete record with an LSN above the last one returned, in order. Fails if the
+    // next record is gone rather than skip to a later one.
+    public int poll(ObjLongConsumer<JournalRecord> consumer) throws IOException {
+        if (channel == null && !openSegment()) {
+            return 0;
+        }
+        int count = 0;
+        while (true) {
+            count += readFrames(consumer);
+            final var next = nextSegment();
+            if (next == null) {
+                return count;
+            }
+            // the writer rolled, anything it wrote here before rolling is complete by now
+            count += readFrames(consumer);
+            // the next segment must carry on from here, segments in between may have been pruned
+            if (Journal.baseLsn(next) != lastLsn + 1) {
+                throw missing();
+            }
+            channel.close();
+            segment = next;
+            channel = FileChannel.open(segment, StandardOpenOption.READ);
+            position = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Start in the segment holding the record after lastLsn
+    private boolean openSegment() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        final var segments = Journal.listSegments(directory);
+        for (var candidate : segments.reversed()) {
+            if (Journal.baseLsn(candidate) <= lastLsn + 1) {
+                segment = candidate;
+                break;
+            }
+        }
+        if (segment == null) {
+            if (segments.isEmpty()) {
+                return false;
+            }
+            throw missing();
+        }
+        channel = FileChannel.open(segment, StandardOpenOption.READ);
+        position = 0;
+        return true;
+    }
+
+    // Records were pruned before they were read, the follower has to start again from a snapshot
+    private JournalException missing() {
+        return new JournalException("Journal records after LSN " + lastLsn + " are no longer in " + directory);
+    }
+
+    private Path nextSegment() throws IOException {
+        for (var candidate : Journal.listSegments(directory)) {
+            if (candidate.compareTo(segment) > 0) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private int readFrames(ObjLongConsumer<JournalRecord> consumer) throws IOException {
+        int count = 0;
+        while (true) {
+            buffer.clear();
+            if (channel.read(buffer, position) <= 0) {
+                return count;
+            }
+            buffer.flip();
+            final long start = position;
+            boolean grown = false;
+            while (buffer.remaining() >= FRAME_HEADER) {
+                final int frame = buffer.position();
+                final int length = buffer.getInt(frame);
+                if (length <= 0) {
+                    return count;
+                }
+                if (FRAME_HEADER + length > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(Integer.highestOneBit(FRAME_HEADER + length) << 1);
+                    grown = true;
+                    break;
+                }
+                if (buffer.remaining() < FRAME_HEADER + length) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice(frame + 2 * Integer.BYTES, Long.BYTES + length));
+                if ((int) crc.getValue() != buffer.getInt(frame + Integer.BYTES)) {
+                    // still being written
+                    return count;
+                }
+                final long lsn = buffer.getLong(frame + 2 * Integer.BYTES);
+                if (lsn > lastLsn + 1) {
+                    throw missing();
+                }
+                if (lsn > lastLsn) {
+                    consumer.accept(JournalCodec.read(buffer.slice(frame + FRAME_HEADER, length)), lsn);
+                    lastLsn = lsn;
+                    count++;
+                }
+                buffer.position(frame + FRAME_HEADER + length);
+                position += FRAME_HEADER + length;
+            }
+            // nothing complete in what was read, unless the buffer just grew to fit the next frame
+            if (position == start && !grown) {
+                return count;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.app.journal;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("ledger.snapshot")
+public class SnapshotConfig {
+    private boolean enabled;
+    private String directory = "data/snapshots";
+    // most recent transactions kept per account, 0 keeps the full history
+    private int historyLimit;
+    // number of snapshot files kept on disk
+    private int retain = 2;
+    // delete journal segments fully covered by the latest snapshot
+    private boolean pruneJournal = true;
+}
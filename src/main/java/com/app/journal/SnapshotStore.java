@@ -0,0 +1,310 @@
+package com.app.journal;
+
+import com.app.transaction.Currency;
+import com.app.transaction.FxRate;
+import com.app.transaction.HeapTransactionStore;
+import com.app.transaction.Type;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Snapshot files hold the id allocator's high-water mark, the FX rate tables, the hourly posting totals and
+// every open account as of a journal LSN: header [magic, format, lsn, next account counter, last transaction id,
+// table count], then [length, crc32c, body] entries for each rate table, one for the hourly totals and one for
+// each account, then [0, account count]
+@Singleton
+public class SnapshotStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x4C534E50;
+    private static final int FORMAT = 7;
+    private static final String SUFFIX = ".snapshot";
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final Type[] TYPES = Type.values();
+    // id, type, currency, amount, timestamp, fx version
+    private static final int ROW_BYTES = Long.BYTES + 2 + Long.BYTES + Long.BYTES + Integer.BYTES;
+    // hour, type, currency, count, total
+    private static final int TOTAL_BYTES = Long.BYTES + 2 + Long.BYTES + Long.BYTES;
+
+    private final SnapshotConfig config;
+
+    public SnapshotStore(SnapshotConfig config) {
+        this.config = config;
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public boolean isPruneJournal() {
+        return config.isPruneJournal();
+    }
+
+    public int historyLimit() {
+        return config.getHistoryLimit();
+    }
+
+    // Write the id high-water mark, rate tables, hourly totals and accounts to a new snapshot for the given LSN,
+    // returns the number of accounts written. beforePublish runs once everything has been written and before the
+    // snapshot becomes visible.
+    public long write(long lsn, IdHighWater ids, List<FxRate.Rates> rates, List<HourlyTotal> totals,
+                      Iterator<AccountSnapshot> accounts, Runnable beforePublish) throws IOException {
+        final var directory = Files.createDirectories(Path.of(config.getDirectory()));
+        final var target = directory.resolve(String.format("%020d%s", lsn, SUFFIX));
+        final var temp = directory.resolve(target.getFileName() + ".tmp");
+
+        long count = 0;
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC).putInt(FORMAT).putLong(lsn)
+                    .putLong(ids.nextAccountCounter()).putLong(ids.lastTransactionId())
+                    .putInt(rates.size());
+
+            final var crc = new CRC32C();
+            for (var table : rates) {
+                buffer = putEntry(channel, buffer, crc, JournalCodec.sizeOf(table),
+                        body -> JournalCodec.putRates(body, table));
+            }
+            buffer = putEntry(channel, buffer, crc, Integer.BYTES + totals.size() * TOTAL_BYTES,
+                    body -> write(totals, body));
+            while (accounts.hasNext()) {
+                final var account = accounts.next();
+                buffer = putEntry(channel, buffer, crc, sizeOf(account), body -> write(account, body));
+                count++;
+            }
+            if (buffer.remaining() < Integer.BYTES + Long.BYTES) {
+                drain(channel, buffer);
+            }
+            buffer.putInt(0).putLong(count);
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        beforePublish.run();
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        deleteOldSnapshots(directory);
+        return count;
+    }
+
+    // Load the newest readable snapshot, returns the LSN it covers
+    public Optional<Long> loadLatest(Consumer<IdHighWater> idsConsumer, Consumer<FxRate.Rates> ratesConsumer,
+                                     Consumer<HourlyTotal> totalsConsumer, Consumer<AccountSnapshot> consumer) {
+        final var directory = Path.of(config.getDirectory());
+        if (!config.isEnabled() || !Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try {
+            for (var snapshot : listSnapshots(directory).reversed()) {
+                final var ids = new IdHighWater[1];
+                final var rates = new ArrayList<FxRate.Rates>();
+                final var totals = new ArrayList<HourlyTotal>();
+                final var accounts = new ArrayList<AccountSnapshot>();
+                try {
+                    final long lsn = read(snapshot, highWater -> ids[0] = highWater, rates::add, totals::add,
+                            accounts::add);
+                    idsConsumer.accept(ids[0]);
+                    rates.forEach(ratesConsumer);
+                    totals.forEach(totalsConsumer);
+                    accounts.forEach(consumer);
+                    return Optional.of(lsn);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Skipping unreadable snapshot {}", snapshot.getFileName(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new JournalException("Cannot list snapshots in " + directory, e);
+        }
+        return Optional.empty();
+    }
+
+    // Hourly totals of the newest readable snapshot, returns the LSN they cover. The accounts are not read.
+    public Optional<Long> loadLatestTotals(Consumer<HourlyTotal> consumer) {
+        final var directory = Path.of(config.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try {
+            for (var snapshot : listSnapshots(directory).reversed()) {
+                final var totals = new ArrayList<HourlyTotal>();
+                try {
+                    final long lsn = read(snapshot, ids -> {}, rates -> {}, totals::add, null);
+                    totals.forEach(consumer);
+                    return Optional.of(lsn);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Skipping unreadable snapshot {}", snapshot.getFileName(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new JournalException("Cannot list snapshots in " + directory, e);
+        }
+        return Optional.empty();
+    }
+
+    // Stops before the accounts when consumer is null
+    private long read(Path snapshot, Consumer<IdHighWater> idsConsumer, Consumer<FxRate.Rates> ratesConsumer,
+                      Consumer<HourlyTotal> totalsConsumer, Consumer<AccountSnapshot> consumer) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("Not a ledger snapshot");
+            }
+            final long lsn = in.readLong();
+            idsConsumer.accept(new IdHighWater(in.readLong(), in.readLong()));
+            final int tables = in.readInt();
+            final var crc = new CRC32C();
+            for (int i = 0; i < tables; i++) {
+                ratesConsumer.accept(JournalCodec.getRates(readEntry(in, crc, in.readInt())));
+            }
+            read(readEntry(in, crc, in.readInt()), totalsConsumer);
+            if (consumer == null) {
+                return lsn;
+            }
+            long count = 0;
+            int size;
+            while ((size = in.readInt()) != 0) {
+                consumer.accept(read(readEntry(in, crc, size)));
+                count++;
+            }
+            if (in.readLong() != count) {
+                throw new IOException("Account count mismatch");
+            }
+            return lsn;
+        }
+    }
+
+    // Write one [length, crc32c, body] entry, returns the buffer to keep writing to
+    private static ByteBuffer putEntry(FileChannel channel, ByteBuffer buffer, CRC32C crc, int size,
+                                       Consumer<ByteBuffer> body) throws IOException {
+        if (buffer.remaining() < 2 * Integer.BYTES + size) {
+            drain(channel, buffer);
+            if (buffer.capacity() < 2 * Integer.BYTES + size) {
+                buffer = ByteBuffer.allocate(Integer.highestOneBit(size) << 2);
+            }
+        }
+        final int start = buffer.position();
+        buffer.position(start + 2 * Integer.BYTES);
+        body.accept(buffer);
+        crc.reset();
+        crc.update(buffer.slice(start + 2 * Integer.BYTES, size));
+        buffer.putInt(start, size);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        return buffer;
+    }
+
+    private static ByteBuffer readEntry(DataInputStream in, CRC32C crc, int size) throws IOException {
+        final int checksum = in.readInt();
+        final var body = new byte[size];
+        in.readFully(body);
+        crc.reset();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in snapshot entry");
+        }
+        return ByteBuffer.wrap(body);
+    }
+
+    private static int sizeOf(AccountSnapshot account) {
+        final int size = JournalCodec.sizeOf(account.id()) + JournalCodec.sizeOf(account.accountNo()) + 1
+                + 4 * Long.BYTES + Integer.BYTES;
+        return size + account.transactions().size() * ROW_BYTES;
+    }
+
+    private static void write(AccountSnapshot account, ByteBuffer buffer) {
+        JournalCodec.putString(buffer, account.id());
+        JournalCodec.putString(buffer, account.accountNo());
+        buffer.put((byte) account.baseCcy().ordinal());
+        buffer.putLong(account.balance());
+        buffer.putLong(account.openingBalance());
+        buffer.putLong(account.version());
+        buffer.putLong(account.lastTransactionId());
+        final var txns = account.transactions();
+        buffer.putInt(txns.size());
+        for (int i = 0; i < txns.size(); i++) {
+            buffer.putLong(txns.id(i));
+            buffer.put((byte) txns.type(i).ordinal());
+            buffer.put((byte) txns.currency(i).ordinal());
+            buffer.putLong(txns.amount(i));
+            buffer.putLong(txns.timestamp(i));
+            buffer.putInt(txns.fxVersion(i));
+        }
+    }
+
+    private static AccountSnapshot read(ByteBuffer buffer) {
+        final var id = JournalCodec.getString(buffer);
+        final var accountNo = JournalCodec.getString(buffer);
+        final var baseCcy = CURRENCIES[buffer.get()];
+        final long balance = buffer.getLong();
+        final long openingBalance = buffer.getLong();
+        final long version = buffer.getLong();
+        final long lastTransactionId = buffer.getLong();
+        final int count = buffer.getInt();
+        final var transactions = new HeapTransactionStore(count);
+        for (int i = 0; i < count; i++) {
+            transactions.append(buffer.getLong(), TYPES[buffer.get()], CURRENCIES[buffer.get()],
+                    buffer.getLong(), buffer.getLong(), buffer.getInt());
+        }
+        return new AccountSnapshot(id, accountNo, baseCcy, balance, openingBalance, version, lastTransactionId,
+                transactions);
+    }
+
+    private static void write(List<HourlyTotal> totals, ByteBuffer buffer) {
+        buffer.putInt(totals.size());
+        for (var total : totals) {
+            buffer.putLong(total.hour());
+            buffer.put((byte) total.type().ordinal());
+            buffer.put((byte) total.currency().ordinal());
+            buffer.putLong(total.count());
+            buffer.putLong(total.total());
+        }
+    }
+
+    private static void read(ByteBuffer buffer, Consumer<HourlyTotal> consumer) {
+        final int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            consumer.accept(new HourlyTotal(buffer.getLong(), TYPES[buffer.get()], CURRENCIES[buffer.get()],
+                    buffer.getLong(), buffer.getLong()));
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void deleteOldSnapshots(Path directory) throws IOException {
+        final var snapshots = listSnapshots(directory);
+        for (int i = 0; i < snapshots.size() - Math.max(1, config.getRetain()); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    private static List<Path> listSnapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(Path::getFileName))
+                    .toList();
+        }
+    }
+}
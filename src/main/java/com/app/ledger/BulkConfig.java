@@ -0,0 +1,15 @@
+package com.app.ledger;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("ledger.bulk")
+public class BulkConfig {
+    // import and export files are only read from and written to this directory
+    private String directory = "data/bulk";
+    // bytes parsed as one chunk, the postings of a chunk are applied and journaled together
+    private int chunkSize = 256 * 1024;
+    // parser and writer threads, 0 uses one per available processor
+    private int parallelism;
+}
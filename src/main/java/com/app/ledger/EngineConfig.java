@@ -0,0 +1,22 @@
+package com.app.ledger;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("ledger.engine")
+public class EngineConfig {
+
+    public enum Mode {
+        // postings run on the request thread under per-account locks
+        LOCKING,
+        // postings run on the single thread of the shard that owns the account
+        SHARDED
+    }
+
+    private Mode mode = Mode.LOCKING;
+    // number of shards, 0 uses one per available processor
+    private int shards;
+    // requests waiting per shard before new ones are rejected
+    private int queueCapacity = 4096;
+}
@@ -0,0 +1,83 @@
+package com.app.ledger;
+
+import com.app.transaction.Currency;
+import com.app.transaction.FxRate;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+// Publishes the rates in ledger.fx.file whenever the file changes. The file holds one FROM.TO=rate
+// line per pair (e.g. GBP.USD=1.414), pairs left out keep their current rate.
+@Singleton
+@Requires(property = "ledger.fx.file")
+public class FxRateFileWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FxRateFileWatcher.class);
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    FxRate fxRate;
+
+    @Value("${ledger.fx.file}")
+    String file;
+
+    private FileTime lastModified;
+
+    @Scheduled(fixedDelay = "${ledger.fx.poll-interval:10s}")
+    synchronized void poll() {
+        // a follower picks up the rates its primary published
+        if (ledgerService.isReadOnly()) {
+            return;
+        }
+        final var path = Path.of(file);
+        try {
+            final var modified = Files.getLastModifiedTime(path);
+            if (modified.equals(lastModified)) {
+                return;
+            }
+            // remembered before parsing so a broken file is reported once, not on every poll
+            lastModified = modified;
+            final var quotes = read(path);
+            // an unchanged file, e.g. after a restart, does not create a new version
+            if (!fxRate.next(quotes).sameRatesAs(fxRate.current())) {
+                final var published = ledgerService.publishFxRates(quotes);
+                LOG.info("Published FX rates version {} from {}", published.version(), path);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot load FX rates from {}", path, e);
+        }
+    }
+
+    static Map<Currency, Map<Currency, BigDecimal>> read(Path path) throws IOException {
+        final var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        final var quotes = new EnumMap<Currency, Map<Currency, BigDecimal>>(Currency.class);
+        for (var key : properties.stringPropertyNames()) {
+            final var pair = key.split("\\.");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected FROM.TO, got " + key);
+            }
+            quotes.computeIfAbsent(Currency.valueOf(pair[0].trim()), from -> new EnumMap<>(Currency.class))
+                    .put(Currency.valueOf(pair[1].trim()), new BigDecimal(properties.getProperty(key).trim()));
+        }
+        return quotes;
+    }
+}
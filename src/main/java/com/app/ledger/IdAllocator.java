@@ -0,0 +1,123 @@
+package com.app.ledger;
+
+import com.app.journal.IdHighWater;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out account numbers and transaction ids without a shared lock.
+//
+// Transaction ids are 63-bit and time-ordered: milliseconds since 2024, a 12-bit sequence within the
+// millisecond and the 10-bit node id. They never go backwards, a clock step back or more than 4096
+// ids in one millisecond borrow from the next millisecond instead.
+//
+// Account numbers are 9 digits and a Luhn check digit. Each thread takes a block of counters at a
+// time, and counters are scrambled by an invertible affine map so consecutive accounts do not get
+// neighbouring numbers. Recovery reports what it replays so neither kind is handed out twice, and
+// snapshots carry the high-water mark for accounts and postings whose records were pruned with them.
+@Singleton
+public class IdAllocator {
+
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final int ACCOUNT_BODY_DIGITS = 9;
+    private static final long ACCOUNT_SPACE = 1_000_000_000L;
+    // coprime with ACCOUNT_SPACE, so the map is a bijection
+    private static final long SCRAMBLE = 387_420_489L;
+    private static final long SCRAMBLE_INVERSE =
+            BigInteger.valueOf(SCRAMBLE).modInverse(BigInteger.valueOf(ACCOUNT_SPACE)).longValueExact();
+    private static final long OFFSET = 271_828_182L;
+    private static final int BLOCK_SIZE = 64;
+
+    // milliseconds and sequence of the last transaction id, without the node
+    private final AtomicLong lastTransaction = new AtomicLong();
+    // first account counter not yet handed to a thread
+    private final AtomicLong nextBlock = new AtomicLong();
+    // next counter and end of the block each thread draws from
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+
+    // distinguishes instances writing to separate journals, 0 to 1023
+    @Value("${ledger.ids.node:0}")
+    int node;
+
+    public long nextTransactionId() {
+        final long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        final long state = lastTransaction.updateAndGet(last -> Math.max(last + 1, now));
+        return state << NODE_BITS | node;
+    }
+
+    // Milliseconds since the Unix epoch at which the id was handed out
+    public static long timestampOf(long transactionId) {
+        return (transactionId >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public String nextAccountNo() {
+        final var range = block.get();
+        if (range[0] == range[1]) {
+            range[0] = nextBlock.getAndAdd(BLOCK_SIZE);
+            range[1] = range[0] + BLOCK_SIZE;
+        }
+        final long counter = range[0]++;
+        if (counter >= ACCOUNT_SPACE) {
+            throw new IllegalStateException("Account numbers exhausted");
+        }
+        final var body = String.format("%0" + ACCOUNT_BODY_DIGITS + "d", (counter * SCRAMBLE + OFFSET) % ACCOUNT_SPACE);
+        return body + checkDigit(body);
+    }
+
+    // Called for every recovered transaction id, so ids allocated after recovery sort after them
+    public void observeTransactionId(long id) {
+        lastTransaction.accumulateAndGet(id >>> NODE_BITS, Math::max);
+    }
+
+    // Called for every replayed account this allocator issued. Any other number maps to an arbitrary
+    // counter and would waste the numbers below it, so imported accounts and numbers from before
+    // allocation was counter-based are left to the repository's duplicate check.
+    public void observeAccountNo(String accountNo) {
+        if (!isValidAccountNo(accountNo)) {
+            return;
+        }
+        final long body = Long.parseLong(accountNo.substring(0, ACCOUNT_BODY_DIGITS));
+        final long counter = Math.floorMod(body - OFFSET, ACCOUNT_SPACE) * SCRAMBLE_INVERSE % ACCOUNT_SPACE;
+        nextBlock.accumulateAndGet(counter + 1, Math::max);
+    }
+
+    // Covers every id handed out so far, a thread's partly used block included
+    public IdHighWater highWater() {
+        return new IdHighWater(nextBlock.get(), lastTransaction.get() << NODE_BITS | node);
+    }
+
+    // Called with the high-water mark of the snapshot recovery starts from. Closed accounts and
+    // postings trimmed from histories are not in the snapshot, and their journal records may be gone.
+    public void observe(IdHighWater highWater) {
+        nextBlock.accumulateAndGet(highWater.nextAccountCounter(), Math::max);
+        observeTransactionId(highWater.lastTransactionId());
+    }
+
+    public static boolean isValidAccountNo(String accountNo) {
+        return accountNo != null
+                && accountNo.length() == ACCOUNT_BODY_DIGITS + 1
+                && accountNo.chars().allMatch(Character::isDigit)
+                && checkDigit(accountNo.substring(0, ACCOUNT_BODY_DIGITS)) == accountNo.charAt(ACCOUNT_BODY_DIGITS);
+    }
+
+    // Luhn: double every second digit from the right of the body
+    static char checkDigit(String body) {
+        int sum = 0;
+        for (int i = body.length() - 1, position = 0; i >= 0; i--, position++) {
+            int digit = body.charAt(i) - '0';
+            if (position % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+}
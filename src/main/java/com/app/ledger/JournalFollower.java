@@ -0,0 +1,136 @@
+package com.app.ledger;
+
+import com.app.api.dto.ReplicationStatus;
+import com.app.journal.Journal;
+import com.app.journal.JournalConfig;
+import com.app.journal.JournalException;
+import com.app.journal.JournalTailer;
+import com.app.ledger.exception.LedgerExceptions;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Keeps a read-only copy of the ledger by tailing the journal a primary instance writes to a shared
+// directory. Records are applied in order with the same replay recovery uses. Promotion takes the
+// journal over once the primary has let go of it, after which this instance is the primary.
+@Singleton
+public class JournalFollower {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalFollower.class);
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    Journal journal;
+
+    @Inject
+    JournalConfig journalConfig;
+
+    @Inject
+    MeterRegistry registry;
+
+    // set while following, guarded by this
+    private JournalTailer tailer;
+    private volatile boolean following;
+    private volatile long appliedLsn;
+    // wall clock time of the last poll that read the journal to its end
+    private volatile long caughtUpAt;
+    private volatile String error;
+
+    public boolean isFollowing() {
+        return following;
+    }
+
+    // Catch up from the given LSN, then keep polling until promoted
+    synchronized void start(long afterLsn) {
+        ledgerService.setReadOnly(true);
+        tailer = new JournalTailer(Path.of(journalConfig.getDirectory()), afterLsn);
+        appliedLsn = afterLsn;
+        caughtUpAt = System.currentTimeMillis();
+        following = true;
+        poll();
+        Gauge.builder("ledger.replication.lag", this, follower -> follower.lagMillis() / 1000.0)
+                .description("Seconds the follower's reads may be behind the primary")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelay = "${ledger.replication.poll-interval:100ms}")
+    synchronized void poll() {
+        if (tailer == null) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            if (tailer.poll((record, lsn) -> ledgerService.replay(record)) > 0) {
+                appliedLsn = tailer.lastLsn();
+            }
+            caughtUpAt = start;
+            error = null;
+        } catch (JournalException e) {
+            // records this copy never saw were pruned, applying later ones would serve wrong balances.
+            // Reads stay on the last consistent state, with a growing lag, until a restart loads a snapshot.
+            LOG.error("Stopped following journal in {}, restart to load a newer snapshot", journalConfig.getDirectory(), e);
+            error = e.getMessage();
+            closeTailer();
+        } catch (IOException | RuntimeException e) {
+            if (error == null) {
+                LOG.error("Cannot follow journal in {}", journalConfig.getDirectory(), e);
+            }
+            error = e.getMessage();
+        }
+    }
+
+    // Take over from a primary that has stopped: apply what is left of its journal, open it for
+    // appends and settle transfers it left in flight. Fails while the primary still holds the journal.
+    public synchronized ReplicationStatus promote() {
+        if (following && tailer == null) {
+            throw new LedgerExceptions.PromotionFailedException(error);
+        }
+        if (tailer != null) {
+            final long lsn = tailer.lastLsn();
+            try {
+                journal.open(lsn, (record, recordLsn) -> ledgerService.replay(record));
+            } catch (JournalException e) {
+                throw new LedgerExceptions.PromotionFailedException(e.getMessage());
+            }
+            closeTailer();
+            following = false;
+            ledgerService.setReadOnly(false);
+            ledgerService.settlePendingTransfers();
+            LOG.info("Promoted to primary at LSN {}", journal.lastWrittenLsn());
+        }
+        return status();
+    }
+
+    public ReplicationStatus status() {
+        final boolean following = isFollowing();
+        return ReplicationStatus.builder()
+                .role(following ? ReplicationConfig.Role.FOLLOWER : ReplicationConfig.Role.PRIMARY)
+                .appliedLsn(following ? appliedLsn : journal.lastWrittenLsn())
+                .lagMillis(following ? lagMillis() : null)
+                .error(error)
+                .build();
+    }
+
+    private long lagMillis() {
+        return following ? System.currentTimeMillis() - caughtUpAt : 0;
+    }
+
+    private void closeTailer() {
+        try {
+            tailer.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close journal tailer", e);
+        }
+        tailer = null;
+    }
+}
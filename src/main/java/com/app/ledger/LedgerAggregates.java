@@ -0,0 +1,140 @@
+package com.app.ledger;
+
+import com.app.journal.HourlyTotal;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
+import com.app.transaction.Transaction;
+import com.app.transaction.Type;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Posting counts and totals per hour, type and base currency, updated as each posting is made so a
+// report costs one pass over the hours it covers whatever the number of transactions. Cells are
+// LongAdders, concurrent postings into the same hour do not contend on one counter. Snapshots carry the
+// hours as of their LSN and recovery counts the journal after it, so closed accounts and trimmed
+// histories stay counted across restarts.
+@Singleton
+public class LedgerAggregates {
+
+    public enum Granularity {
+        HOUR(1),
+        DAY(24);
+
+        private final long hours;
+
+        Granularity(long hours) {
+            this.hours = hours;
+        }
+    }
+
+    // One row per bucket, type and currency with postings. Amounts are minor units of the currency.
+    public record Row(long startMicros, Type type, Currency currency, long count, long total) {}
+
+    private static final long MICROS_PER_HOUR = 3_600_000_000L;
+    private static final Type[] TYPES = Type.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int CELLS = TYPES.length * CURRENCIES.length;
+
+    // cells indexed by [type ordinal * currencies + currency ordinal]
+    private static final class Bucket {
+        final long hour;
+        final LongAdder[] counts = new LongAdder[CELLS];
+        final LongAdder[] totals = new LongAdder[CELLS];
+
+        Bucket(long hour) {
+            this.hour = hour;
+            for (int i = 0; i < CELLS; i++) {
+                counts[i] = new LongAdder();
+                totals[i] = new LongAdder();
+            }
+        }
+    }
+
+    // keyed by hours since the epoch
+    private final ConcurrentSkipListMap<Long, Bucket> hours = new ConcurrentSkipListMap<>();
+    // postings mostly land in the current hour, this skips the map lookup for them
+    private volatile Bucket latest = new Bucket(Long.MIN_VALUE);
+
+    // Count a posting once it has been applied to its account
+    public void record(Transaction transaction) {
+        final var amount = transaction.getAmount();
+        record(transaction.getType(), amount.currency(), amount.minor(), EpochMicros.of(transaction.getTimestamp()));
+    }
+
+    public void record(Type type, Currency currency, long amount, long timestampMicros) {
+        add(Math.floorDiv(timestampMicros, MICROS_PER_HOUR), type, currency, 1, amount);
+    }
+
+    // Add totals loaded from a snapshot
+    public void add(HourlyTotal total) {
+        add(total.hour(), total.type(), total.currency(), total.count(), total.total());
+    }
+
+    // Every hour, type and currency with postings
+    public List<HourlyTotal> hourlyTotals() {
+        final var totals = new ArrayList<HourlyTotal>();
+        for (var bucket : hours.values()) {
+            for (int i = 0; i < CELLS; i++) {
+                final long count = bucket.counts[i].sum();
+                if (count > 0) {
+                    totals.add(new HourlyTotal(bucket.hour, TYPES[i / CURRENCIES.length],
+                            CURRENCIES[i % CURRENCIES.length], count, bucket.totals[i].sum()));
+                }
+            }
+        }
+        return totals;
+    }
+
+    private void add(long hour, Type type, Currency currency, long count, long amount) {
+        var bucket = latest;
+        if (bucket.hour != hour) {
+            bucket = hours.computeIfAbsent(hour, Bucket::new);
+            if (hour > latest.hour) {
+                latest = bucket;
+            }
+        }
+        final int cell = type.ordinal() * CURRENCIES.length + currency.ordinal();
+        bucket.counts[cell].add(count);
+        bucket.totals[cell].add(amount);
+    }
+
+    // Rows for the buckets overlapping [from, to), oldest first, each with every hour it spans. A posting
+    // in flight may be counted before its amount is added.
+    public List<Row> summarize(long fromMicros, long toMicros, Granularity granularity) {
+        final long span = granularity.hours;
+        final long fromHour = Math.floorDiv(Math.floorDiv(fromMicros, MICROS_PER_HOUR), span) * span;
+        final long toHour = Math.ceilDiv(Math.ceilDiv(toMicros, MICROS_PER_HOUR), span) * span;
+        final Map<Long, long[]> buckets = new TreeMap<>();
+        for (var bucket : hours.subMap(fromHour, true, toHour, false).values()) {
+            // counts in the first half, totals in the second
+            final var sums = buckets.computeIfAbsent(Math.floorDiv(bucket.hour, span) * span,
+                    start -> new long[2 * CELLS]);
+            for (int i = 0; i < CELLS; i++) {
+                sums[i] += bucket.counts[i].sum();
+                try {
+                    sums[CELLS + i] = Math.addExact(sums[CELLS + i], bucket.totals[i].sum());
+                } catch (ArithmeticException e) {
+                    throw new LedgerExceptions.InvalidReportRequestException("a " + CURRENCIES[i % CURRENCIES.length]
+                            + " total is out of range, use shorter buckets");
+                }
+            }
+        }
+        final var rows = new ArrayList<Row>();
+        buckets.forEach((start, sums) -> {
+            for (int i = 0; i < CELLS; i++) {
+                if (sums[i] > 0) {
+                    rows.add(new Row(start * MICROS_PER_HOUR, TYPES[i / CURRENCIES.length],
+                            CURRENCIES[i % CURRENCIES.length], sums[i], sums[CELLS + i]));
+                }
+            }
+        });
+        return rows;
+    }
+}
@@ -0,0 +1,425 @@
+package com.app.ledger;
+
+import com.app.account.Account;
+import com.app.account.AccountRepository;
+import com.app.api.dto.BulkReport;
+import com.app.journal.HistorySegmentStore;
+import com.app.ledger.exception.LedgerBaseException;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
+import com.app.transaction.HeapTransactionStore;
+import com.app.transaction.Money;
+import com.app.transaction.Transaction;
+import com.app.transaction.TransactionStore;
+import com.app.transaction.Type;
+import io.micrometer.core.annotation.Timed;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Loads a book of accounts from a CSV file and writes the whole ledger to one, for migrations and
+// backups. Import reads the file in fixed-size chunks cut at line ends, parses a bounded number of
+// them in parallel and applies them in file order straight to the accounts, one journal record per
+// chunk. Export encodes contiguous ranges of accounts in parallel into part files, then joins the
+// parts with FileChannel.transferTo. Memory stays bounded by a few chunks whatever the file size.
+@Singleton
+public class LedgerBulk {
+
+    public static final String HEADER = "account_no,base_ccy,id,type,amount,currency,timestamp,fx_version";
+
+    private static final int COLUMNS = 8;
+
+    // rejected rows listed in a report, the count covers all of them
+    private static final int MAX_ERRORS = 100;
+
+    // postings copied per lock hold while exporting an account
+    private static final int EXPORT_ROWS_PER_LOCK = 4096;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    // One CSV line. Rows without a type only open the account; the line is relative to its chunk.
+    public record Row(int line, String accountNo, Currency baseCcy, Transaction posting, String error) {}
+
+    private record Chunk(List<Row> rows, int lines) {}
+
+    // Postings copied out of an account for export and the sequence to resume from
+    private record ExportChunk(TransactionStore rows, long next) {}
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    AccountRepository accountRepository;
+
+    @Inject
+    HistorySegmentStore history;
+
+    private final BulkConfig config;
+    private final int threads;
+
+    public LedgerBulk(BulkConfig config) {
+        this.config = config;
+        this.threads = config.getParallelism() > 0 ? config.getParallelism() : Runtime.getRuntime().availableProcessors();
+    }
+
+    // Rows are applied chunk by chunk as soon as they are parsed, a rejected row does not stop the
+    // import. The postings of an account must appear in the order they were made.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "import"}, histogram = true)
+    public BulkReport importCsv(String file) {
+        if (ledgerService.isReadOnly()) {
+            throw new LedgerExceptions.ReadOnlyReplicaException();
+        }
+        final var path = resolve(file);
+        if (!Files.isRegularFile(path)) {
+            throw new LedgerExceptions.InvalidBulkRequestException("no file " + file);
+        }
+
+        final long start = System.nanoTime();
+        final var progress = new ImportProgress();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ);
+             var executor = Executors.newFixedThreadPool(threads)) {
+            final var parsing = new ArrayDeque<Future<Chunk>>();
+            final var buffer = ByteBuffer.allocate(config.getChunkSize());
+            boolean first = true;
+            boolean end = false;
+            while (!end) {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // fill the chunk
+                }
+                end = buffer.hasRemaining();
+                buffer.flip();
+                final int cut = end ? buffer.limit() : lastLineEnd(buffer) + 1;
+                if (cut == 0 && !end) {
+                    throw new LedgerExceptions.InvalidBulkRequestException(
+                            "a line is longer than ledger.bulk.chunk-size " + config.getChunkSize());
+                }
+                final var bytes = new byte[cut];
+                buffer.get(bytes);
+                buffer.compact();
+                final boolean header = first;
+                first = false;
+                parsing.add(executor.submit(() -> parse(bytes, header)));
+                // parsed chunks wait to be applied in order, at most one per thread ahead
+                while (parsing.size() > threads) {
+                    progress.apply(parsing.poll().get());
+                }
+            }
+            while (!parsing.isEmpty()) {
+                progress.apply(parsing.poll().get());
+            }
+            progress.bytes = channel.size();
+        } catch (IOException e) {
+            throw new LedgerExceptions.BulkFileException(file, e);
+        } catch (ExecutionException e) {
+            throw rethrow(file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerExceptions.BulkFileException(file, e);
+        }
+        return report(file, progress.rows, progress.rejected, progress.errors, progress.bytes, start);
+    }
+
+    // Accounts are written in account number order with their postings oldest first, cold segments
+    // included. Each account is read under its lock a slice at a time, so the file is not a point in
+    // time copy of the ledger: postings made during the export may or may not be in it.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "export"}, histogram = true)
+    public BulkReport exportCsv(String file) {
+        final var target = resolve(file);
+        final long start = System.nanoTime();
+        final var accounts = accountRepository.findAll().stream()
+                .sorted(Comparator.comparing(Account::getAccountNo))
+                .toList();
+        final int parts = Math.max(1, Math.min(threads, accounts.size()));
+        final var partFiles = new ArrayList<Path>(parts);
+        final var temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        long rows = 0;
+        try {
+            Files.createDirectories(target.getParent());
+            try (var executor = Executors.newFixedThreadPool(threads)) {
+                final var written = new ArrayList<Future<Long>>(parts);
+                for (int i = 0; i < parts; i++) {
+                    final var range = accounts.subList((int) ((long) i * accounts.size() / parts),
+                            (int) ((long) (i + 1) * accounts.size() / parts));
+                    final var part = target.resolveSibling(target.getFileName() + ".part" + i);
+                    partFiles.add(part);
+                    written.add(executor.submit(() -> writePart(range, part)));
+                }
+                for (var part : written) {
+                    rows += part.get();
+                }
+            }
+
+            // the parts are joined without passing through the heap, and the file only appears once complete
+            try (var out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap((HEADER + "\n").getBytes(StandardCharsets.US_ASCII)));
+                for (var part : partFiles) {
+                    try (var in = FileChannel.open(part, StandardOpenOption.READ)) {
+                        final long size = in.size();
+                        for (long position = 0; position < size; ) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+                out.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return report(file, rows, 0, List.of(), Files.size(target), start);
+        } catch (IOException e) {
+            throw new LedgerExceptions.BulkFileException(file, e);
+        } catch (ExecutionException e) {
+            throw rethrow(file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerExceptions.BulkFileException(file, e);
+        } finally {
+            for (var part : partFiles) {
+                deleteQuietly(part);
+            }
+            deleteQuietly(temporary);
+        }
+    }
+
+    // Counts and errors of an import, only touched by the thread applying the chunks
+    private final class ImportProgress {
+        long rows;
+        long rejected;
+        long bytes;
+        int lineOffset;
+        final List<String> errors = new ArrayList<>();
+
+        void apply(Chunk chunk) {
+            final var valid = new ArrayList<Row>(chunk.rows().size());
+            for (var row : chunk.rows()) {
+                if (row.error() == null) {
+                    valid.add(row);
+                }
+            }
+            final var errors = valid.isEmpty() ? List.<String>of() : ledgerService.importRows(valid);
+            // errors are reported in line order
+            int next = 0;
+            for (var row : chunk.rows()) {
+                if (row.error() != null) {
+                    reject(row, row.error());
+                } else if (errors.get(next++) != null) {
+                    reject(row, errors.get(next - 1));
+                }
+            }
+            rows += chunk.rows().size();
+            lineOffset += chunk.lines();
+        }
+
+        private void reject(Row row, String error) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("line " + (lineOffset + row.line()) + ": " + error);
+            }
+        }
+    }
+
+    // Lines are numbered from 1 within the chunk, the first chunk must start with the header
+    private static Chunk parse(byte[] bytes, boolean header) {
+        final var lines = new String(bytes, StandardCharsets.UTF_8).split("\n", -1);
+        // a chunk cut at a line end leaves an empty last element
+        final int count = lines[lines.length - 1].isEmpty() ? lines.length - 1 : lines.length;
+        if (header && count == 0) {
+            throw new LedgerExceptions.InvalidBulkRequestException("the first line must be " + HEADER);
+        }
+        final var rows = new ArrayList<Row>(count);
+        for (int i = 0; i < count; i++) {
+            final var line = lines[i].endsWith("\r") ? lines[i].substring(0, lines[i].length() - 1) : lines[i];
+            if (header && i == 0) {
+                if (!line.equals(HEADER)) {
+                    throw new LedgerExceptions.InvalidBulkRequestException("the first line must be " + HEADER);
+                }
+            } else if (!line.isBlank()) {
+                rows.add(parseRow(i + 1, line));
+            }
+        }
+        return new Chunk(rows, count);
+    }
+
+    private static Row parseRow(int line, String text) {
+        final var fields = text.split(",", -1);
+        if (fields.length != COLUMNS) {
+            return new Row(line, null, null, null, "expected " + COLUMNS + " columns, got " + fields.length);
+        }
+        final var accountNo = fields[0].trim();
+        // numbers name history segment files and appear in URL paths
+        if (accountNo.isEmpty() || !accountNo.chars().allMatch(c -> c < 128 && Character.isLetterOrDigit(c))) {
+            return new Row(line, null, null, null, "invalid account number " + accountNo);
+        }
+        try {
+            final var baseCcy = Currency.valueOf(fields[1].trim());
+            if (fields[3].isBlank()) {
+                return new Row(line, accountNo, baseCcy, null, null);
+            }
+            final var id = fields[2].isBlank() ? null : Long.parseLong(fields[2].trim());
+            if (id != null && id <= 0) {
+                return new Row(line, accountNo, baseCcy, null, "ids must be positive");
+            }
+            final var posting = Transaction.builder()
+                    .id(id == null ? null : Long.toString(id))
+                    .accountNo(accountNo)
+                    .type(Type.valueOf(fields[3].trim()))
+                    .amount(Money.of(new BigDecimal(fields[4].trim()), baseCcy))
+                    .currency(fields[5].isBlank() ? baseCcy : Currency.valueOf(fields[5].trim()))
+                    .timestamp(LocalDateTime.parse(fields[6].trim()).truncatedTo(ChronoUnit.MICROS))
+                    .fxVersion(fields[7].isBlank() ? 0 : Integer.parseInt(fields[7].trim()))
+                    .build();
+            return new Row(line, accountNo, baseCcy, posting, null);
+        } catch (IllegalArgumentException | ArithmeticException | DateTimeParseException e) {
+            return new Row(line, accountNo, null, null, "cannot parse: " + e.getMessage());
+        }
+    }
+
+    private long writePart(List<Account> accounts, Path part) throws IOException {
+        long rows = 0;
+        final var buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        final var line = new StringBuilder(128);
+        try (var channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (var account : accounts) {
+                long next = 0;
+                while (next >= 0) {
+                    final long from = next;
+                    // copied under the lock and written outside it, the copy starts over if the read does
+                    final var chunk = account.readHistory(from, from + EXPORT_ROWS_PER_LOCK, history::load, store -> {
+                        if (account.isClosed()) {
+                            return null;
+                        }
+                        final long firstSequence = account.firstHistorySequence();
+                        final int index = (int) Math.max(0, from - firstSequence);
+                        final int end = Math.min(store.size(), index + EXPORT_ROWS_PER_LOCK);
+                        final var copy = new HeapTransactionStore(Math.max(0, end - index));
+                        store.copyTo(index, end, copy);
+                        return new ExportChunk(copy, firstSequence + end);
+                    });
+                    if (chunk == null) {
+                        break;
+                    }
+                    if (chunk.rows().size() == 0) {
+                        if (next == 0) {
+                            // an account without postings still gets a line
+                            line.setLength(0);
+                            line.append(account.getAccountNo()).append(',').append(account.getBaseCcy())
+                                    .append(",,,,,,");
+                            write(channel, buffer, line);
+                            rows++;
+                        }
+                        next = -1;
+                    } else {
+                        for (int index = 0; index < chunk.rows().size(); index++) {
+                            encode(line, account, chunk.rows(), index);
+                            write(channel, buffer, line);
+                            rows++;
+                        }
+                        next = chunk.next();
+                    }
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return rows;
+    }
+
+    private static void encode(StringBuilder line, Account account, TransactionStore store, int index) {
+        final long id = store.id(index);
+        line.setLength(0);
+        line.append(account.getAccountNo()).append(',')
+                .append(account.getBaseCcy()).append(',')
+                .append(id == 0 ? "" : Long.toString(id)).append(',')
+                .append(store.type(index)).append(',')
+                .append(BigDecimal.valueOf(store.amount(index), account.getBaseCcy().getScale()).toPlainString()).append(',')
+                .append(store.currency(index)).append(',')
+                .append(EpochMicros.toLocalDateTime(store.timestamp(index))).append(',')
+                .append(store.fxVersion(index));
+    }
+
+    // Lines are ASCII, one byte per char
+    private static void write(FileChannel channel, ByteBuffer buffer, StringBuilder line) throws IOException {
+        if (buffer.remaining() < line.length() + 1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        for (int i = 0; i < line.length(); i++) {
+            buffer.put((byte) line.charAt(i));
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private static int lastLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Files are only read from and written to the configured directory
+    private Path resolve(String file) {
+        final var directory = Path.of(config.getDirectory()).toAbsolutePath().normalize();
+        final var path = directory.resolve(file).normalize();
+        if (file.isBlank() || !path.startsWith(directory) || path.equals(directory)) {
+            throw new LedgerExceptions.InvalidBulkRequestException("file must name a file in " + config.getDirectory());
+        }
+        return path;
+    }
+
+    private static BulkReport report(String file, long rows, long rejected, List<String> errors, long bytes,
+                                     long start) {
+        final long nanos = Math.max(1, System.nanoTime() - start);
+        return BulkReport.builder()
+                .file(file)
+                .rows(rows)
+                .rejected(rejected)
+                .errors(List.copyOf(errors))
+                .bytes(bytes)
+                .durationMillis(nanos / 1_000_000)
+                .rowsPerSecond(rows * 1_000_000_000L / nanos)
+                .megabytesPerSecond(bytes * 1e9 / nanos / (1024 * 1024))
+                .build();
+    }
+
+    private static RuntimeException rethrow(String file, ExecutionException e) {
+        if (e.getCause() instanceof LedgerBaseException ledger) {
+            return ledger;
+        }
+        return new LedgerExceptions.BulkFileException(file, e.getCause() instanceof Exception cause ? cause : e);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // left behind, overwritten by the next export of the same file
+        }
+    }
+}
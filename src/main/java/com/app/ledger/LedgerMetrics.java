@@ -0,0 +1,99 @@
+package com.app.ledger;
+
+import com.app.account.Account;
+import com.app.account.AccountRepository;
+import com.app.account.LockStats;
+import com.app.api.IdempotencyCache;
+import com.app.journal.Journal;
+import com.app.transaction.Currency;
+import com.app.transaction.Transaction;
+import com.app.transaction.Type;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Ledger meters. Posting counters exist up front for every type and currency, so recording one is
+// an array lookup and an increment. Gauges and function meters are only evaluated on scrape.
+@Singleton
+public class LedgerMetrics {
+
+    private static final Type[] TYPES = Type.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final MeterRegistry registry;
+    // indexed by [type ordinal * currencies + currency ordinal]
+    private final Counter[] postings = new Counter[TYPES.length * CURRENCIES.length];
+    private final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+    public LedgerMetrics(MeterRegistry registry, AccountRepository accountRepository, Journal journal,
+                         IdempotencyCache idempotency, LedgerShards shards) {
+        this.registry = registry;
+        for (var type : TYPES) {
+            for (var currency : CURRENCIES) {
+                postings[type.ordinal() * CURRENCIES.length + currency.ordinal()] = Counter.builder("ledger.postings")
+                        .description("Postings applied, by type and the currency the client used")
+                        .tag("type", type.name())
+                        .tag("currency", currency.name())
+                        .register(registry);
+            }
+        }
+
+        Gauge.builder("ledger.accounts", accountRepository, AccountRepository::count)
+                .description("Open accounts")
+                .register(registry);
+        Gauge.builder("ledger.transactions", accountRepository,
+                        repository -> repository.streamAll().mapToLong(Account::getVersion).sum())
+                .description("Postings ever applied to the open accounts")
+                .register(registry);
+
+        FunctionCounter.builder("ledger.lock.contended", LockStats.class, stats -> LockStats.contendedCount())
+                .description("Account lock acquisitions that had to wait")
+                .register(registry);
+        FunctionCounter.builder("ledger.lock.wait", LockStats.class, stats -> LockStats.waitNanos() / 1e9)
+                .description("Seconds spent waiting for contended account locks")
+                .baseUnit("seconds")
+                .register(registry);
+
+        FunctionTimer.builder("ledger.journal.flush", journal, Journal::flushCount, Journal::flushNanos,
+                        TimeUnit.NANOSECONDS)
+                .description("Journal batch writes including fsync")
+                .register(registry);
+        Gauge.builder("ledger.journal.queue", journal, Journal::queueDepth)
+                .description("Records waiting to be journaled")
+                .register(registry);
+
+        if (shards.isEnabled()) {
+            Gauge.builder("ledger.shard.queue", shards, LedgerShards::queueDepth)
+                    .description("Requests and handoffs waiting for a shard")
+                    .register(registry);
+        }
+
+        FunctionCounter.builder("ledger.idempotency.hits", idempotency, cache -> cache.stats().getHits())
+                .register(registry);
+        FunctionCounter.builder("ledger.idempotency.misses", idempotency, cache -> cache.stats().getMisses())
+                .register(registry);
+        FunctionCounter.builder("ledger.idempotency.evictions", idempotency, cache -> cache.stats().getEvictions())
+                .register(registry);
+        Gauge.builder("ledger.idempotency.size", idempotency, cache -> cache.stats().getSize())
+                .register(registry);
+    }
+
+    public void posted(Transaction transaction) {
+        postings[transaction.getType().ordinal() * CURRENCIES.length + transaction.getCurrency().ordinal()].increment();
+    }
+
+    public void error(Throwable error) {
+        errors.computeIfAbsent(error.getClass(), type -> Counter.builder("ledger.errors")
+                        .description("Failed ledger operations, by exception")
+                        .tag("exception", type.getSimpleName())
+                        .register(registry))
+                .increment();
+    }
+}
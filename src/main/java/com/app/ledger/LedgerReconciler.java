@@ -0,0 +1,379 @@
+package com.app.ledger;
+
+import com.app.account.Account;
+import com.app.account.AccountRepository;
+import com.app.api.dto.Discrepancy;
+import com.app.api.dto.ReconciliationReport;
+import com.app.journal.HistorySegmentStore;
+import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
+import com.app.transaction.FxRate;
+import com.app.transaction.Money;
+import com.app.transaction.Type;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Checks that balances, histories and transfers agree. Accounts are split across a fork-join pool and
+// each one is checked under its own lock: its balance against its opening balance plus its postings,
+// the sign and currency of every posting, and that timestamps never go backwards. Every transfer leg
+// is then paired with its other half at the FX table it recorded, so transfers neither create nor
+// lose money. Each account keeps a checkpoint of what was checked, so later runs only read what was
+// posted since, and legs still waiting for their other half carry over to the next run.
+@Singleton
+public class LedgerReconciler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerReconciler.class);
+
+    // accounts one fork-join task checks itself instead of splitting
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    // discrepancies listed in a report, the count covers all of them
+    private static final int MAX_REPORTED = 1000;
+
+    // A transfer leg. Debits are found by every credit they could have produced, one per currency.
+    private record Leg(String accountNo, long sequence, Type type, Currency baseCcy, Currency currency,
+                       long amount, long timestamp, int fxVersion) {}
+
+    private record LegKey(int fxVersion, Currency from, Currency to, long credited) {}
+
+    @Inject
+    AccountRepository accountRepository;
+
+    @Inject
+    HistorySegmentStore history;
+
+    @Inject
+    FxRate fxRate;
+
+    @Inject
+    PendingTransfers transfers;
+
+    @Value("${ledger.fx.rounding:HALF_EVEN}")
+    RoundingMode fxRounding;
+
+    private final ReconciliationConfig config;
+    private final ForkJoinPool pool;
+
+    // legs waiting for their other half and the discrepancies found since the last full run, guarded by this
+    private final Set<Leg> debits = new LinkedHashSet<>();
+    private final Map<LegKey, PriorityQueue<Leg>> debitsByCredit = new HashMap<>();
+    private final List<Leg> credits = new ArrayList<>();
+    private final List<Discrepancy> found = new ArrayList<>();
+
+    private volatile ReconciliationReport last;
+
+    public LedgerReconciler(ReconciliationConfig config) {
+        this.config = config;
+        this.pool = new ForkJoinPool(config.getParallelism() > 0
+                ? config.getParallelism() : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Scheduled(cron = "${ledger.reconciliation.cron:0 30 23 * * *}")
+    void scheduledRun() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            final var report = reconcile(false);
+            LOG.info("Reconciled {} accounts in {} ms, {} discrepancies", report.getAccountsChecked(),
+                    report.getDurationMillis(), report.getDiscrepancyCount());
+        } catch (RuntimeException e) {
+            LOG.error("Reconciliation failed", e);
+        }
+    }
+
+    // Latest report, null before the first run
+    public ReconciliationReport lastReport() {
+        return last;
+    }
+
+    // A full run checks every account from its opening balance and clears the discrepancies found so
+    // far, otherwise only the postings made since each account's checkpoint are read. Either way a
+    // transfer leg is only ever collected once, legs already paired stay paired.
+    public synchronized ReconciliationReport reconcile(boolean full) {
+        final long start = System.nanoTime();
+        final var startedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (full) {
+            found.clear();
+        }
+
+        final var accounts = accountRepository.findAll();
+        final var checked = pool.invoke(new CheckAccounts(accounts, 0, accounts.size(), full));
+        found.addAll(checked.discrepancies);
+        final long matched = pair(checked.legs);
+
+        // legs inside the grace period or owed by a transfer in flight are not reported yet
+        final long cutoff = EpochMicros.of(startedAt.minus(config.getGrace()));
+        final var inFlight = new HashSet<String>();
+        for (var transfer : transfers.pending()) {
+            inFlight.add(transfer.debit().getAccountNo() + ":" + transfer.debit().getSequence());
+        }
+        final var discrepancies = new ArrayList<>(found);
+        final var imbalance = new EnumMap<Currency, Long>(Currency.class);
+        int awaiting = 0;
+        for (var leg : debits) {
+            if (leg.timestamp() >= cutoff || inFlight.contains(leg.accountNo() + ":" + leg.sequence())) {
+                awaiting++;
+            } else {
+                discrepancies.add(unmatched(leg, Discrepancy.Kind.UNMATCHED_TRANSFER_OUT));
+                imbalance.merge(leg.baseCcy(), leg.amount(), Long::sum);
+            }
+        }
+        for (var leg : credits) {
+            if (leg.timestamp() >= cutoff) {
+                awaiting++;
+            } else {
+                discrepancies.add(unmatched(leg, Discrepancy.Kind.UNMATCHED_TRANSFER_IN));
+                imbalance.merge(leg.baseCcy(), leg.amount(), Long::sum);
+            }
+        }
+
+        final var totals = new EnumMap<Currency, BigDecimal>(Currency.class);
+        imbalance.forEach((currency, minor) -> totals.put(currency, Money.ofMinor(minor, currency).toBigDecimal()));
+        final var report = ReconciliationReport.builder()
+                .startedAt(startedAt)
+                .durationMillis((System.nanoTime() - start) / 1_000_000)
+                .full(full)
+                .accountsChecked(checked.accounts)
+                .accountsUnchanged(checked.unchanged)
+                .postingsChecked(checked.postings)
+                .transfersMatched(matched)
+                .transfersAwaiting(awaiting)
+                .transferImbalance(totals)
+                .discrepancyCount(discrepancies.size())
+                .discrepancies(List.copyOf(discrepancies.subList(0, Math.min(MAX_REPORTED, discrepancies.size()))))
+                .build();
+        last = report;
+        return report;
+    }
+
+    @PreDestroy
+    void close() {
+        pool.shutdownNow();
+    }
+
+    // What one task found in its share of the accounts
+    private static final class Partial {
+        int accounts;
+        int unchanged;
+        long postings;
+        final List<Leg> legs = new ArrayList<>();
+        final List<Discrepancy> discrepancies = new ArrayList<>();
+
+        Partial merge(Partial other) {
+            accounts += other.accounts;
+            unchanged += other.unchanged;
+            postings += other.postings;
+            legs.addAll(other.legs);
+            discrepancies.addAll(other.discrepancies);
+            return this;
+        }
+    }
+
+    private final class CheckAccounts extends RecursiveTask<Partial> {
+        private final List<Account> accounts;
+        private final int from;
+        private final int to;
+        private final boolean full;
+
+        CheckAccounts(List<Account> accounts, int from, int to, boolean full) {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.full = full;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                final var partial = new Partial();
+                for (int i = from; i < to; i++) {
+                    check(accounts.get(i), full, partial);
+                }
+                return partial;
+            }
+            final int middle = (from + to) >>> 1;
+            final var left = new CheckAccounts(accounts, from, middle, full);
+            left.fork();
+            final var right = new CheckAccounts(accounts, middle, to, full).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // The balance is re-added from the opening balance on a full run, or when postings past the
+    // checkpoint were trimmed, otherwise from the checkpoint. Legs are collected once, from the
+    // postings past the checkpoint, reading cold segments when those postings have moved to disk.
+    private void check(Account account, boolean full, Partial partial) {
+        // the checkpoint is only written by runs, which are serialized, so it can be read without the lock
+        if (!full && account.getVersion() == account.getReconciledSequence()) {
+            partial.unchanged++;
+            return;
+        }
+        // postings past the checkpoint are read on every run, their segments are loaded before the lock
+        final long from = full ? 0 : account.getReconciledSequence();
+        partial.merge(account.readHistory(from, Long.MAX_VALUE, history::load, store -> {
+            // collected apart from the partial, the read may start over
+            final var checked = new Partial();
+            if (account.isClosed()) {
+                return checked;
+            }
+            final long firstHistorySequence = account.firstHistorySequence();
+            final long checkpoint = account.getReconciledSequence();
+            final long baseSequence;
+            long expected;
+            if (full || checkpoint < firstHistorySequence - 1) {
+                baseSequence = account.firstSequence() - 1;
+                expected = account.getOpeningBalance();
+            } else {
+                baseSequence = checkpoint;
+                expected = account.getReconciledBalance();
+            }
+            final long legsAfter = Math.max(checkpoint, firstHistorySequence - 1);
+
+            int index = (int) (Math.min(baseSequence, legsAfter) + 1 - firstHistorySequence);
+            long previous = index > 0 ? store.timestamp(index - 1) : Long.MIN_VALUE;
+            checked.postings += store.size() - index;
+            for (; index < store.size(); index++) {
+                final long sequence = firstHistorySequence + index;
+                final var type = store.type(index);
+                final var currency = store.currency(index);
+                final long amount = store.amount(index);
+                final long timestamp = store.timestamp(index);
+                final boolean credit = type == Type.DEPOSIT || type == Type.TRANSFER_IN;
+                if (credit ? amount < 0 : amount >= 0) {
+                    checked.discrepancies.add(discrepancy(Discrepancy.Kind.AMOUNT_SIGN, account, sequence,
+                            type + " of " + Money.ofMinor(amount, account.getBaseCcy())));
+                }
+                if (!credit && currency != account.getBaseCcy()) {
+                    checked.discrepancies.add(discrepancy(Discrepancy.Kind.CURRENCY, account, sequence,
+                            type + " in " + currency + " from a " + account.getBaseCcy() + " account"));
+                }
+                if (timestamp < previous) {
+                    checked.discrepancies.add(discrepancy(Discrepancy.Kind.TIMESTAMP_ORDER, account, sequence,
+                            EpochMicros.toLocalDateTime(timestamp) + " is before the previous posting"));
+                }
+                previous = timestamp;
+                if (sequence > baseSequence) {
+                    expected += amount;
+                }
+                if (sequence > legsAfter && (type == Type.TRANSFER_IN || type == Type.TRANSFER_OUT)) {
+                    checked.legs.add(new Leg(account.getAccountNo(), sequence, type, account.getBaseCcy(), currency,
+                            amount, timestamp, store.fxVersion(index)));
+                }
+            }
+
+            final long balance = account.getBalance();
+            if (expected != balance) {
+                checked.discrepancies.add(discrepancy(Discrepancy.Kind.BALANCE, account, null,
+                        "balance " + Money.ofMinor(balance, account.getBaseCcy()) + ", postings add up to "
+                                + Money.ofMinor(expected, account.getBaseCcy())));
+            }
+            if (balance < 0) {
+                checked.discrepancies.add(discrepancy(Discrepancy.Kind.OVERDRAWN, account, null,
+                        "balance " + Money.ofMinor(balance, account.getBaseCcy())));
+            }
+            account.setReconciledSequence(account.getVersion());
+            account.setReconciledBalance(balance);
+            checked.accounts++;
+            return checked;
+        }));
+    }
+
+    // Pair the new legs with each other and with those left over from earlier runs, returns the pairs
+    // made. Credits go oldest first and each takes the oldest debit of the same key stamped no later,
+    // which pairs as many as any other order could.
+    private long pair(List<Leg> legs) {
+        for (var leg : legs) {
+            if (leg.type() == Type.TRANSFER_OUT) {
+                debits.add(leg);
+                for (var key : keys(leg)) {
+                    debitsByCredit.computeIfAbsent(key, k -> new PriorityQueue<>(Comparator.comparingLong(Leg::timestamp)))
+                            .add(leg);
+                }
+            } else {
+                credits.add(leg);
+            }
+        }
+        credits.sort(Comparator.comparingLong(Leg::timestamp));
+
+        long matched = 0;
+        final var iterator = credits.iterator();
+        while (iterator.hasNext()) {
+            final var credit = iterator.next();
+            final var candidates = debitsByCredit.get(
+                    new LegKey(credit.fxVersion(), credit.currency(), credit.baseCcy(), credit.amount()));
+            if (candidates != null && candidates.peek().timestamp() <= credit.timestamp()) {
+                final var debit = candidates.peek();
+                debits.remove(debit);
+                for (var key : keys(debit)) {
+                    final var queue = debitsByCredit.get(key);
+                    queue.remove(debit);
+                    if (queue.isEmpty()) {
+                        debitsByCredit.remove(key);
+                    }
+                }
+                iterator.remove();
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    // The credit a debit turns into in each currency, at the FX table it recorded. A refund credits
+    // the debited amount back in the same currency.
+    private List<LegKey> keys(Leg debit) {
+        final var debited = Money.ofMinor(-debit.amount(), debit.currency());
+        final var rates = fxRate.version(debit.fxVersion());
+        final var keys = new ArrayList<LegKey>(Currency.values().length);
+        for (var to : Currency.values()) {
+            if (to == debit.currency()) {
+                keys.add(new LegKey(debit.fxVersion(), debit.currency(), to, debited.minor()));
+            } else if (rates.isPresent()) {
+                keys.add(new LegKey(debit.fxVersion(), debit.currency(), to,
+                        rates.get().convert(debited, to, fxRounding).minor()));
+            }
+        }
+        return keys;
+    }
+
+    private static Discrepancy unmatched(Leg leg, Discrepancy.Kind kind) {
+        return Discrepancy.builder()
+                .kind(kind)
+                .accountNo(leg.accountNo())
+                .sequence(leg.sequence())
+                .detail(leg.type() + " of " + Money.ofMinor(leg.amount(), leg.baseCcy()) + " at FX version "
+                        + leg.fxVersion() + " has no other half")
+                .build();
+    }
+
+    private static Discrepancy discrepancy(Discrepancy.Kind kind, Account account, Long sequence, String detail) {
+        return Discrepancy.builder()
+                .kind(kind)
+                .accountNo(account.getAccountNo())
+                .sequence(sequence)
+                .detail(detail)
+                .build();
+    }
+}
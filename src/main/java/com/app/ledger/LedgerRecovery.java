@@ -0,0 +1,111 @@
+package com.app.ledger;
+
+import com.app.account.AccountRepository;
+import com.app.journal.Journal;
+import com.app.journal.SnapshotStore;
+import com.app.transaction.FxRate;
+import io.micronaut.context.annotation.Context;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.runtime.server.event.ServerStartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+// Rebuilds the in-memory ledger from the latest snapshot plus the journal tail before the server accepts requests
+@Context
+public class LedgerRecovery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerRecovery.class);
+
+    @Inject
+    Journal journal;
+
+    @Inject
+    SnapshotStore snapshotStore;
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    AccountRepository accountRepository;
+
+    @Inject
+    FxRate fxRate;
+
+    @Inject
+    ReplicationConfig replicationConfig;
+
+    @Inject
+    JournalFollower follower;
+
+    @Inject
+    LedgerTiering tiering;
+
+    @Inject
+    IdAllocator ids;
+
+    @Inject
+    LedgerAggregates aggregates;
+
+    @Getter
+    private long snapshotLsn;
+    @Getter
+    private long snapshotMillis;
+    @Getter
+    private long replayedRecords;
+    @Getter
+    private long replayMillis;
+    @Getter
+    private long readyMillis;
+
+    @PostConstruct
+    void recover() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        snapshotLsn = snapshotStore.loadLatest(ids::observe, fxRate::publish, aggregates::add,
+                ledgerService::restore).orElse(0L);
+        snapshotMillis = (System.nanoTime() - start) / 1_000_000;
+        if (snapshotLsn > 0) {
+            LOG.info("Loaded {} accounts from snapshot at LSN {} in {} ms",
+                    accountRepository.count(), snapshotLsn, snapshotMillis);
+        }
+
+        if (replicationConfig.getRole() == ReplicationConfig.Role.FOLLOWER) {
+            // the primary owns the journal and the history directory, this instance reads them until promoted
+            tiering.attachAll(false);
+            follower.start(snapshotLsn);
+            LOG.info("Following the primary's journal from LSN {}", snapshotLsn);
+            return;
+        }
+
+        final long replayStart = System.nanoTime();
+        journal.open(snapshotLsn, (record, lsn) -> {
+            ledgerService.replay(record);
+            replayedRecords++;
+        });
+        final long replayNanos = System.nanoTime() - replayStart;
+        replayMillis = replayNanos / 1_000_000;
+        LOG.info("Replayed {} journal records after LSN {} in {} ms ({} records/s)", replayedRecords,
+                snapshotLsn, replayMillis, replayNanos == 0 ? 0 : replayedRecords * 1_000_000_000L / replayNanos);
+
+        tiering.attachAll(true);
+
+        // transfers between shards whose credit was lost in the crash are completed before serving
+        final int settled = ledgerService.settlePendingTransfers();
+        if (settled > 0) {
+            LOG.info("Settled {} transfers left in flight", settled);
+        }
+    }
+
+    @EventListener
+    void onStartup(ServerStartupEvent event) {
+        readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        LOG.info("Ledger ready with {} accounts, {} ms after JVM start", accountRepository.count(), readyMillis);
+    }
+}
@@ -1,177 +1,1351 @@
 package com.app.ledger;
 
 import com.app.account.Account;
+import com.app.account.BalanceView;
+import com.app.account.BalanceViews;
 import com.app.api.dto.AccountBalance;
+import com.app.api.dto.BatchItemResult;
+import com.app.api.dto.BatchOperation;
+import com.app.api.dto.SummaryRow;
 import com.app.account.AccountRepository;
 import com.app.api.dto.TransactionDTO;
+import com.app.api.dto.TransactionPage;
 import com.app.api.mapper.TransactionMapper;
+import com.app.journal.AccountSnapshot;
+import com.app.journal.HistorySegmentStore;
+import com.app.journal.Journal;
+import com.app.journal.JournalException;
+import com.app.journal.JournalRecord;
+import com.app.ledger.exception.LedgerBaseException;
 import com.app.ledger.exception.LedgerExceptions;
 import com.app.transaction.*;
+import io.micrometer.core.annotation.Timed;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.http.HttpStatus;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import static com.app.ledger.LedgerUtil.generateAccountId;
 import static com.app.ledger.LedgerUtil.getBalance;
-import static com.app.transaction.FxRate.convert;
 
 @Singleton
 public class LedgerService {
 
+    // attempts at drawing an unused account number before giving up
+    private static final int MAX_ACCOUNT_NO_ATTEMPTS = 16;
+
+    // most transactions returned by one history page
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // transactions read under one lock hold while streaming a history
+    private static final int STREAM_CHUNK_SIZE = 256;
+
     @Inject
     AccountRepository accountRepository;
 
+    @Inject
+    Journal journal;
+
+    @Inject
+    FxRate fxRate;
+
+    @Inject
+    LedgerMetrics metrics;
+
+    @Inject
+    LedgerShards shards;
+
+    @Inject
+    PendingTransfers transfers;
+
+    @Inject
+    BalanceViews views;
+
+    @Inject
+    IdAllocator ids;
+
+    @Inject
+    LedgerAggregates aggregates;
+
+    @Inject
+    HistorySegmentStore history;
+
+    // keep transaction columns in direct buffers instead of heap arrays
+    @Value("${ledger.store.off-heap:false}")
+    boolean offHeapStore;
+
+    // rounding applied to the result of a currency conversion
+    @Value("${ledger.fx.rounding:HALF_EVEN}")
+    RoundingMode fxRounding;
+
+    // most operations accepted in one batch
+    @Value("${ledger.batch.max-size:10000}")
+    int maxBatchSize;
+
+    // when set, every balance read is checked against a full recomputation from history
+    @Value("${ledger.verify-balances:false}")
+    boolean verifyBalances;
+
+    // set while following a primary, changes only arrive through replay
+    private volatile boolean readOnly;
+
 
     // Open a new account
+    @Timed(value = "ledger.operation", extraTags = {"operation", "open"}, histogram = true)
     public AccountBalance openNewAccount(Currency baseCcy) {
-        final var account = accountRepository.insert(Account.builder()
-                        .accountNo(generateAccountId())
-                        .baseCcy(baseCcy)
-                        .build());
-
-        return AccountBalance.builder()
-                .accountNo(account.getAccountNo())
-                .baseCcy(account.getBaseCcy())
-                .balance(getBalance(account.getTransactions()))
+        ensureWritable();
+        final var account = Account.builder()
+                .baseCcy(baseCcy)
+                .transactions(TransactionStore.create(offHeapStore))
                 .build();
+
+        final CompletableFuture<Long> written;
+        final BalanceViews.Update update;
+        account.lock();
+        try {
+            insertWithFreshAccountNo(account);
+            update = views.stage(account);
+            written = journal.append(new JournalRecord.AccountOpened(
+                    account.getId(), account.getAccountNo(), account.getBaseCcy(), true));
+        } finally {
+            account.unlock();
+        }
+        views.publish(update);
+        await(written);
+
+        return toAccountBalance(publishedView(account));
     }
 
-    // Get all accounts and their balances
+    // Get all accounts and their balances, as of a single point in time and without taking any lock
+    @Timed(value = "ledger.operation", extraTags = {"operation", "listAccounts"}, histogram = true)
     public List<AccountBalance> getAllAccounts() {
 
-        final var accountList = accountRepository.findAll();
-        if (accountList.isEmpty()) {
+        final var snapshot = views.snapshot();
+        if (snapshot.size() == 0) {
             throw new LedgerExceptions.NoAccountFoundException();
         }
 
-        final var accountBalanceList = new ArrayList<AccountBalance>();
+        final var accountBalanceList = new ArrayList<AccountBalance>(snapshot.size());
 
-        accountList.forEach(account -> {
-            accountBalanceList.add(AccountBalance.builder()
-                    .accountNo(account.getAccountNo())
-                    .baseCcy(account.getBaseCcy())
-                    .balance(getBalance(account.getTransactions()))
-                    .build());
-        });
+        snapshot.stream().forEach(view -> accountBalanceList.add(toAccountBalance(view)));
 
         return accountBalanceList;
     }
 
+    // Stream every account's balance from the snapshot current when the stream starts
+    public Flux<AccountBalance> streamAllAccounts() {
+        return Flux.defer(() -> Flux.fromStream(views.snapshot().stream()))
+                .map(LedgerService::toAccountBalance);
+    }
+
     // Delete an account
+    @Timed(value = "ledger.operation", extraTags = {"operation", "delete"}, histogram = true)
     public boolean deleteAccount(String accountNo) {
+        ensureWritable();
         final var account = getAccountFromRepo(accountNo);
 
-        if (getBalance(account.getTransactions()).compareTo(BigDecimal.ZERO) > 0) {
-            throw new LedgerExceptions.PositiveBalanceException(accountNo);
+        final boolean deleted;
+        final CompletableFuture<Long> written;
+        final BalanceViews.Update update;
+        final List<ColdSegment> cold;
+        account.lock();
+        try {
+            ensureOpen(account);
+            if (balanceOf(account) > 0) {
+                throw new LedgerExceptions.PositiveBalanceException(accountNo);
+            }
+            if (transfers.hasDebitsFrom(accountNo)) {
+                throw new LedgerExceptions.TransferInFlightException(accountNo);
+            }
+            account.setClosed(true);
+            deleted = accountRepository.deleteByAccountNo(accountNo);
+            update = views.stage(account);
+            cold = account.getColdSegments();
+            written = journal.append(new JournalRecord.AccountClosed(accountNo));
+        } finally {
+            account.unlock();
         }
-
-        return accountRepository.deleteByAccountNo(accountNo);
+        views.publish(update);
+        await(written);
+        // nothing can read the account's history any more
+        history.delete(cold);
+        return deleted;
     }
 
     // Get account balance
+    @Timed(value = "ledger.operation", extraTags = {"operation", "balance"}, histogram = true)
     public AccountBalance getAccountBalance(String accountNo) {
         final var account = getAccountFromRepo(accountNo);
+        final var view = publishedView(account);
+        if (verifyBalances) {
+            verify(account, view);
+        }
 
-        return AccountBalance.builder()
-                .accountNo(accountNo)
-                .baseCcy(account.getBaseCcy())
-                .balance(getBalance(account.getTransactions()))
-                .build();
+        return toAccountBalance(view);
+    }
+
+    // Version of an account's published balance and history, bumped by every posting
+    public long accountVersion(String accountNo) {
+        return publishedView(getAccountFromRepo(accountNo)).version();
+    }
+
+    // Version of the published ledger, bumped whenever any account is opened, changed or closed
+    public long ledgerVersion() {
+        return views.snapshot().version();
     }
 
-    // Get account transaction history
+    // Get an account's full transaction history
     public List<TransactionDTO> getTransactionHistory(String accountNo) {
         final var account = getAccountFromRepo(accountNo);
-        return account.getTransactions().stream()
-                .map(TransactionMapper::toDTO)
-                .toList();
+        return account.readHistory(0, Long.MAX_VALUE, history::load, store -> {
+            ensureOpen(account);
+            final long firstSequence = account.firstHistorySequence();
+            final var transactions = new ArrayList<TransactionDTO>(store.size());
+            for (int i = 0; i < store.size(); i++) {
+                transactions.add(TransactionMapper.toDTO(store, account.getBaseCcy(), firstSequence, i));
+            }
+            return transactions;
+        });
+    }
+
+    // Get one page of an account's transaction history. Timestamps are non-decreasing within an account,
+    // so the [from, to) range is found by binary search and a page costs O(log n + limit). Pages reach
+    // into cold segments on disk transparently, only the segments holding the page are read.
+    // The cursor is the sequence of the last transaction of the previous page.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "history"}, histogram = true)
+    public TransactionPage getTransactionHistory(String accountNo, String after, LocalDateTime from,
+                                                 LocalDateTime to, int limit, boolean newestFirst) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new LedgerExceptions.InvalidPageRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        final long cursor = parseCursor(after);
+        final var account = getAccountFromRepo(accountNo);
+
+        return account.readHistory(history::load, store -> {
+            ensureOpen(account);
+            final long firstSequence = account.firstHistorySequence();
+            int low = from == null ? 0 : store.lowerBound(EpochMicros.of(from));
+            int high = to == null ? store.size() : store.lowerBound(EpochMicros.of(to));
+            if (after != null) {
+                // index of the cursor row, which may already have been trimmed from history
+                final long index = cursor - firstSequence;
+                if (newestFirst) {
+                    high = (int) Math.min(high, Math.max(index, 0));
+                } else {
+                    low = (int) Math.max(low, Math.min(index + 1, store.size()));
+                }
+            }
+
+            final int count = Math.max(0, Math.min(limit, high - low));
+            final var transactions = new ArrayList<TransactionDTO>(count);
+            for (int i = 0; i < count; i++) {
+                transactions.add(TransactionMapper.toDTO(store, account.getBaseCcy(), firstSequence,
+                        newestFirst ? high - 1 - i : low + i));
+            }
+            String nextCursor = null;
+            if (high - low > count) {
+                final int last = newestFirst ? high - count : low + count - 1;
+                nextCursor = Long.toString(firstSequence + last);
+            }
+            return TransactionPage.builder()
+                    .transactions(transactions)
+                    .nextCursor(nextCursor)
+                    .build();
+        });
+    }
+
+    // Stream an account's history in chunks, each chunk is read under the lock when the consumer
+    // asks for more, so memory stays bounded by a chunk whatever the history size
+    public Flux<TransactionDTO> streamTransactionHistory(String accountNo, LocalDateTime from, LocalDateTime to,
+                                                         boolean newestFirst) {
+        // fail before the response starts if the account does not exist
+        getAccountFromRepo(accountNo);
+        return Mono.fromCallable(() -> getTransactionHistory(accountNo, null, from, to, STREAM_CHUNK_SIZE, newestFirst))
+                .expand(page -> page.getNextCursor() == null ? Mono.empty() : Mono.fromCallable(() ->
+                        getTransactionHistory(accountNo, page.getNextCursor(), from, to, STREAM_CHUNK_SIZE, newestFirst)))
+                .concatMapIterable(TransactionPage::getTransactions);
     }
 
-    // Deposit money into an account
+    // Postings matching every given filter, across the ledger or in one account, ordered by account
+    // number then sequence. Each account's bitmap indexes narrow it to its matching sequences before
+    // any row is read, so the cost follows the matches rather than the size of the histories; only
+    // the amount bins at the ends of [minAmount, maxAmount] have their rows checked. Amounts are
+    // compared by absolute value in the account's base currency, currency is the one the client used.
+    // The cursor is the account number and sequence of the last transaction of the previous page.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "query"}, histogram = true)
+    public TransactionPage queryTransactions(String accountNo, Type type, Currency currency,
+                                             BigDecimal minAmount, BigDecimal maxAmount,
+                                             LocalDateTime from, LocalDateTime to, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new LedgerExceptions.InvalidQueryRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((minAmount != null && minAmount.signum() < 0) || (maxAmount != null && maxAmount.signum() < 0)) {
+            throw new LedgerExceptions.InvalidQueryRequestException("amounts must not be negative");
+        }
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            throw new LedgerExceptions.InvalidQueryRequestException("minAmount must not be above maxAmount");
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new LedgerExceptions.InvalidQueryRequestException("from must be before to");
+        }
+        final String afterAccount;
+        final long afterSequence;
+        if (after == null) {
+            afterAccount = null;
+            afterSequence = 0;
+        } else {
+            final int split = after.indexOf(':');
+            if (split < 0) {
+                throw new LedgerExceptions.InvalidQueryRequestException("unknown cursor " + after);
+            }
+            afterAccount = after.substring(0, split);
+            try {
+                afterSequence = Long.parseLong(after.substring(split + 1));
+            } catch (NumberFormatException e) {
+                throw new LedgerExceptions.InvalidQueryRequestException("unknown cursor " + after);
+            }
+        }
+
+        // resumes at the cursor's account, the accounts before it are never visited
+        final Collection<Account> accounts = accountNo != null
+                ? List.of(getAccountFromRepo(accountNo))
+                : accountRepository.findFrom(afterAccount);
+
+        // one match beyond the page tells whether there is a next one
+        final var matches = new ArrayList<TransactionDTO>(Math.min(limit + 1, STREAM_CHUNK_SIZE));
+        for (var account : accounts) {
+            final var ccy = account.getBaseCcy();
+            final long minMinor = minAmount == null ? 0 : toMinorBound(minAmount, ccy, RoundingMode.CEILING);
+            final long maxMinor = maxAmount == null ? Long.MAX_VALUE : toMinorBound(maxAmount, ccy, RoundingMode.FLOOR);
+            // as many as the page still takes
+            final int wanted = limit + 1 - matches.size();
+            matches.addAll(account.readHistory(history::load, store -> {
+                final var found = new ArrayList<TransactionDTO>();
+                if (account.isClosed()) {
+                    return found;
+                }
+                final long firstSequence = account.firstHistorySequence();
+                long low = firstSequence + (from == null ? 0 : store.lowerBound(EpochMicros.of(from)));
+                final long high = firstSequence + (to == null ? store.size() : store.lowerBound(EpochMicros.of(to)));
+                if (account.getAccountNo().equals(afterAccount)) {
+                    low = Math.max(low, afterSequence + 1);
+                }
+                if (low >= high) {
+                    return found;
+                }
+                final var sequences = account.getIndex().select(low, high, type, currency, minMinor, maxMinor,
+                        sequence -> store.amount((int) (sequence - firstSequence)));
+                final var iterator = sequences.getIntIterator();
+                while (iterator.hasNext() && found.size() < wanted) {
+                    final int index = (int) (Integer.toUnsignedLong(iterator.next()) - firstSequence);
+                    final var transaction = TransactionMapper.toDTO(store, ccy, firstSequence, index);
+                    transaction.setAccountNo(account.getAccountNo());
+                    found.add(transaction);
+                }
+                return found;
+            }));
+            if (matches.size() > limit) {
+                break;
+            }
+        }
+
+        String nextCursor = null;
+        if (matches.size() > limit) {
+            matches.removeLast();
+            final var last = matches.getLast();
+            nextCursor = last.getAccountNo() + ":" + last.getSequence();
+        }
+        return TransactionPage.builder()
+                .transactions(matches)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // Deposit money into an account, timed once by the async method it calls through the proxy
     public TransactionDTO depositIntoAccount(String accountNo, BigDecimal amount, Currency currency) {
+        return await(depositIntoAccountAsync(accountNo, amount, currency));
+    }
+
+    // Deposit money into an account, completes once the posting is durable
+    @Timed(value = "ledger.operation", extraTags = {"operation", "deposit"}, histogram = true)
+    public CompletableFuture<TransactionDTO> depositIntoAccountAsync(String accountNo, BigDecimal amount,
+                                                                    Currency currency) {
+        ensureWritable();
 
         final var account = getAccountFromRepo(accountNo);
-        final var convertedAmount = convert(currency, account.getBaseCcy(), amount);
+        final var rates = fxRate.current();
+        final var deposited = convert(rates, toMoney(amount, currency), account);
 
         final var transaction = Transaction.builder()
                 .accountNo(account.getAccountNo())
                 .type(Type.DEPOSIT)
-                .amount(convertedAmount)
+                .amount(deposited)
                 .currency(currency)
-                .timestamp(LocalDateTime.now())
+                .timestamp(now())
+                .fxVersion(rates.version())
                 .build();
 
-        account.getTransactions().add(transaction);
-        return TransactionMapper.toDTO(transaction);
+        return onOwner(account, () -> {
+            final CompletableFuture<Long> written;
+            final BalanceViews.Update update;
+            account.lock();
+            try {
+                ensureOpen(account);
+                post(account, transaction);
+                update = views.stage(account);
+                written = journal.append(new JournalRecord.Posted(List.of(transaction)));
+            } finally {
+                account.unlock();
+            }
+            views.publish(update);
+            return written;
+        }).thenApply(lsn -> TransactionMapper.toDTO(transaction));
     }
 
-    // Withdraw money from Account
+    // Withdraw money from Account, timed once by the async method it calls through the proxy
     public TransactionDTO withdrawFromAccount(String accountNo, BigDecimal amount) {
+        return await(withdrawFromAccountAsync(accountNo, amount));
+    }
 
-        final var account = getAccountFromRepo(accountNo);
+    // Withdraw money from Account, completes once the posting is durable
+    @Timed(value = "ledger.operation", extraTags = {"operation", "withdrawal"}, histogram = true)
+    public CompletableFuture<TransactionDTO> withdrawFromAccountAsync(String accountNo, BigDecimal amount) {
+        ensureWritable();
 
-        if (getBalance(account.getTransactions()).subtract(amount).compareTo(BigDecimal.ZERO) < 0) {
-            throw new LedgerExceptions.InsufficientFundsException(accountNo);
-        }
+        final var account = getAccountFromRepo(accountNo);
+        final var withdrawn = toMoney(amount, account.getBaseCcy());
 
         final var transaction = Transaction.builder()
                 .accountNo(account.getAccountNo())
                 .type(Type.WITHDRAWAL)
-                .amount(amount.negate())
+                .amount(withdrawn.negate())
                 .currency(account.getBaseCcy())
-                .timestamp(LocalDateTime.now())
+                .timestamp(now())
                 .build();
 
-        account.getTransactions().add(transaction);
-        return TransactionMapper.toDTO(transaction);
+        // balance check and posting happen under the same lock
+        return onOwner(account, () -> {
+            final CompletableFuture<Long> written;
+            final BalanceViews.Update update;
+            account.lock();
+            try {
+                ensureOpen(account);
+                if (balanceOf(account) < withdrawn.minor()) {
+                    throw new LedgerExceptions.InsufficientFundsException(accountNo);
+                }
+                post(account, transaction);
+                update = views.stage(account);
+                written = journal.append(new JournalRecord.Posted(List.of(transaction)));
+            } finally {
+                account.unlock();
+            }
+            views.publish(update);
+            return written;
+        }).thenApply(lsn -> TransactionMapper.toDTO(transaction));
     }
 
-    // Transfer money between accounts
+    // Transfer money between accounts, timed once by the async method it calls through the proxy
     public List<TransactionDTO> transferMoney(String fromAccountNo, String toAccountNo, BigDecimal amount) {
+        return await(transferMoneyAsync(fromAccountNo, toAccountNo, amount));
+    }
+
+    // Transfer money between accounts, completes once both legs are durable
+    @Timed(value = "ledger.operation", extraTags = {"operation", "transfer"}, histogram = true)
+    public CompletableFuture<List<TransactionDTO>> transferMoneyAsync(String fromAccountNo, String toAccountNo,
+                                                                      BigDecimal amount) {
+        ensureWritable();
         // get accounts
         final var fromAccount = getAccountFromRepo(fromAccountNo);
         final var toAccount = getAccountFromRepo(toAccountNo);
 
-        if (getBalance(fromAccount.getTransactions()).subtract(amount).compareTo(BigDecimal.ZERO) < 0) {
-            throw new LedgerExceptions.InsufficientFundsException(fromAccountNo);
-        }
-
-        // build and add transfer OUT to account
+        // build transfer OUT and IN transactions
+        final var rates = fxRate.current();
+        final var debited = toMoney(amount, fromAccount.getBaseCcy());
         final var transactionFrom = Transaction.builder()
                 .accountNo(fromAccount.getAccountNo())
                 .type(Type.TRANSFER_OUT)
-                .amount(amount.negate())
+                .amount(debited.negate())
                 .currency(fromAccount.getBaseCcy())
-                .timestamp(LocalDateTime.now())
+                .timestamp(now())
+                .fxVersion(rates.version())
                 .build();
-        fromAccount.getTransactions().add(transactionFrom);
 
-        // build and add transfer IN to account
-        final var convertedAmount = convert(fromAccount.getBaseCcy(), toAccount.getBaseCcy(), amount);
         final var transactionTo = Transaction.builder()
-                .accountNo(fromAccount.getAccountNo())
+                .accountNo(toAccount.getAccountNo())
                 .type(Type.TRANSFER_IN)
-                .amount(convertedAmount)
+                .amount(convert(rates, debited, toAccount))
                 .currency(fromAccount.getBaseCcy())
-                .timestamp(LocalDateTime.now())
+                .timestamp(transactionFrom.getTimestamp())
+                .fxVersion(rates.version())
                 .build();
 
-        toAccount.getTransactions().add(transactionTo);
-        return List.of(
+        final CompletableFuture<Long> written;
+        if (shards.isEnabled() && !shards.sameShard(fromAccountNo, toAccountNo)) {
+            written = transferAcrossShards(fromAccount, toAccount, transactionFrom, transactionTo);
+        } else {
+            written = onOwner(fromAccount, () -> {
+                final CompletableFuture<Long> posted;
+                final BalanceViews.Update update;
+                lockInOrder(fromAccount, toAccount);
+                try {
+                    ensureOpen(fromAccount);
+                    ensureOpen(toAccount);
+                    if (balanceOf(fromAccount) < debited.minor()) {
+                        throw new LedgerExceptions.InsufficientFundsException(fromAccountNo);
+                    }
+                    post(fromAccount, transactionFrom);
+                    post(toAccount, transactionTo);
+                    // both accounts change in one update so no reader sees half a transfer
+                    update = views.stage(fromAccount, toAccount);
+                    // both legs go into one record so a crash cannot persist half a transfer
+                    posted = journal.append(new JournalRecord.Posted(List.of(transactionFrom, transactionTo)));
+                } finally {
+                    unlockBoth(fromAccount, toAccount);
+                }
+                views.publish(update);
+                return posted;
+            });
+        }
+
+        return written.thenApply(lsn -> List.of(
                 TransactionMapper.toDTO(transactionFrom),
                 TransactionMapper.toDTO(transactionTo)
-        );
+        ));
+    }
+
+    // Transfer between accounts on different shards without ever holding both. The source's shard
+    // checks the balance and debits, then hands the credit to the destination's shard. The debit is
+    // journaled with the credit it owes, so recovery can finish a transfer interrupted in between.
+    private CompletableFuture<Long> transferAcrossShards(Account from, Account to, Transaction debit,
+                                                         Transaction credit) {
+        return onOwner(from, () -> {
+            final PendingTransfers.Transfer transfer;
+            final BalanceViews.Update update;
+            from.lock();
+            try {
+                ensureOpen(from);
+                ensureOpen(to);
+                if (balanceOf(from) < -debit.getAmount().minor()) {
+                    throw new LedgerExceptions.InsufficientFundsException(from.getAccountNo());
+                }
+                post(from, debit);
+                update = views.stage(from);
+                transfer = transfers.begin(debit, credit);
+                // journal a copy, the destination may post the credit before this record is encoded
+                transfers.debitWritten(transfer, journal.append(
+                        new JournalRecord.TransferDebited(debit, credit.toBuilder().build())));
+            } finally {
+                from.unlock();
+            }
+            views.publish(update);
+            return transfer.debitLsn().thenCombine(settle(transfer), (debitLsn, creditLsn) -> creditLsn);
+        });
+    }
+
+    // Apply the credit a transfer owes on the destination's owner, or refund the source when the
+    // destination can no longer take it. A refunded transfer fails with the reason once the refund
+    // is durable.
+    private CompletableFuture<Long> settle(PendingTransfers.Transfer transfer) {
+        final var credit = transfer.credit();
+        return handOff(credit.getAccountNo(), () -> {
+            try {
+                final var to = getAccountFromRepo(credit.getAccountNo());
+                final CompletableFuture<Long> written;
+                final BalanceViews.Update update;
+                to.lock();
+                try {
+                    ensureOpen(to);
+                    post(to, credit);
+                    update = views.stage(to);
+                    written = credited(transfer, credit);
+                } finally {
+                    to.unlock();
+                }
+                views.publish(update);
+                return written;
+            } catch (LedgerBaseException e) {
+                return refund(transfer).thenCompose(lsn -> CompletableFuture.failedFuture(e));
+            }
+        });
     }
 
+    private CompletableFuture<Long> refund(PendingTransfers.Transfer transfer) {
+        final var debit = transfer.debit();
+        final var refund = Transaction.builder()
+                .accountNo(debit.getAccountNo())
+                .type(Type.TRANSFER_IN)
+                .amount(debit.getAmount().negate())
+                .currency(debit.getCurrency())
+                .timestamp(now())
+                .fxVersion(debit.getFxVersion())
+                .build();
+        return handOff(debit.getAccountNo(), () -> {
+            // the source cannot be deleted while it has a transfer in flight
+            final var from = getAccountFromRepo(debit.getAccountNo());
+            final CompletableFuture<Long> written;
+            final BalanceViews.Update update;
+            from.lock();
+            try {
+                post(from, refund);
+                update = views.stage(from);
+                written = credited(transfer, refund);
+            } finally {
+                from.unlock();
+            }
+            views.publish(update);
+            return written;
+        });
+    }
+
+    // Journal the credit that settles a transfer, it stops holding back snapshots once durable
+    private CompletableFuture<Long> credited(PendingTransfers.Transfer transfer, Transaction credit) {
+        final var debit = transfer.debit();
+        return journal.append(new JournalRecord.TransferCredited(debit.getAccountNo(), debit.getSequence(), credit))
+                .whenComplete((lsn, e) -> {
+                    if (e == null) {
+                        transfers.settled(debit.getAccountNo(), debit.getSequence());
+                    }
+                });
+    }
+
+    // Settle the transfers whose debit was journaled without a matching credit, run once after replay
+    int settlePendingTransfers() {
+        final var pending = transfers.pending();
+        for (var transfer : pending) {
+            try {
+                await(settle(transfer));
+            } catch (LedgerBaseException e) {
+                // refunded to the source, which settles it as well
+            }
+        }
+        return pending.size();
+    }
+
+    // Apply a batch of deposits, withdrawals and transfers. Accounts are resolved once, every account
+    // involved is locked in account number order for the whole batch and all postings go into a
+    // single journal record. Atomic batches apply all operations or none, otherwise each operation
+    // succeeds or fails on its own and the result says which. In sharded mode a batch runs on the shard
+    // owning its accounts; an atomic one spread over several shards is rejected.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "batch"}, histogram = true)
+    public List<BatchItemResult> postBatch(List<BatchOperation> operations, boolean atomic) {
+        ensureWritable();
+        if (operations.size() > maxBatchSize) {
+            throw new LedgerExceptions.InvalidBatchOperationException(
+                    "at most " + maxBatchSize + " operations per batch");
+        }
+        final var rates = fxRate.current();
+        final var timestamp = now();
+        final var accounts = new HashMap<String, Account>();
+        final var results = new ArrayList<BatchItemResult>(operations.size());
+        final var planned = new ArrayList<List<Leg>>(operations.size());
+
+        // build every posting up front, outside the locks
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                planned.add(plan(operations.get(i), accounts, rates, timestamp));
+                results.add(null);
+            } catch (LedgerBaseException e) {
+                planned.add(null);
+                results.add(failed(i, e, atomic));
+            }
+        }
+
+        if (!shards.isEnabled()) {
+            await(apply(planned, results, atomic, 0, planned.size()));
+        } else if (accounts.keySet().stream().map(shards::indexOf).distinct().count() <= 1) {
+            await(accounts.isEmpty()
+                    ? CompletableFuture.completedFuture(0L)
+                    : onOwner(accounts.values().iterator().next(),
+                            () -> apply(planned, results, atomic, 0, planned.size())));
+        } else if (atomic) {
+            throw new LedgerExceptions.InvalidBatchOperationException(
+                    "an atomic batch must keep to accounts on one shard, its accounts are spread over several");
+        } else {
+            applyEach(planned, results);
+        }
+
+        for (int i = 0; i < planned.size(); i++) {
+            final var legs = planned.get(i);
+            if (legs != null) {
+                results.set(i, BatchItemResult.builder()
+                        .index(i)
+                        .statusCode(HttpStatus.OK.getCode())
+                        .message("OK")
+                        .transactions(legs.stream().map(leg -> TransactionMapper.toDTO(leg.transaction())).toList())
+                        .build());
+            }
+        }
+        return results;
+    }
+
+    // Check and post the planned operations in [from, to) with every account they touch locked in
+    // account number order, all postings in one journal record. Returns the journal write.
+    private CompletableFuture<Long> apply(List<List<Leg>> planned, List<BatchItemResult> results, boolean atomic,
+                                          int from, int to) {
+        final var locked = planned.subList(from, to).stream()
+                .filter(Objects::nonNull)
+                .flatMap(legs -> legs.stream().map(Leg::account))
+                .distinct()
+                .sorted(Comparator.comparing(Account::getAccountNo))
+                .toList();
+        final var posted = new ArrayList<Transaction>();
+        final CompletableFuture<Long> written;
+        final BalanceViews.Update update;
+        locked.forEach(Account::lock);
+        try {
+            // check every operation against the balances left by the ones before it
+            final var balances = new IdentityHashMap<Account, Long>();
+            for (int i = from; i < to; i++) {
+                final var legs = planned.get(i);
+                if (legs == null) {
+                    continue;
+                }
+                try {
+                    balances.putAll(check(legs, balances));
+                } catch (LedgerBaseException e) {
+                    planned.set(i, null);
+                    results.set(i, failed(i, e, atomic));
+                }
+            }
+            // nothing below can fail, every posting has been checked
+            for (var legs : planned.subList(from, to)) {
+                if (legs != null) {
+                    for (var leg : legs) {
+                        leg.transaction().setId(Long.toString(ids.nextTransactionId()));
+                        leg.account().post(leg.transaction());
+                        metrics.posted(leg.transaction());
+                        aggregates.record(leg.transaction());
+                        posted.add(leg.transaction());
+                    }
+                }
+            }
+            update = views.stage(locked);
+            written = posted.isEmpty()
+                    ? CompletableFuture.completedFuture(0L)
+                    : journal.append(new JournalRecord.Posted(posted));
+        } finally {
+            locked.reversed().forEach(Account::unlock);
+        }
+        views.publish(update);
+        return written;
+    }
+
+    // A batch spread over several shards, in sharded mode. Each operation runs on its own, in order, on
+    // the shard owning its accounts; a transfer between two shards goes the way a single one does.
+    private void applyEach(List<List<Leg>> planned, List<BatchItemResult> results) {
+        for (int i = 0; i < planned.size(); i++) {
+            final var legs = planned.get(i);
+            if (legs == null) {
+                continue;
+            }
+            final var first = legs.getFirst();
+            final int index = i;
+            try {
+                if (legs.size() == 2 && !shards.sameShard(first.account().getAccountNo(),
+                        legs.getLast().account().getAccountNo())) {
+                    await(transferAcrossShards(first.account(), legs.getLast().account(), first.transaction(),
+                            legs.getLast().transaction()));
+                } else {
+                    await(onOwner(first.account(), () -> apply(planned, results, false, index, index + 1)));
+                }
+            } catch (LedgerBaseException e) {
+                planned.set(i, null);
+                results.set(i, failed(i, e, false));
+            }
+        }
+    }
+
+    // A posting and the account it goes to
+    private record Leg(Account account, Transaction transaction) {}
+
+    private List<Leg> plan(BatchOperation operation, Map<String, Account> accounts, FxRate.Rates rates,
+                           LocalDateTime timestamp) {
+        if (operation.getType() == null || operation.getAccount() == null || operation.getAmount() == null) {
+            throw new LedgerExceptions.InvalidBatchOperationException("type, account and amount are required");
+        }
+        final var account = accounts.computeIfAbsent(operation.getAccount(), this::getAccountFromRepo);
+        final var baseCcy = account.getBaseCcy();
+        return switch (operation.getType()) {
+            case DEPOSIT -> {
+                final var currency = operation.getCurrency() == null ? baseCcy : operation.getCurrency();
+                yield List.of(new Leg(account, Transaction.builder()
+                        .accountNo(account.getAccountNo())
+                        .type(Type.DEPOSIT)
+                        .amount(convert(rates, toMoney(operation.getAmount(), currency), account))
+                        .currency(currency)
+                        .timestamp(timestamp)
+                        .fxVersion(rates.version())
+                        .build()));
+            }
+            case WITHDRAWAL -> List.of(new Leg(account, Transaction.builder()
+                    .accountNo(account.getAccountNo())
+                    .type(Type.WITHDRAWAL)
+                    .amount(toMoney(operation.getAmount(), baseCcy).negate())
+                    .currency(baseCcy)
+                    .timestamp(timestamp)
+                    .build()));
+            case TRANSFER -> {
+                if (operation.getToAccount() == null) {
+                    throw new LedgerExceptions.InvalidBatchOperationException("toAccount is required for a transfer");
+                }
+                final var toAccount = accounts.computeIfAbsent(operation.getToAccount(), this::getAccountFromRepo);
+                final var debited = toMoney(operation.getAmount(), baseCcy);
+                yield List.of(
+                        new Leg(account, Transaction.builder()
+                                .accountNo(account.getAccountNo())
+                                .type(Type.TRANSFER_OUT)
+                                .amount(debited.negate())
+                                .currency(baseCcy)
+                                .timestamp(timestamp)
+                                .fxVersion(rates.version())
+                                .build()),
+                        new Leg(toAccount, Transaction.builder()
+                                .accountNo(toAccount.getAccountNo())
+                                .type(Type.TRANSFER_IN)
+                                .amount(convert(rates, debited, toAccount))
+                                .currency(baseCcy)
+                                .timestamp(timestamp)
+                                .fxVersion(rates.version())
+                                .build()));
+            }
+        };
+    }
+
+    // Balances after applying the legs on top of the given ones, the accounts are locked
+    private Map<Account, Long> check(List<Leg> legs, Map<Account, Long> balances) {
+        final var after = new IdentityHashMap<Account, Long>();
+        for (var leg : legs) {
+            final var account = leg.account();
+            ensureOpen(account);
+            final long before = after.containsKey(account) ? after.get(account)
+                    : balances.containsKey(account) ? balances.get(account) : balanceOf(account);
+            final long balance;
+            try {
+                balance = Math.addExact(before, leg.transaction().getAmount().minor());
+            } catch (ArithmeticException e) {
+                throw new LedgerExceptions.AmountOutOfRangeException(account.getAccountNo());
+            }
+            if (balance < 0) {
+                throw new LedgerExceptions.InsufficientFundsException(account.getAccountNo());
+            }
+            after.put(account, balance);
+        }
+        return after;
+    }
+
+    private BatchItemResult failed(int index, LedgerBaseException e, boolean atomic) {
+        if (atomic) {
+            throw new LedgerExceptions.BatchRejectedException(index, e);
+        }
+        metrics.error(e);
+        return BatchItemResult.builder()
+                .index(index)
+                .statusCode(e.getStatus().getCode())
+                .message(e.getMessage())
+                .build();
+    }
+
+    // Apply a chunk of imported rows in file order, bypassing the request path but not the ledger's
+    // rules: an account keeps its base currency, amounts carry the sign of their type and no posting
+    // may overdraw or overflow its account. Returns why each row was rejected, null for the rows applied.
+    List<String> importRows(List<LedgerBulk.Row> rows) {
+        ensureWritable();
+        if (!shards.isEnabled()) {
+            return await(applyImported(rows));
+        }
+        // only the owner posts to an account, each shard applies the rows of its own accounts
+        final var byShard = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < rows.size(); i++) {
+            byShard.computeIfAbsent(shards.indexOf(rows.get(i).accountNo()), shard -> new ArrayList<>()).add(i);
+        }
+        final var positions = List.copyOf(byShard.values());
+        final var applied = positions.stream()
+                .map(owned -> owned.stream().map(rows::get).toList())
+                .map(owned -> shards.handoff(owned.getFirst().accountNo(), () -> applyImported(owned))
+                        .thenCompose(Function.identity()))
+                .toList();
+        final var errors = new ArrayList<String>(Collections.nCopies(rows.size(), null));
+        for (int shard = 0; shard < positions.size(); shard++) {
+            final var shardErrors = await(applied.get(shard));
+            for (int i = 0; i < shardErrors.size(); i++) {
+                errors.set(positions.get(shard).get(i), shardErrors.get(i));
+            }
+        }
+        return errors;
+    }
+
+    // Every account of the rows is locked at once, new ones are opened under the same locks, and what
+    // was accepted is queued to the journal before they are released. Completes with the errors once durable.
+    private CompletableFuture<List<String>> applyImported(List<LedgerBulk.Row> rows) {
+        final var accounts = new HashMap<String, Account>();
+        final var opened = new ArrayList<Account>();
+        for (var row : rows) {
+            accounts.computeIfAbsent(row.accountNo(), accountNo -> accountRepository.findByAccountNo(accountNo)
+                    .orElseGet(() -> {
+                        final var account = Account.builder()
+                                .accountNo(accountNo)
+                                .baseCcy(row.baseCcy())
+                                .transactions(TransactionStore.create(offHeapStore))
+                                .build();
+                        opened.add(account);
+                        return account;
+                    }));
+        }
+
+        final var locked = accounts.values().stream()
+                .sorted(Comparator.comparing(Account::getAccountNo))
+                .toList();
+        final var errors = new ArrayList<String>(rows.size());
+        final var posted = new ArrayList<Transaction>();
+        // opened by someone else meanwhile, their rows are rejected
+        final var taken = Collections.newSetFromMap(new IdentityHashMap<Account, Boolean>());
+        CompletableFuture<Long> written = CompletableFuture.completedFuture(0L);
+        final BalanceViews.Update update;
+        locked.forEach(Account::lock);
+        try {
+            for (var account : opened) {
+                try {
+                    accountRepository.insert(account);
+                } catch (LedgerExceptions.DuplicateAccountException e) {
+                    taken.add(account);
+                    continue;
+                }
+                // not handed out by the allocator, the repository's duplicate check keeps it from clashing
+                written = journal.append(new JournalRecord.AccountOpened(
+                        account.getId(), account.getAccountNo(), account.getBaseCcy(), false));
+            }
+            for (var row : rows) {
+                final var account = accounts.get(row.accountNo());
+                errors.add(taken.contains(account)
+                        ? "account " + account.getAccountNo() + " was opened concurrently"
+                        : importRow(account, row, posted));
+            }
+            update = views.stage(locked.stream().filter(account -> !taken.contains(account)).toList());
+            if (!posted.isEmpty()) {
+                written = journal.append(new JournalRecord.Posted(posted));
+            }
+        } finally {
+            locked.reversed().forEach(Account::unlock);
+        }
+        views.publish(update);
+        return written.thenApply(lsn -> errors);
+    }
+
+    private String importRow(Account account, LedgerBulk.Row row, List<Transaction> posted) {
+        if (account.isClosed()) {
+            return "account " + account.getAccountNo() + " is closed";
+        }
+        if (account.getBaseCcy() != row.baseCcy()) {
+            return "account " + account.getAccountNo() + " is a " + account.getBaseCcy() + " account";
+        }
+        final var transaction = row.posting();
+        if (transaction == null) {
+            return null;
+        }
+        final var type = transaction.getType();
+        final long amount = transaction.getAmount().minor();
+        final boolean credit = type == Type.DEPOSIT || type == Type.TRANSFER_IN;
+        if (credit ? amount < 0 : amount >= 0) {
+            return type + " amounts must be " + (credit ? "positive" : "negative");
+        }
+        if (!credit && transaction.getCurrency() != account.getBaseCcy()) {
+            return type + " must be in the account's base currency " + account.getBaseCcy();
+        }
+        final long balance;
+        try {
+            balance = Math.addExact(account.getBalance(), amount);
+        } catch (ArithmeticException e) {
+            return "amount out of range for account " + account.getAccountNo();
+        }
+        if (balance < 0) {
+            return "would overdraw account " + account.getAccountNo();
+        }
+        if (transaction.getId() == null) {
+            transaction.setId(Long.toString(ids.nextTransactionId()));
+        } else if (Long.parseLong(transaction.getId()) <= account.getLastTransactionId()) {
+            // ids increase within an account, an older one was imported already or belongs elsewhere
+            return "transaction " + transaction.getId() + " is not newer than the last one in account "
+                    + account.getAccountNo();
+        } else {
+            ids.observeTransactionId(Long.parseLong(transaction.getId()));
+        }
+        try {
+            account.post(transaction);
+        } catch (ArithmeticException e) {
+            return "amount out of range for account " + account.getAccountNo();
+        }
+        metrics.posted(transaction);
+        aggregates.record(transaction);
+        posted.add(transaction);
+        return null;
+    }
+
+    // Publish a new FX rate table built from the current one with the given quotes replaced.
+    // The table is journaled before it becomes current so no posting can refer to an unpersisted version.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "publishFxRates"}, histogram = true)
+    public synchronized FxRate.Rates publishFxRates(Map<Currency, Map<Currency, BigDecimal>> quotes) {
+        ensureWritable();
+        final FxRate.Rates next;
+        try {
+            next = fxRate.next(quotes);
+        } catch (IllegalArgumentException e) {
+            throw new LedgerExceptions.InvalidFxRateException(e.getMessage());
+        }
+        // registered first so a snapshot covering the journal record also contains the table
+        fxRate.register(next);
+        final var written = journal.append(new JournalRecord.FxRatesPublished(next));
+        fxRate.publish(next);
+        await(written);
+        return next;
+    }
+
+    // Posting counts and totals per hour or day, type and currency over [from, to), from rolling
+    // aggregates rather than account histories. Both ends default to everything recorded.
+    @Timed(value = "ledger.operation", extraTags = {"operation", "summary"}, histogram = true)
+    public List<SummaryRow> getSummary(LocalDateTime from, LocalDateTime to,
+                                       LedgerAggregates.Granularity granularity) {
+        final long fromMicros = from == null ? Long.MIN_VALUE / 2 : EpochMicros.of(from);
+        final long toMicros = to == null ? Long.MAX_VALUE / 2 : EpochMicros.of(to);
+        if (fromMicros >= toMicros) {
+            throw new LedgerExceptions.InvalidReportRequestException("from must be before to");
+        }
+        return aggregates.summarize(fromMicros, toMicros, granularity).stream()
+                .map(row -> SummaryRow.builder()
+                        .start(EpochMicros.toLocalDateTime(row.startMicros()))
+                        .type(row.type())
+                        .currency(row.currency())
+                        .count(row.count())
+                        .total(Money.ofMinor(row.total(), row.currency()).toBigDecimal())
+                        .build())
+                .toList();
+    }
+
+    // Get the current FX rate table, or a past one by version
+    public FxRate.Rates getFxRates(Integer version) {
+        if (version == null) {
+            return fxRate.current();
+        }
+        return fxRate.version(version).orElseThrow(() -> new LedgerExceptions.FxRatesNotFoundException(version));
+    }
+
+    // Load an account from a snapshot during recovery
+    void restore(AccountSnapshot snapshot) {
+        var transactions = snapshot.transactions();
+        if (offHeapStore) {
+            transactions = TransactionStore.create(true);
+            snapshot.transactions().copyTo(0, snapshot.transactions().size(), transactions);
+        }
+        final var account = Account.builder()
+                .id(snapshot.id())
+                .accountNo(snapshot.accountNo())
+                .baseCcy(snapshot.baseCcy())
+                .balance(snapshot.balance())
+                .openingBalance(snapshot.openingBalance())
+                .version(snapshot.version())
+                .lastTransactionId(snapshot.lastTransactionId())
+                .transactions(transactions)
+                .build();
+        // its number is covered by the snapshot's id high-water mark
+        accountRepository.insert(account);
+        // ids increase within an account, the newest is the largest
+        ids.observeTransactionId(snapshot.lastTransactionId());
+        // postings trimmed from the snapshot's history are no longer indexed, the snapshot's hourly
+        // totals still count them
+        account.getIndex().addAll(transactions, account.firstSequence());
+        publishReplayed(List.of(account));
+    }
+
+    // Re-apply a journaled record during recovery, bypassing validation and the journal itself.
+    // Snapshots are taken while writes continue, so records already reflected in one are skipped.
+    void replay(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.AccountOpened opened -> {
+                if (opened.issued()) {
+                    ids.observeAccountNo(opened.accountNo());
+                }
+                if (accountRepository.findByAccountNo(opened.accountNo()).isEmpty()) {
+                    final var account = Account.builder()
+                            .id(opened.id())
+                            .accountNo(opened.accountNo())
+                            .baseCcy(opened.baseCcy())
+                            .transactions(TransactionStore.create(offHeapStore))
+                            .build();
+                    accountRepository.insert(account);
+                    publishReplayed(List.of(account));
+                }
+            }
+            case JournalRecord.AccountClosed closed -> accountRepository.findByAccountNo(closed.accountNo())
+                    .ifPresent(account -> {
+                        account.setClosed(true);
+                        accountRepository.deleteByAccountNo(closed.accountNo());
+                        publishReplayed(List.of(account));
+                    });
+            case JournalRecord.Posted posted -> publishReplayed(posted.transactions().stream()
+                    .map(this::replay)
+                    .flatMap(Optional::stream)
+                    .toList());
+            case JournalRecord.FxRatesPublished published -> fxRate.publish(published.rates());
+            case JournalRecord.TransferDebited debited -> {
+                replay(debited.debit()).ifPresent(account -> publishReplayed(List.of(account)));
+                transfers.debitWritten(transfers.begin(debited.debit(), debited.credit()),
+                        CompletableFuture.completedFuture(0L));
+            }
+            case JournalRecord.TransferCredited credited -> {
+                replay(credited.credit()).ifPresent(account -> publishReplayed(List.of(account)));
+                transfers.settled(credited.debitAccountNo(), credited.debitSequence());
+            }
+        }
+    }
+
+    private Optional<Account> replay(Transaction transaction) {
+        if (transaction.getId() != null) {
+            ids.observeTransactionId(Long.parseLong(transaction.getId()));
+        }
+        final var found = accountRepository.findByAccountNo(transaction.getAccountNo());
+        found.ifPresent(account -> {
+            account.lock();
+            try {
+                if (transaction.getSequence() > account.getVersion()) {
+                    account.post(transaction);
+                }
+            } finally {
+                account.unlock();
+            }
+        });
+        // the snapshot's hourly totals stop at its LSN, every posting after it is counted whether or not
+        // its account already had it
+        aggregates.record(transaction);
+        return found;
+    }
+
+    // Replay is the only writer, so the accounts can be staged without their locks. A record's
+    // accounts are published together, a follower's readers never see half of one.
+    private void publishReplayed(List<Account> accounts) {
+        if (!accounts.isEmpty()) {
+            views.publish(views.stage(accounts));
+        }
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new LedgerExceptions.InvalidPageRequestException("unknown cursor " + cursor);
+        }
+    }
+
+    // Requested amounts must be positive and expressible in minor units of their currency
+    private static Money toMoney(BigDecimal amount, Currency currency) {
+        try {
+            final var money = Money.of(amount, currency);
+            if (money.signum() > 0) {
+                return money;
+            }
+        } catch (ArithmeticException e) {
+            // falls through to the rejection below
+        }
+        throw new LedgerExceptions.InvalidAmountException(amount, currency);
+    }
+
+    // An amount in the account's base currency, too large a result is out of range like an overflowing balance
+    private Money convert(FxRate.Rates rates, Money amount, Account account) {
+        try {
+            return rates.convert(amount, account.getBaseCcy(), fxRounding);
+        } catch (ArithmeticException e) {
+            throw new LedgerExceptions.AmountOutOfRangeException(account.getAccountNo());
+        }
+    }
+
+    // A query bound in minor units of the currency, rounded inwards and capped at the largest amount
+    private static long toMinorBound(BigDecimal amount, Currency currency, RoundingMode rounding) {
+        final var minor = amount.movePointRight(currency.getScale()).setScale(0, rounding);
+        return minor.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0 ? Long.MAX_VALUE : minor.longValue();
+    }
+
+    // Apply a posting, a balance overflow leaves the account untouched
+    // Ids are drawn under the account lock, so they increase with the sequence within an account
+    private void post(Account account, Transaction transaction) {
+        transaction.setId(Long.toString(ids.nextTransactionId()));
+        try {
+            account.post(transaction);
+        } catch (ArithmeticException e) {
+            throw new LedgerExceptions.AmountOutOfRangeException(account.getAccountNo());
+        }
+        metrics.posted(transaction);
+        aggregates.record(transaction);
+    }
+
+    // Timestamps are stored with microsecond precision
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    // Run a change to the account on its owner: the calling thread in locking mode, the account's shard
+    // in sharded mode. The change takes the locks it needs and returns its journal write.
+    private CompletableFuture<Long> onOwner(Account account, Supplier<CompletableFuture<Long>> change) {
+        return durable(shards.isEnabled()
+                ? shards.submit(account.getAccountNo(), change).thenCompose(Function.identity())
+                : change.get());
+    }
+
+    // Same for work passed on by another shard, which is never rejected
+    private CompletableFuture<Long> handOff(String accountNo, Supplier<CompletableFuture<Long>> change) {
+        return shards.isEnabled()
+                ? shards.handoff(accountNo, change).thenCompose(Function.identity())
+                : change.get();
+    }
+
+    // A failed journal write surfaces as JournalUnavailableException, ledger errors as themselves
+    private static <T> CompletableFuture<T> durable(CompletableFuture<T> written) {
+        return written.exceptionallyCompose(e -> {
+            final var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            return CompletableFuture.failedFuture(cause instanceof JournalException
+                    ? new LedgerExceptions.JournalUnavailableException() : cause);
+        });
+    }
+
+    // Block until the result is durable so the caller is only acknowledged for persisted changes
+    private static <T> T await(CompletableFuture<T> result) {
+        try {
+            return durable(result).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Locks are always taken in account number order so two opposing transfers cannot deadlock
+    private static void lockInOrder(Account a, Account b) {
+        if (a == b) {
+            a.lock();
+        } else if (a.getAccountNo().compareTo(b.getAccountNo()) < 0) {
+            a.lock();
+            b.lock();
+        } else {
+            b.lock();
+            a.lock();
+        }
+    }
+
+    private static void unlockBoth(Account a, Account b) {
+        a.unlock();
+        if (a != b) {
+            b.unlock();
+        }
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    private void ensureWritable() {
+        if (readOnly) {
+            throw new LedgerExceptions.ReadOnlyReplicaException();
+        }
+    }
+
+    // An account may be deleted between lookup and locking
+    private static void ensureOpen(Account account) {
+        if (account.isClosed()) {
+            throw new LedgerExceptions.AccountNotFoundException(account.getAccountNo());
+        }
+    }
+
+    // Balance in minor units of the account's base currency
+    private long balanceOf(Account account) {
+        if (!verifyBalances) {
+            return account.getBalance();
+        }
+        account.lock();
+        try {
+            final var balance = account.balance();
+            final var recomputed = getBalance(account.getTransactions(), account.getBaseCcy())
+                    .plus(Money.ofMinor(account.getOpeningBalance(), account.getBaseCcy()));
+            if (balance.compareTo(recomputed) != 0) {
+                throw new LedgerExceptions.BalanceMismatchException(account.getAccountNo(), balance, recomputed);
+            }
+            return balance.minor();
+        } finally {
+            account.unlock();
+        }
+    }
+
+    private BalanceView publishedView(Account account) {
+        final var view = views.snapshot().get(account.getViewSlot());
+        if (view == null || !view.accountNo().equals(account.getAccountNo())) {
+            // closed since the lookup, its slot may already hold another account
+            throw new LedgerExceptions.AccountNotFoundException(account.getAccountNo());
+        }
+        return view;
+    }
+
+    // Check a published balance against the account's history when the view is still its latest
+    private void verify(Account account, BalanceView view) {
+        account.lock();
+        try {
+            if (account.getVersion() == view.version()) {
+                final var recomputed = getBalance(account.getTransactions(), account.getBaseCcy())
+                        .plus(Money.ofMinor(account.getOpeningBalance(), account.getBaseCcy()));
+                final var published = Money.ofMinor(view.balance(), view.baseCcy());
+                if (published.compareTo(recomputed) != 0) {
+                    throw new LedgerExceptions.BalanceMismatchException(account.getAccountNo(), published, recomputed);
+                }
+            }
+        } finally {
+            account.unlock();
+        }
+    }
+
+    private static AccountBalance toAccountBalance(BalanceView view) {
+        return AccountBalance.builder()
+                .accountNo(view.accountNo())
+                .baseCcy(view.baseCcy())
+                .balance(Money.ofMinor(view.balance(), view.baseCcy()).toBigDecimal())
+                .build();
+    }
+
+    private void insertWithFreshAccountNo(Account account) {
+        for (int attempt = 1; ; attempt++) {
+            account.setAccountNo(ids.nextAccountNo());
+            try {
+                accountRepository.insert(account);
+                return;
+            } catch (LedgerExceptions.DuplicateAccountException e) {
+                if (attempt == MAX_ACCOUNT_NO_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
 
     private Account getAccountFromRepo(String accountNo) {
-        return accountRepository.findAll().stream()
-                .filter(acc -> acc.getAccountNo().equals(accountNo))
-                .findFirst()
+        return accountRepository.findByAccountNo(accountNo)
                 .orElseThrow(() -> new LedgerExceptions.AccountNotFoundException(accountNo));
     }
 }
@@ -0,0 +1,146 @@
+package com.app.ledger;
+
+import com.app.ledger.exception.LedgerExceptions;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Single-threaded partitions for the sharded engine. Every account belongs to one shard by the hash of
+// its number and only that shard's thread posts to it, so postings to a hot account queue up instead of
+// contending for its lock. Requests are admitted through a bounded queue per shard and rejected once it
+// is full. Handoffs between shards, the credit half of a transfer, are always accepted so a debit that
+// was applied can always be settled.
+@Singleton
+public class LedgerShards {
+
+    private final Shard[] shards;
+
+    public LedgerShards(EngineConfig config) {
+        if (config.getMode() != EngineConfig.Mode.SHARDED) {
+            shards = new Shard[0];
+            return;
+        }
+        final int count = config.getShards() > 0 ? config.getShards() : Runtime.getRuntime().availableProcessors();
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard("ledger-shard-" + i, config.getQueueCapacity());
+        }
+    }
+
+    public boolean isEnabled() {
+        return shards.length > 0;
+    }
+
+    public int count() {
+        return shards.length;
+    }
+
+    public boolean sameShard(String accountNo, String otherAccountNo) {
+        return indexOf(accountNo) == indexOf(otherAccountNo);
+    }
+
+    // Shard owning the account, 0 to count() - 1
+    public int indexOf(String accountNo) {
+        final int hash = accountNo.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    // Run a request on the account's shard, rejected when the shard is already too far behind
+    public <T> CompletableFuture<T> submit(String accountNo, Supplier<T> task) {
+        return shards[indexOf(accountNo)].run(task, true);
+    }
+
+    // Pass work on to the account's shard from another shard, or from an import that waits for each
+    // chunk before sending the next, never rejected
+    public <T> CompletableFuture<T> handoff(String accountNo, Supplier<T> task) {
+        return shards[indexOf(accountNo)].run(task, false);
+    }
+
+    // Requests and handoffs waiting across all shards
+    public int queueDepth() {
+        int depth = 0;
+        for (var shard : shards) {
+            depth += shard.queue.size();
+        }
+        return depth;
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        for (var shard : shards) {
+            shard.stop();
+        }
+        for (var shard : shards) {
+            shard.thread.join(10_000);
+        }
+    }
+
+    private static final class Shard implements Runnable {
+
+        // queued last on shutdown, everything before it still runs
+        private static final Runnable STOP = () -> {
+        };
+
+        private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        // requests queued or running, handoffs are not counted
+        private final AtomicInteger admitted = new AtomicInteger();
+        private final int capacity;
+        private final Thread thread;
+        private volatile boolean stopped;
+
+        Shard(String name, int capacity) {
+            this.capacity = capacity;
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        <T> CompletableFuture<T> run(Supplier<T> task, boolean request) {
+            if (stopped) {
+                return CompletableFuture.failedFuture(new LedgerExceptions.LedgerBusyException());
+            }
+            if (request && admitted.incrementAndGet() > capacity) {
+                admitted.decrementAndGet();
+                return CompletableFuture.failedFuture(new LedgerExceptions.LedgerBusyException());
+            }
+            final var result = new CompletableFuture<T>();
+            queue.add(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    if (request) {
+                        admitted.decrementAndGet();
+                    }
+                }
+            });
+            return result;
+        }
+
+        void stop() {
+            stopped = true;
+            queue.add(STOP);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.app.ledger;
+
+import com.app.account.Account;
+import com.app.account.AccountRepository;
+import com.app.journal.AccountSnapshot;
+import com.app.journal.HourlyTotal;
+import com.app.journal.Journal;
+import com.app.journal.JournalConfig;
+import com.app.journal.JournalTailer;
+import com.app.journal.SnapshotStore;
+import com.app.transaction.FxRate;
+import com.app.transaction.HeapTransactionStore;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static com.app.ledger.LedgerUtil.sumAmounts;
+
+// Periodically writes the whole ledger to a snapshot so restarts only replay the journal tail
+@Singleton
+public class LedgerSnapshotter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerSnapshotter.class);
+
+    @Inject
+    AccountRepository accountRepository;
+
+    @Inject
+    Journal journal;
+
+    @Inject
+    JournalConfig journalConfig;
+
+    @Inject
+    SnapshotStore snapshotStore;
+
+    @Inject
+    FxRate fxRate;
+
+    @Inject
+    PendingTransfers transfers;
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    IdAllocator ids;
+
+    @Scheduled(fixedDelay = "${ledger.snapshot.interval:10m}", initialDelay = "${ledger.snapshot.interval:10m}")
+    void scheduledSnapshot() {
+        // a follower does not own the journal or the snapshot directory
+        if (!snapshotStore.isEnabled() || !journal.isEnabled() || ledgerService.isReadOnly()) {
+            return;
+        }
+        try {
+            takeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Snapshot failed", e);
+        }
+    }
+
+    // Accounts are copied one at a time under their own lock, writers are never blocked for longer
+    // than one copy. Changes that land after the start LSN are skipped again on replay.
+    public synchronized long takeSnapshot() throws IOException {
+        final long start = System.nanoTime();
+        // held back before any debit still owed its credit, so a restart replays it and settles the credit
+        final long lsn = transfers.snapshotLsn(journal.lastWrittenLsn());
+        // tables are registered before they are journaled, so this covers every table up to the LSN
+        final var rates = fxRate.history();
+        // read after the LSN, so it covers accounts closed and postings trimmed before it
+        final var highWater = ids.highWater();
+        final var totals = totalsUpTo(lsn);
+
+        final var accounts = accountRepository.findAll().stream()
+                .map(this::copy)
+                .filter(Objects::nonNull)
+                .iterator();
+        // everything copied must be durable before the snapshot can stand in for the journal
+        final long count = snapshotStore.write(lsn, highWater, rates, totals, accounts, () -> journal.sync().join());
+
+        if (snapshotStore.isPruneJournal()) {
+            journal.deleteSegmentsUpTo(lsn);
+        }
+        LOG.info("Wrote snapshot of {} accounts at LSN {} in {} ms",
+                count, lsn, (System.nanoTime() - start) / 1_000_000);
+        return lsn;
+    }
+
+    // Hourly totals as of the LSN: the previous snapshot's plus the postings journaled since. Counted
+    // from the journal rather than the live totals, which already include postings made after the LSN.
+    private List<HourlyTotal> totalsUpTo(long lsn) throws IOException {
+        final var totals = new LedgerAggregates();
+        final long from = snapshotStore.loadLatestTotals(totals::add).orElse(0L);
+        try (var tailer = new JournalTailer(Path.of(journalConfig.getDirectory()), from)) {
+            tailer.poll((record, recordLsn) -> {
+                if (recordLsn <= lsn) {
+                    record.postings().forEach(totals::record);
+                }
+            });
+        }
+        return totals.hourlyTotals();
+    }
+
+    private AccountSnapshot copy(Account account) {
+        account.lock();
+        try {
+            if (account.isClosed()) {
+                return null;
+            }
+            final var transactions = account.getTransactions();
+            final int size = transactions.size();
+            final int limit = snapshotStore.historyLimit();
+            final int from = limit > 0 && size > limit ? size - limit : 0;
+            // postings left out of the snapshot move into the opening balance
+            final long openingBalance = Math.addExact(account.getOpeningBalance(), sumAmounts(transactions, 0, from));
+            final var copy = new HeapTransactionStore(size - from);
+            transactions.copyTo(from, size, copy);
+            return new AccountSnapshot(account.getId(), account.getAccountNo(), account.getBaseCcy(),
+                    account.getBalance(), openingBalance, account.getVersion(), account.getLastTransactionId(), copy);
+        } finally {
+            account.unlock();
+        }
+    }
+}
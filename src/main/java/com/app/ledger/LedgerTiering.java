@@ -0,0 +1,148 @@
+package com.app.ledger;
+
+import com.app.account.Account;
+import com.app.account.AccountRepository;
+import com.app.journal.HistorySegmentStore;
+import com.app.transaction.ColdSegment;
+import com.app.transaction.HeapTransactionStore;
+import com.app.transaction.TransactionStore;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Moves the oldest postings of long histories out of memory into cold segments, so the heap holds
+// recent activity rather than the whole age of the ledger. Demoted amounts move into the account's
+// opening balance exactly as a snapshot history limit would, so balances, verification and
+// snapshots only ever see the rows still in memory.
+@Singleton
+public class LedgerTiering {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerTiering.class);
+
+    @Inject
+    AccountRepository accountRepository;
+
+    @Inject
+    HistorySegmentStore history;
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Value("${ledger.store.off-heap:false}")
+    boolean offHeapStore;
+
+    @Scheduled(fixedDelay = "${ledger.history.interval:1m}", initialDelay = "${ledger.history.interval:1m}")
+    void scheduledSweep() {
+        // a follower does not own the history directory
+        if (!history.isEnabled() || ledgerService.isReadOnly()) {
+            return;
+        }
+        try {
+            final int written = sweep();
+            if (written > 0) {
+                LOG.info("Moved {} history segments to disk", written);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("History tiering failed", e);
+        }
+    }
+
+    // Demote from every account holding more than it keeps in memory, returns the segments written
+    public synchronized int sweep() throws IOException {
+        int written = 0;
+        for (var account : accountRepository.findAll()) {
+            while (demoteOldest(account)) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    // The rows are copied under the lock and written outside it, postings keep landing meanwhile.
+    // Only the sweep demotes, so the copied rows are still the oldest ones when it swaps them out.
+    private boolean demoteOldest(Account account) throws IOException {
+        final int rows = history.segmentRows();
+        final var oldest = new HeapTransactionStore(rows);
+        final long firstSequence;
+        account.lock();
+        try {
+            if (account.isClosed() || account.getTransactions().size() < history.hotRows() + rows) {
+                return false;
+            }
+            firstSequence = account.firstSequence();
+            account.getTransactions().copyTo(0, rows, oldest);
+        } finally {
+            account.unlock();
+        }
+
+        final var segment = history.write(account.getAccountNo(), firstSequence, oldest);
+        account.lock();
+        try {
+            if (!account.isClosed()) {
+                account.demote(segment, TransactionStore.create(offHeapStore));
+                return true;
+            }
+        } finally {
+            account.unlock();
+        }
+        history.delete(List.of(segment));
+        return false;
+    }
+
+    // Run once after recovery. Each account gets back the chain of segments ending just before its
+    // oldest posting in memory, and their rows are indexed again. The
+    // owner of the directory deletes every other segment: those of closed accounts, and those whose
+    // rows came back into memory from a snapshot older than the segment.
+    public void attachAll(boolean owner) {
+        if (!history.isEnabled()) {
+            return;
+        }
+        final var unused = new ArrayList<ColdSegment>();
+        int attached = 0;
+        try {
+            for (var entry : history.list().entrySet()) {
+                final var account = accountRepository.findByAccountNo(entry.getKey()).orElse(null);
+                if (account == null) {
+                    unused.addAll(entry.getValue());
+                    continue;
+                }
+                account.lock();
+                try {
+                    final var chain = new ArrayDeque<ColdSegment>();
+                    long last = account.firstSequence() - 1;
+                    for (var segment : entry.getValue().reversed()) {
+                        if (segment.lastSequence() == last) {
+                            chain.addFirst(segment);
+                            last = segment.firstSequence() - 1;
+                        } else {
+                            unused.add(segment);
+                        }
+                    }
+                    account.setColdSegments(List.copyOf(chain));
+                    for (var segment : chain) {
+                        final var rows = history.read(segment);
+                        account.getIndex().addAll(rows, segment.firstSequence());
+                    }
+                    attached += chain.size();
+                } finally {
+                    account.unlock();
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Cannot list history segments, history before the snapshot is unavailable", e);
+            return;
+        }
+        if (owner) {
+            history.delete(unused);
+        }
+        LOG.info("Attached {} history segments, {} unused", attached, unused.size());
+    }
+}
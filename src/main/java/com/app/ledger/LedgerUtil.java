@@ -1,28 +1,22 @@
 package com.app.ledger;
 
-import com.app.transaction.Transaction;
-
-import java.math.BigDecimal;
-import java.util.List;
-import java.util.Random;
+import com.app.transaction.Currency;
+import com.app.transaction.Money;
+import com.app.transaction.TransactionStore;
 
 public class LedgerUtil {
 
-    public static String generateAccountId() {
-        final Random random = new Random();
-        StringBuilder builder = new StringBuilder(8);
-        for (int i = 0; i < 8; i++) {
-            builder.append(random.nextInt(10));
-        }
-        return builder.toString();
+    public static Money getBalance(TransactionStore txns, Currency baseCcy) {
+        return Money.ofMinor(sumAmounts(txns, 0, txns.size()), baseCcy);
     }
 
-    public static BigDecimal getBalance(List<Transaction> txns) {
-        BigDecimal balance = new BigDecimal(0);
-        for (Transaction txn : txns) {
-            balance = balance.add(txn.getAmount());
+    // Sum of the minor-unit amounts in [from, to)
+    public static long sumAmounts(TransactionStore txns, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum = Math.addExact(sum, txns.amount(i));
         }
-        return balance;
+        return sum;
     }
 
 }
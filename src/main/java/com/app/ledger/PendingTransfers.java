@@ -0,0 +1,65 @@
+package com.app.ledger;
+
+import com.app.transaction.Transaction;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Transfers between shards whose debit has been applied but whose credit is not durable yet. A snapshot
+// starts no later than the oldest of their debits, so a restart always replays the debit record and
+// can settle the credit it owes.
+@Singleton
+public class PendingTransfers {
+
+    // debitLsn completes once the debit record is written
+    public record Transfer(Transaction debit, Transaction credit, CompletableFuture<Long> debitLsn) {}
+
+    private final Map<String, Transfer> transfers = new ConcurrentHashMap<>();
+
+    // Registered before the debit record is appended
+    Transfer begin(Transaction debit, Transaction credit) {
+        final var transfer = new Transfer(debit, credit, new CompletableFuture<>());
+        transfers.put(key(debit.getAccountNo(), debit.getSequence()), transfer);
+        return transfer;
+    }
+
+    void debitWritten(Transfer transfer, CompletableFuture<Long> written) {
+        written.whenComplete((lsn, e) -> {
+            if (e == null) {
+                transfer.debitLsn().complete(lsn);
+            } else {
+                transfer.debitLsn().completeExceptionally(e);
+            }
+        });
+    }
+
+    void settled(String debitAccountNo, long debitSequence) {
+        transfers.remove(key(debitAccountNo, debitSequence));
+    }
+
+    boolean hasDebitsFrom(String accountNo) {
+        return !transfers.isEmpty()
+                && transfers.values().stream().anyMatch(t -> t.debit().getAccountNo().equals(accountNo));
+    }
+
+    public List<Transfer> pending() {
+        return new ArrayList<>(transfers.values());
+    }
+
+    // LSN a snapshot may start from: the given one, or just before the oldest debit still owed.
+    // The caller reads the journal's LSN first so every debit written up to it is still listed here.
+    public long snapshotLsn(long lsn) {
+        for (var transfer : transfers.values()) {
+            lsn = Math.min(lsn, transfer.debitLsn().join() - 1);
+        }
+        return lsn;
+    }
+
+    private static String key(String accountNo, long sequence) {
+        return accountNo + ':' + sequence;
+    }
+}
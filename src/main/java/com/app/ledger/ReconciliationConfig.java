@@ -0,0 +1,17 @@
+package com.app.ledger;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("ledger.reconciliation")
+public class ReconciliationConfig {
+    // run an incremental reconciliation on ledger.reconciliation.cron
+    private boolean enabled = true;
+    // worker threads, 0 uses one per available processor
+    private int parallelism;
+    // transfer legs younger than this are not reported unmatched yet, their other half may still be landing
+    private Duration grace = Duration.ofMinutes(1);
+}
@@ -0,0 +1,18 @@
+package com.app.ledger;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("ledger.replication")
+public class ReplicationConfig {
+
+    public enum Role {
+        // owns the journal and accepts writes
+        PRIMARY,
+        // tails the journal of a primary sharing ledger.journal.directory and only serves reads
+        FOLLOWER
+    }
+
+    private Role role = Role.PRIMARY;
+}
@@ -1,7 +1,11 @@
 package com.app.ledger.exception;
 
+import com.app.transaction.Currency;
+import com.app.transaction.Money;
 import io.micronaut.http.HttpStatus;
 
+import java.math.BigDecimal;
+
 public class LedgerExceptions {
 
     public static class AccountNotFoundException extends LedgerBaseException {
@@ -10,12 +14,79 @@ public class LedgerExceptions {
         }
     }
 
+    public static class DuplicateAccountException extends LedgerBaseException {
+        public DuplicateAccountException(String accountNo) {
+            super("Account already exists with no: " + accountNo, HttpStatus.CONFLICT);
+        }
+    }
+
     public static class NoAccountFoundException extends LedgerBaseException {
         public NoAccountFoundException() {
             super("No account found. Please create a new one.", HttpStatus.NOT_FOUND);
         }
     }
 
+    public static class InvalidAmountException extends LedgerBaseException {
+        public InvalidAmountException(BigDecimal amount, Currency currency) {
+            super("Invalid amount " + amount + " " + currency + ": must be positive with at most " +
+                    currency.getScale() + " decimals", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class AmountOutOfRangeException extends LedgerBaseException {
+        public AmountOutOfRangeException(String accountNo) {
+            super("Amount out of range for account no: " + accountNo, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class InvalidFxRateException extends LedgerBaseException {
+        public InvalidFxRateException(String message) {
+            super(message, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class FxRatesNotFoundException extends LedgerBaseException {
+        public FxRatesNotFoundException(int version) {
+            super("FX rates not found with version: " + version, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    public static class InvalidPageRequestException extends LedgerBaseException {
+        public InvalidPageRequestException(String message) {
+            super("Invalid page request: " + message, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class InvalidReportRequestException extends LedgerBaseException {
+        public InvalidReportRequestException(String message) {
+            super("Invalid report request: " + message, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class InvalidQueryRequestException extends LedgerBaseException {
+        public InvalidQueryRequestException(String message) {
+            super("Invalid query: " + message, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class InvalidBatchOperationException extends LedgerBaseException {
+        public InvalidBatchOperationException(String message) {
+            super("Invalid batch operation: " + message, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class BatchRejectedException extends LedgerBaseException {
+        public BatchRejectedException(int index, LedgerBaseException cause) {
+            super("Batch rejected, operation " + index + " failed: " + cause.getMessage(), cause.getStatus());
+        }
+    }
+
+    public static class IdempotencyKeyReusedException extends LedgerBaseException {
+        public IdempotencyKeyReusedException(String key) {
+            super("Idempotency key " + key + " was already used for a different request", HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+    }
+
     public static class InsufficientFundsException extends LedgerBaseException {
         public InsufficientFundsException(String accountNo) {
             super("Insufficient funds for account no: " + accountNo, HttpStatus.BAD_REQUEST);
@@ -29,5 +100,59 @@ public class LedgerExceptions {
         }
     }
 
+    public static class JournalUnavailableException extends LedgerBaseException {
+        public JournalUnavailableException() {
+            super("Ledger journal is unavailable, the operation was not persisted.", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    public static class LedgerBusyException extends LedgerBaseException {
+        public LedgerBusyException() {
+            super("Ledger is busy, please retry.", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    public static class TransferInFlightException extends LedgerBaseException {
+        public TransferInFlightException(String accountNo) {
+            super("Cannot delete account no: " + accountNo + " while a transfer from it is in flight.",
+                    HttpStatus.CONFLICT);
+        }
+    }
+
+    public static class ReadOnlyReplicaException extends LedgerBaseException {
+        public ReadOnlyReplicaException() {
+            super("This instance is a read-only follower, send changes to the primary.", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
 
+    public static class PromotionFailedException extends LedgerBaseException {
+        public PromotionFailedException(String reason) {
+            super("Cannot promote follower: " + reason, HttpStatus.CONFLICT);
+        }
+    }
+
+    public static class InvalidBulkRequestException extends LedgerBaseException {
+        public InvalidBulkRequestException(String message) {
+            super("Invalid bulk request: " + message, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public static class BulkFileException extends LedgerBaseException {
+        public BulkFileException(String file, Exception cause) {
+            super("Cannot read or write bulk file " + file + ": " + cause.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    public static class ReconciliationNotRunException extends LedgerBaseException {
+        public ReconciliationNotRunException() {
+            super("No reconciliation has run yet.", HttpStatus.NOT_FOUND);
+        }
+    }
+
+    public static class BalanceMismatchException extends LedgerBaseException {
+        public BalanceMismatchException(String accountNo, Money stored, Money recomputed) {
+            super("Balance mismatch for account no: " + accountNo + " (stored " + stored +
+                    ", recomputed " + recomputed + ")", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.app.transaction;
+
+import java.nio.file.Path;
+
+// A run of an account's oldest postings moved to an immutable file. The bounds are kept in memory as
+// a sparse index, so finding a row by sequence or timestamp reads at most the one segment holding it.
+public record ColdSegment(Path path, long firstSequence, int count, long firstTimestamp, long lastTimestamp) {
+
+    public long lastSequence() {
+        return firstSequence + count - 1;
+    }
+}
@@ -1,5 +1,15 @@
 package com.app.transaction;
 
+import lombok.Getter;
+
+@Getter
 public enum Currency {
-    GBP, USD, EUR
+    GBP(2), USD(2), EUR(2);
+
+    // digits after the decimal point, amounts are held as whole minor units at this scale
+    private final int scale;
+
+    Currency(int scale) {
+        this.scale = scale;
+    }
 }
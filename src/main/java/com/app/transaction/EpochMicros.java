@@ -0,0 +1,20 @@
+package com.app.transaction;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Timestamps are stored as microseconds since the epoch, read as UTC
+public final class EpochMicros {
+
+    private EpochMicros() {
+    }
+
+    public static long of(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+
+    public static LocalDateTime toLocalDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -3,31 +3,157 @@ package com.app.transaction;
 import jakarta.inject.Singleton;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+// Holds the current FX rate table and every table published since startup or recovery.
+// Tables are immutable, an update builds a new one and swaps it in, so lookups never lock.
 @Singleton
 public class FxRate {
 
-    public record FxRatePair(Currency from, Currency to, double rate) {}
-
-    private static final List<FxRatePair> FX_RATES = List.of(
-            new FxRatePair(Currency.GBP, Currency.USD, 1.414),
-            new FxRatePair(Currency.GBP, Currency.EUR, 1.124),
-            new FxRatePair(Currency.USD, Currency.GBP, 0.765),
-            new FxRatePair(Currency.USD, Currency.EUR, 0.876),
-            new FxRatePair(Currency.EUR, Currency.GBP, 0.676),
-            new FxRatePair(Currency.EUR, Currency.USD, 1.158)
-    );
-
-    public static BigDecimal convert(Currency from, Currency to, BigDecimal amount) {
-        if (from.equals(to)) {
-            return amount;
-        } else {
-            return FX_RATES.stream()
-                    .filter(pair -> pair.from().equals(from) && pair.to().equals(to))
-                    .map(pair -> amount.multiply(BigDecimal.valueOf(pair.rate())))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("No rate found from {}" + from + " to {} " + to));
+    // rates are fixed-point with this many decimals
+    public static final int RATE_SCALE = 8;
+
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int N = CURRENCIES.length;
+    private static final long ONE = Money.pow10(RATE_SCALE);
+
+    // Scaled rates indexed by [from ordinal * N + to ordinal], 1 on the diagonal
+    public record Rates(int version, long[] scaled) {
+
+        public Rates {
+            if (scaled.length != N * N) {
+                throw new IllegalArgumentException("Expected " + N * N + " rates, got " + scaled.length);
+            }
+        }
+
+        public long rate(Currency from, Currency to) {
+            return scaled[from.ordinal() * N + to.ordinal()];
+        }
+
+        public BigDecimal decimalRate(Currency from, Currency to) {
+            return BigDecimal.valueOf(rate(from, to), RATE_SCALE).stripTrailingZeros();
+        }
+
+        public Money convert(Money amount, Currency to, RoundingMode rounding) {
+            if (amount.currency() == to) {
+                return amount;
+            }
+            return amount.convert(to, rate(amount.currency(), to), RATE_SCALE, rounding);
+        }
+
+        // Same table with the given quotes replaced, as the next version
+        Rates with(Map<Currency, Map<Currency, BigDecimal>> quotes) {
+            final var next = scaled.clone();
+            quotes.forEach((from, row) -> row.forEach((to, rate) -> {
+                if (from != to) {
+                    next[from.ordinal() * N + to.ordinal()] = toScaled(from, to, rate);
+                }
+            }));
+            return new Rates(version + 1, next);
+        }
+
+        public boolean sameRatesAs(Rates other) {
+            return Arrays.equals(scaled, other.scaled);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Rates rates && rates.version == version && sameRatesAs(rates);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * version + Arrays.hashCode(scaled);
+        }
+
+        @Override
+        public String toString() {
+            return "Rates[version=" + version + "]";
+        }
+    }
+
+    // built-in table, version 0 until the first published update
+    static final Rates DEFAULT = table(0, Map.of(
+            Currency.GBP, Map.of(Currency.USD, "1.414", Currency.EUR, "1.124"),
+            Currency.USD, Map.of(Currency.GBP, "0.765", Currency.EUR, "0.876"),
+            Currency.EUR, Map.of(Currency.GBP, "0.676", Currency.USD, "1.158")));
+
+    private final AtomicReference<Rates> current = new AtomicReference<>(DEFAULT);
+    private final Map<Integer, Rates> history = new ConcurrentSkipListMap<>(Map.of(DEFAULT.version(), DEFAULT));
+
+    public Rates current() {
+        return current.get();
+    }
+
+    public Optional<Rates> version(int version) {
+        return Optional.ofNullable(history.get(version));
+    }
+
+    // every table still known, oldest first
+    public List<Rates> history() {
+        return new ArrayList<>(history.values());
+    }
+
+    // Build the table that would follow the current one, rates are validated but nothing is published
+    public Rates next(Map<Currency, Map<Currency, BigDecimal>> quotes) {
+        return current().with(quotes);
+    }
+
+    // Make a table visible to lookups. Tables from recovery may arrive more than once or out of
+    // order, the newest version always stays current.
+    public void publish(Rates rates) {
+        history.put(rates.version(), rates);
+        current.accumulateAndGet(rates, (existing, candidate) ->
+                candidate.version() >= existing.version() ? candidate : existing);
+    }
+
+    // Record a table in the history without making it current yet
+    public void register(Rates rates) {
+        history.put(rates.version(), rates);
+    }
+
+    public static Map<Currency, Map<Currency, BigDecimal>> toMap(Rates rates) {
+        final var map = new EnumMap<Currency, Map<Currency, BigDecimal>>(Currency.class);
+        for (var from : CURRENCIES) {
+            final var row = new EnumMap<Currency, BigDecimal>(Currency.class);
+            for (var to : CURRENCIES) {
+                if (from != to) {
+                    row.put(to, rates.decimalRate(from, to));
+                }
+            }
+            map.put(from, row);
+        }
+        return map;
+    }
+
+    private static Rates table(int version, Map<Currency, Map<Currency, String>> quotes) {
+        final var scaled = new long[N * N];
+        for (var from : CURRENCIES) {
+            scaled[from.ordinal() * N + from.ordinal()] = ONE;
+        }
+        quotes.forEach((from, row) -> row.forEach((to, rate) ->
+                scaled[from.ordinal() * N + to.ordinal()] = toScaled(from, to, new BigDecimal(rate))));
+        return new Rates(version, scaled);
+    }
+
+    private static long toScaled(Currency from, Currency to, BigDecimal rate) {
+        try {
+            final long scaled = rate.movePointRight(RATE_SCALE).longValueExact();
+            if (scaled > 0) {
+                return scaled;
+            }
+        } catch (ArithmeticException e) {
+            // falls through to the rejection below
         }
+        throw new IllegalArgumentException("Invalid rate " + rate.toPlainString() + " from " + from + " to " + to
+                + ", must be positive with at most " + RATE_SCALE + " decimals");
     }
 }
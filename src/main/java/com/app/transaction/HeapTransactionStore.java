@@ -0,0 +1,101 @@
+package com.app.transaction;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// Parallel primitive arrays, 30 bytes per posting plus growth headroom
+public final class HeapTransactionStore implements TransactionStore {
+
+    private static final Type[] TYPES = Type.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] ids;
+    private long[] amounts;
+    private long[] timestamps;
+    private int[] fxVersions;
+    private byte[] types;
+    private byte[] currencies;
+    private int size;
+
+    public HeapTransactionStore() {
+        this(0);
+    }
+
+    public HeapTransactionStore(int capacity) {
+        ids = new long[capacity];
+        amounts = new long[capacity];
+        timestamps = new long[capacity];
+        fxVersions = new int[capacity];
+        types = new byte[capacity];
+        currencies = new byte[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void append(long id, Type type, Currency currency, long amount, long timestamp, int fxVersion) {
+        if (size == ids.length) {
+            grow();
+        }
+        ids[size] = id;
+        amounts[size] = amount;
+        timestamps[size] = timestamp;
+        fxVersions[size] = fxVersion;
+        types[size] = (byte) type.ordinal();
+        currencies[size] = (byte) currency.ordinal();
+        size++;
+    }
+
+    @Override
+    public long id(int index) {
+        return ids[checkIndex(index)];
+    }
+
+    @Override
+    public Type type(int index) {
+        return TYPES[types[checkIndex(index)]];
+    }
+
+    @Override
+    public Currency currency(int index) {
+        return CURRENCIES[currencies[checkIndex(index)]];
+    }
+
+    @Override
+    public long amount(int index) {
+        return amounts[checkIndex(index)];
+    }
+
+    @Override
+    public long timestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    @Override
+    public int fxVersion(int index) {
+        return fxVersions[checkIndex(index)];
+    }
+
+    @Override
+    public long retainedBytes() {
+        return (long) ids.length * (3 * Long.BYTES + Integer.BYTES + 2);
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+
+    private void grow() {
+        final int capacity = Math.max(MIN_CAPACITY, size + (size >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        fxVersions = Arrays.copyOf(fxVersions, capacity);
+        types = Arrays.copyOf(types, capacity);
+        currencies = Arrays.copyOf(currencies, capacity);
+    }
+}
@@ -0,0 +1,128 @@
+package com.app.transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+// Fixed-point amount: whole minor units of a currency at the currency's scale.
+// Arithmetic is overflow-checked and never rounds implicitly.
+public record Money(long minor, Currency currency) implements Comparable<Money> {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    public static Money ofMinor(long minor, Currency currency) {
+        return new Money(minor, currency);
+    }
+
+    public static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    // Exact conversion, fails if the amount has more decimals than the currency allows or does not fit
+    public static Money of(BigDecimal amount, Currency currency) {
+        return new Money(amount.setScale(currency.getScale(), RoundingMode.UNNECESSARY)
+                .unscaledValue().longValueExact(), currency);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, currency.getScale());
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minor, sameCurrency(other).minor), currency);
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minor, sameCurrency(other).minor), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minor), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minor);
+    }
+
+    public boolean isNegative() {
+        return minor < 0;
+    }
+
+    // Multiply by a fixed-point factor (factor / 10^factorScale) and express the result in the
+    // target currency, rounding once with the given mode
+    public Money convert(Currency target, long factor, int factorScale, RoundingMode rounding) {
+        final int shift = factorScale + currency.getScale() - target.getScale();
+        if (shift >= 0) {
+            return new Money(multiplyDivide(minor, factor, pow10(shift), rounding), target);
+        }
+        return new Money(multiplyDivide(minor, Math.multiplyExact(factor, pow10(-shift)), 1, rounding), target);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minor, sameCurrency(other).minor);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+
+    private Money sameCurrency(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+        return other;
+    }
+
+    static long pow10(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    // a * b / divisor rounded with the given mode, falls back to BigInteger when a * b overflows
+    static long multiplyDivide(long a, long b, long divisor, RoundingMode rounding) {
+        final long high = Math.multiplyHigh(a, b);
+        final long low = a * b;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return divide(low, divisor, rounding);
+        }
+        return new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+                .divide(BigDecimal.valueOf(divisor), 0, rounding)
+                .longValueExact();
+    }
+
+    // numerator / divisor for a positive divisor, rounded with the given mode
+    static long divide(long numerator, long divisor, RoundingMode rounding) {
+        final long quotient = numerator / divisor;
+        final long remainder = numerator % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        final long away = numerator < 0 ? quotient - 1 : quotient + 1;
+        return switch (rounding) {
+            case DOWN -> quotient;
+            case UP -> away;
+            case FLOOR -> numerator < 0 ? away : quotient;
+            case CEILING -> numerator < 0 ? quotient : away;
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> {
+                // remainder is below 10^18, doubling it cannot overflow
+                final int half = Long.compare(Math.abs(remainder) * 2, divisor);
+                if (half > 0) {
+                    yield away;
+                } else if (half < 0) {
+                    yield quotient;
+                }
+                yield switch (rounding) {
+                    case HALF_UP -> away;
+                    case HALF_DOWN -> quotient;
+                    default -> (quotient & 1) == 0 ? quotient : away;
+                };
+            }
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+    }
+}
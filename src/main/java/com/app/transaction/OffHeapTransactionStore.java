@@ -0,0 +1,93 @@
+package com.app.transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+// Same columns as HeapTransactionStore kept in direct buffers, so history does not count
+// against the Java heap or get scanned by the garbage collector
+public final class OffHeapTransactionStore implements TransactionStore {
+
+    private static final Type[] TYPES = Type.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int MIN_CAPACITY = 8;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocateDirect(0);
+
+    private ByteBuffer ids = EMPTY;
+    private ByteBuffer amounts = EMPTY;
+    private ByteBuffer timestamps = EMPTY;
+    private ByteBuffer fxVersions = EMPTY;
+    // type ordinal and currency ordinal, two bytes per row
+    private ByteBuffer kinds = EMPTY;
+    private int capacity;
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void append(long id, Type type, Currency currency, long amount, long timestamp, int fxVersion) {
+        if (size == capacity) {
+            grow();
+        }
+        ids.putLong(size * Long.BYTES, id);
+        amounts.putLong(size * Long.BYTES, amount);
+        timestamps.putLong(size * Long.BYTES, timestamp);
+        fxVersions.putInt(size * Integer.BYTES, fxVersion);
+        kinds.put(2 * size, (byte) type.ordinal());
+        kinds.put(2 * size + 1, (byte) currency.ordinal());
+        size++;
+    }
+
+    @Override
+    public long id(int index) {
+        return ids.getLong(Objects.checkIndex(index, size) * Long.BYTES);
+    }
+
+    @Override
+    public Type type(int index) {
+        return TYPES[kinds.get(2 * Objects.checkIndex(index, size))];
+    }
+
+    @Override
+    public Currency currency(int index) {
+        return CURRENCIES[kinds.get(2 * Objects.checkIndex(index, size) + 1)];
+    }
+
+    @Override
+    public long amount(int index) {
+        return amounts.getLong(Objects.checkIndex(index, size) * Long.BYTES);
+    }
+
+    @Override
+    public long timestamp(int index) {
+        return timestamps.getLong(Objects.checkIndex(index, size) * Long.BYTES);
+    }
+
+    @Override
+    public int fxVersion(int index) {
+        return fxVersions.getInt(Objects.checkIndex(index, size) * Integer.BYTES);
+    }
+
+    @Override
+    public long retainedBytes() {
+        return (long) capacity * (3 * Long.BYTES + Integer.BYTES + 2);
+    }
+
+    private void grow() {
+        capacity = Math.max(MIN_CAPACITY, size + (size >> 1));
+        ids = resize(ids, capacity * Long.BYTES);
+        amounts = resize(amounts, capacity * Long.BYTES);
+        timestamps = resize(timestamps, capacity * Long.BYTES);
+        fxVersions = resize(fxVersions, capacity * Integer.BYTES);
+        kinds = resize(kinds, capacity * 2);
+    }
+
+    private static ByteBuffer resize(ByteBuffer buffer, int bytes) {
+        final var resized = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        resized.put(0, buffer, 0, buffer.capacity());
+        return resized;
+    }
+}
@@ -0,0 +1,122 @@
+package com.app.transaction;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Read-only view of an account's whole history, cold segments first and then the rows still in
+// memory. Segments are loaded through the loader only when a row in them is read. Used under the
+// account lock like the store it wraps.
+public final class TieredHistory implements TransactionStore {
+
+    private final List<ColdSegment> segments;
+    // index of each segment's first row
+    private final int[] starts;
+    private final int coldRows;
+    private final TransactionStore hot;
+    private final Function<ColdSegment, TransactionStore> loader;
+    // last segment read, rows are mostly read in runs
+    private int current = -1;
+    private TransactionStore currentRows;
+
+    public TieredHistory(List<ColdSegment> segments, TransactionStore hot,
+                         Function<ColdSegment, TransactionStore> loader) {
+        this.segments = segments;
+        this.hot = hot;
+        this.loader = loader;
+        starts = new int[segments.size()];
+        int rows = 0;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = rows;
+            rows = Math.addExact(rows, segments.get(i).count());
+        }
+        coldRows = rows;
+    }
+
+    @Override
+    public int size() {
+        return coldRows + hot.size();
+    }
+
+    @Override
+    public void append(long id, Type type, Currency currency, long amount, long timestamp, int fxVersion) {
+        throw new UnsupportedOperationException("History view is read-only");
+    }
+
+    @Override
+    public long id(int index) {
+        return index >= coldRows ? hot.id(index - coldRows) : cold(index).id(index - starts[current]);
+    }
+
+    @Override
+    public Type type(int index) {
+        return index >= coldRows ? hot.type(index - coldRows) : cold(index).type(index - starts[current]);
+    }
+
+    @Override
+    public Currency currency(int index) {
+        return index >= coldRows ? hot.currency(index - coldRows) : cold(index).currency(index - starts[current]);
+    }
+
+    @Override
+    public long amount(int index) {
+        return index >= coldRows ? hot.amount(index - coldRows) : cold(index).amount(index - starts[current]);
+    }
+
+    @Override
+    public long timestamp(int index) {
+        return index >= coldRows ? hot.timestamp(index - coldRows) : cold(index).timestamp(index - starts[current]);
+    }
+
+    @Override
+    public int fxVersion(int index) {
+        return index >= coldRows ? hot.fxVersion(index - coldRows) : cold(index).fxVersion(index - starts[current]);
+    }
+
+    @Override
+    public long retainedBytes() {
+        return hot.retainedBytes();
+    }
+
+    // The segment bounds narrow the search to one segment before anything is read from disk
+    @Override
+    public int lowerBound(long timestamp) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (segments.get(mid).lastTimestamp() < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == segments.size()) {
+            return coldRows + hot.lowerBound(timestamp);
+        }
+        if (segments.get(low).firstTimestamp() >= timestamp) {
+            return starts[low];
+        }
+        return starts[low] + loader.apply(segments.get(low)).lowerBound(timestamp);
+    }
+
+    private TransactionStore cold(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        if (current < 0 || index < starts[current] || index - starts[current] >= segments.get(current).count()) {
+            int low = 0;
+            int high = starts.length - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            currentRows = loader.apply(segments.get(low));
+            current = low;
+        }
+        return currentRows;
+    }
+}
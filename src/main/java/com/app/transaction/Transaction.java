@@ -5,18 +5,22 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Transaction {
     private String id;
     private String accountNo;
     private Type type;
-    private BigDecimal amount;
+    // in the account's base currency, currency below is the one the client used
+    private Money amount;
     private Currency currency;
     private LocalDateTime timestamp;
+    // 1-based position in the owning account's history
+    private long sequence;
+    // version of the FX rate table the amount was converted with
+    private int fxVersion;
 }
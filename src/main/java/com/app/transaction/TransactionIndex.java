@@ -0,0 +1,154 @@
+package com.app.transaction;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.function.LongUnaryOperator;
+
+// Compressed bitmap indexes over one account's postings, keyed by sequence so they stay valid when
+// rows move to cold segments. Each type and currency has a bitmap of the postings carrying it.
+// Absolute amounts are binned by their leading bits, four bins per power of two: an amount range is
+// the union of the bins strictly inside it, plus a check of the rows in the two bins at its ends.
+// Time needs no index, postings are already in time order. Guarded by the account lock.
+// Bitmaps are only created once a posting lands in them, so an account without postings holds two
+// short arrays of references. Each posting sets a bit in three bitmaps, two bytes apiece while they
+// are sparse and less once a run of 64K sequences fills up: at most about 6 bytes of heap per posting,
+// postings moved to disk included, which stay indexed so queries still reach them.
+public final class TransactionIndex {
+
+    // bins per power of two are 1 << SUB_BITS
+    private static final int SUB_BITS = 2;
+    private static final byte[] NO_BINS = new byte[0];
+    private static final RoaringBitmap[] NONE = new RoaringBitmap[0];
+
+    private final RoaringBitmap[] types = new RoaringBitmap[Type.values().length];
+    private final RoaringBitmap[] currencies = new RoaringBitmap[Currency.values().length];
+    // the bins in use in ascending order and their bitmaps, most accounts only ever touch a handful
+    private byte[] bins = NO_BINS;
+    private RoaringBitmap[] amounts = NONE;
+
+    // Postings arrive in sequence order, so every add appends to the end of its bitmaps
+    public void add(long sequence, Type type, Currency currency, long amount) {
+        final int position = position(sequence);
+        bitmap(types, type.ordinal()).add(position);
+        bitmap(currencies, currency.ordinal()).add(position);
+        final int bin = bin(abs(amount));
+        int slot = slot(bin);
+        if (slot < 0) {
+            slot = -slot - 1;
+            final var grownBins = new byte[bins.length + 1];
+            final var grownAmounts = new RoaringBitmap[amounts.length + 1];
+            System.arraycopy(bins, 0, grownBins, 0, slot);
+            System.arraycopy(amounts, 0, grownAmounts, 0, slot);
+            System.arraycopy(bins, slot, grownBins, slot + 1, bins.length - slot);
+            System.arraycopy(amounts, slot, grownAmounts, slot + 1, amounts.length - slot);
+            grownBins[slot] = (byte) bin;
+            grownAmounts[slot] = new RoaringBitmap();
+            bins = grownBins;
+            amounts = grownAmounts;
+        }
+        amounts[slot].add(position);
+    }
+
+    // Index every row of a store whose first row has the given sequence
+    public void addAll(TransactionStore rows, long firstSequence) {
+        for (int i = 0; i < rows.size(); i++) {
+            add(firstSequence + i, rows.type(i), rows.currency(i), rows.amount(i));
+        }
+    }
+
+    // Sequences in [fromSequence, toSequence) of the given type and currency, with an absolute amount
+    // in [minAmount, maxAmount]. A null type or currency matches everything. Rows in the end bins of
+    // the amount range are checked against amountOf, which maps a sequence to its amount.
+    public RoaringBitmap select(long fromSequence, long toSequence, Type type, Currency currency,
+                                long minAmount, long maxAmount, LongUnaryOperator amountOf) {
+        final var result = RoaringBitmap.bitmapOfRange(fromSequence, toSequence);
+        if (type != null) {
+            and(result, types[type.ordinal()]);
+        }
+        if (currency != null) {
+            and(result, currencies[currency.ordinal()]);
+        }
+        if (result.isEmpty() || (minAmount <= 0 && maxAmount == Long.MAX_VALUE)) {
+            return result;
+        }
+
+        final int low = bin(minAmount);
+        final int high = bin(maxAmount);
+        final var inner = new ArrayList<RoaringBitmap>();
+        final var edges = new RoaringBitmap();
+        for (int slot = 0; slot < bins.length; slot++) {
+            final int bin = Byte.toUnsignedInt(bins[slot]);
+            if (bin == low || bin == high) {
+                edges.or(RoaringBitmap.and(amounts[slot], result));
+            } else if (bin > low && bin < high) {
+                inner.add(amounts[slot]);
+            }
+        }
+        result.and(FastAggregation.or(inner.iterator()));
+        edges.forEach((int position) -> {
+            final long amount = abs(amountOf.applyAsLong(Integer.toUnsignedLong(position)));
+            if (amount >= minAmount && amount <= maxAmount) {
+                result.add(position);
+            }
+        });
+        return result;
+    }
+
+    // Positions are unsigned, enough for 2^32 - 1 postings per account
+    private static int position(long sequence) {
+        if (sequence < 0 || sequence > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Sequence " + sequence + " cannot be indexed");
+        }
+        return (int) sequence;
+    }
+
+    // Values below 4 get a bin each, above that the bin is the leading bit and the two bits after it
+    static int bin(long absAmount) {
+        if (absAmount < 1 << SUB_BITS) {
+            return (int) absAmount;
+        }
+        final int lead = Long.SIZE - 1 - Long.numberOfLeadingZeros(absAmount);
+        final int sub = (int) (absAmount >>> (lead - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return (lead << SUB_BITS) | sub;
+    }
+
+    private static long abs(long amount) {
+        return amount == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(amount);
+    }
+
+    // Slot of a bin in use, or -(insertion point) - 1 when it is not
+    private int slot(int bin) {
+        int low = 0;
+        int high = bins.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int value = Byte.toUnsignedInt(bins[mid]);
+            if (value < bin) {
+                low = mid + 1;
+            } else if (value > bin) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static RoaringBitmap bitmap(RoaringBitmap[] bitmaps, int index) {
+        if (bitmaps[index] == null) {
+            bitmaps[index] = new RoaringBitmap();
+        }
+        return bitmaps[index];
+    }
+
+    // A bitmap never created has no postings
+    private static void and(RoaringBitmap result, RoaringBitmap bitmap) {
+        if (bitmap == null) {
+            result.clear();
+        } else {
+            result.and(bitmap);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.app.transaction;
+
+// Column-oriented history of one account's postings. Amounts are minor units of the account's
+// base currency and timestamps are epoch micros. Not thread-safe, guarded by the account lock.
+public interface TransactionStore {
+
+    int size();
+
+    void append(long id, Type type, Currency currency, long amount, long timestamp, int fxVersion);
+
+    long id(int index);
+
+    Type type(int index);
+
+    Currency currency(int index);
+
+    long amount(int index);
+
+    long timestamp(int index);
+
+    int fxVersion(int index);
+
+    // bytes held for the columns, including unused capacity
+    long retainedBytes();
+
+    // First index whose timestamp is at or after the given one, size() if there is none.
+    // Timestamps never decrease within a store, so this is a binary search.
+    default int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (timestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Append the rows in [from, to) to another store
+    default void copyTo(int from, int to, TransactionStore target) {
+        for (int i = from; i < to; i++) {
+            target.append(id(i), type(i), currency(i), amount(i), timestamp(i), fxVersion(i));
+        }
+    }
+
+    static TransactionStore create(boolean offHeap) {
+        return offHeap ? new OffHeapTransactionStore() : new HeapTransactionStore();
+    }
+}
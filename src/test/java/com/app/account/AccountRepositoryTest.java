@@ -0,0 +1,78 @@
+package com.app.account;
+
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountRepositoryTest {
+
+    private final AccountRepository repository = new AccountRepository();
+
+    @Test
+    void accountsAreFoundByTheirNumber() {
+        final var account = repository.insert(account("1000000018"));
+        assertNotNull(account.getId());
+        assertSame(account, repository.findByAccountNo("1000000018").orElseThrow());
+        assertEquals(Optional.empty(), repository.findByAccountNo("1000000026"));
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void aNumberCanOnlyBeInsertedOnce() {
+        final var first = repository.insert(account("1000000018"));
+        assertThrows(LedgerExceptions.DuplicateAccountException.class, () -> repository.insert(account("1000000018")));
+        // the account already indexed is kept
+        assertSame(first, repository.findByAccountNo("1000000018").orElseThrow());
+        assertEquals(List.of(first), repository.findAll());
+    }
+
+    @Test
+    void deletedAccountsLeaveTheIndex() {
+        repository.insert(account("1000000018"));
+        final var kept = repository.insert(account("1000000026"));
+        assertTrue(repository.deleteByAccountNo("1000000018"));
+        assertFalse(repository.deleteByAccountNo("1000000018"));
+        assertEquals(Optional.empty(), repository.findByAccountNo("1000000018"));
+        assertEquals(List.of(kept), repository.streamAll().toList());
+        assertEquals(1, repository.count());
+
+        // the number is free again once removed
+        final var reopened = repository.insert(account("1000000018"));
+        assertSame(reopened, repository.findByAccountNo("1000000018").orElseThrow());
+    }
+
+    @Test
+    void accountsAreListedInNumberOrderFromAGivenNumber() {
+        for (var accountNo : List.of("1000000026", "1000000000", "1000000018", "1000000034")) {
+            repository.insert(account(accountNo));
+        }
+        assertEquals(List.of("1000000000", "1000000018", "1000000026", "1000000034"), numbers(repository.findFrom(null)));
+        assertEquals(List.of("1000000018", "1000000026", "1000000034"), numbers(repository.findFrom("1000000018")));
+        assertEquals(List.of("1000000026", "1000000034"), numbers(repository.findFrom("1000000019")));
+
+        repository.deleteByAccountNo("1000000026");
+        assertEquals(List.of("1000000034"), numbers(repository.findFrom("1000000019")));
+        // a new account under a deleted number takes its place
+        final var reopened = repository.insert(account("1000000026"));
+        assertSame(reopened, repository.findFrom("1000000026").iterator().next());
+    }
+
+    private static List<String> numbers(Collection<Account> accounts) {
+        return accounts.stream().map(Account::getAccountNo).toList();
+    }
+
+    private static Account account(String accountNo) {
+        return Account.builder().accountNo(accountNo).baseCcy(Currency.GBP).build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.app.account;
+
+import com.app.transaction.ColdSegment;
+import com.app.transaction.Currency;
+import com.app.transaction.HeapTransactionStore;
+import com.app.transaction.TransactionStore;
+import com.app.transaction.Type;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AccountTest {
+
+    private static final ColdSegment FIRST = new ColdSegment(Path.of("first"), 1, 2, 1, 2);
+    private static final ColdSegment SECOND = new ColdSegment(Path.of("second"), 3, 2, 3, 4);
+
+    @Test
+    void segmentsAreLoadedWithTheLockReleased() {
+        final var account = account();
+        final var loaded = new ArrayList<ColdSegment>();
+        final var ids = account.readHistory(segment -> {
+            // another thread gets the lock while the segment is read
+            CompletableFuture.runAsync(() -> {
+                account.lock();
+                account.unlock();
+            }).orTimeout(5, TimeUnit.SECONDS).join();
+            loaded.add(segment);
+            return rows(segment);
+        }, store -> {
+            final var read = new ArrayList<Long>();
+            for (int i = 0; i < store.size(); i++) {
+                read.add(store.id(i));
+            }
+            return read;
+        });
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids);
+        // each segment is read once however often the read starts over
+        assertEquals(List.of(FIRST, SECOND), loaded);
+    }
+
+    @Test
+    void segmentsInTheWantedRangeAreLoadedBeforeTheRead() {
+        final var account = account();
+        final var loaded = new ArrayList<ColdSegment>();
+        final long last = account.readHistory(3, Long.MAX_VALUE, segment -> {
+            loaded.add(segment);
+            return rows(segment);
+        }, store -> store.id(store.size() - 2));
+        assertEquals(4, last);
+        assertEquals(List.of(SECOND), loaded);
+    }
+
+    @Test
+    void aSegmentDeletedByACloseEndsTheRead() {
+        final var account = account();
+        final var read = account.readHistory(segment -> {
+            account.setClosed(true);
+            throw new UncheckedIOException(new NoSuchFileException(segment.path().toString()));
+        }, store -> account.isClosed() ? null : store.id(0));
+        assertNull(read);
+    }
+
+    private static Account account() {
+        final var account = Account.builder().accountNo("1000000018").baseCcy(Currency.GBP).build();
+        account.getTransactions().append(5, Type.DEPOSIT, Currency.GBP, 500, 5, 1);
+        account.setColdSegments(List.of(FIRST, SECOND));
+        return account;
+    }
+
+    private static TransactionStore rows(ColdSegment segment) {
+        final var rows = new HeapTransactionStore();
+        for (long sequence = segment.firstSequence(); sequence <= segment.lastSequence(); sequence++) {
+            rows.append(sequence, Type.DEPOSIT, Currency.GBP, sequence * 100, sequence, 1);
+        }
+        return rows;
+    }
+}
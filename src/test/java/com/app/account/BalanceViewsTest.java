@@ -0,0 +1,73 @@
+package com.app.account;
+
+import com.app.transaction.Currency;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceViewsTest {
+
+    private final BalanceViews views = new BalanceViews();
+    private int opened;
+
+    @Test
+    void publishedSnapshotsNeverChange() {
+        final var accounts = open(5000);
+        final var before = views.snapshot();
+
+        final var changed = accounts.get(4321);
+        changed.setBalance(100);
+        changed.setVersion(1);
+        views.publish(views.stage(changed));
+
+        final var after = views.snapshot();
+        assertEquals(0, before.get(changed.getViewSlot()).balance());
+        assertEquals(100, after.get(changed.getViewSlot()).balance());
+        assertEquals(before.version() + 1, after.version());
+        // untouched accounts are shared, not copied
+        assertTrue(before.get(17) == after.get(17));
+        assertEquals(5000, after.stream().count());
+        assertNull(after.get(5000));
+        assertNull(after.get(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void slotsOfClosedAccountsAreReused() {
+        final var accounts = open(100);
+        final var closed = accounts.subList(10, 20);
+        final var slots = closed.stream().map(Account::getViewSlot).toList();
+        final var beforeClosing = views.snapshot();
+        for (var account : closed) {
+            account.setClosed(true);
+        }
+        views.publish(views.stage(closed));
+        // staging a closed account again changes nothing
+        views.publish(views.stage(closed.getFirst()));
+        assertEquals(90, views.snapshot().size());
+        assertEquals(90, views.snapshot().stream().count());
+
+        final var reopened = open(15);
+        assertTrue(reopened.stream().map(Account::getViewSlot).toList().containsAll(slots));
+        assertEquals(105, views.snapshot().size());
+        assertEquals(105, views.snapshot().stream().count());
+        for (var account : reopened) {
+            assertEquals(account.getAccountNo(), views.snapshot().get(account.getViewSlot()).accountNo());
+        }
+        // an older snapshot still shows the closed accounts in those slots
+        assertEquals(closed.getFirst().getAccountNo(), beforeClosing.get(slots.getFirst()).accountNo());
+    }
+
+    private List<Account> open(int count) {
+        final var accounts = new ArrayList<Account>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(Account.builder().accountNo(Integer.toString(opened++)).baseCcy(Currency.GBP).build());
+        }
+        views.publish(views.stage(accounts));
+        return accounts;
+    }
+}
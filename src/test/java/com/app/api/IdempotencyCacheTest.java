@@ -0,0 +1,133 @@
+package com.app.api;
+
+import com.app.api.dto.BatchOperation;
+import com.app.ledger.exception.LedgerExceptions;
+import io.micronaut.http.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyCacheTest {
+
+    private static final Object[] ARGS = {"12345678", 10};
+
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        final var cache = new IdempotencyCache(config(100, Duration.ofMinutes(1)));
+        final var executions = new AtomicInteger();
+        final var release = new CountDownLatch(1);
+        final var pool = Executors.newFixedThreadPool(8);
+        try {
+            final var responses = new ArrayList<Future<HttpResponse<Integer>>>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(pool.submit(() -> cache.execute("key", "deposit", ARGS, () -> {
+                    await(release);
+                    return HttpResponse.ok(executions.incrementAndGet());
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (var response : responses) {
+                assertEquals(1, response.get().body());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+        assertEquals(7, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    void clientErrorsAreReplayedAndServerErrorsRetried() {
+        final var cache = new IdempotencyCache(config(100, Duration.ofMinutes(1)));
+        final var executions = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(LedgerExceptions.InsufficientFundsException.class, () -> cache.execute("a", "withdraw", ARGS, () -> {
+                executions.incrementAndGet();
+                throw new LedgerExceptions.InsufficientFundsException("12345678");
+            }));
+        }
+        assertEquals(1, executions.get());
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(LedgerExceptions.JournalUnavailableException.class, () -> cache.execute("b", "withdraw", ARGS, () -> {
+                executions.incrementAndGet();
+                throw new LedgerExceptions.JournalUnavailableException();
+            }));
+        }
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    void oldestKeysAreEvictedBySizeAndAge() throws Exception {
+        final var cache = new IdempotencyCache(config(2, Duration.ofMillis(50)));
+        for (var key : new String[]{"a", "b", "c"}) {
+            cache.execute(key, "deposit", ARGS, () -> HttpResponse.ok(key));
+        }
+        assertEquals(2, cache.stats().getSize());
+        assertEquals(1, cache.stats().getEvictions());
+
+        Thread.sleep(100);
+        cache.evictExpired();
+        assertEquals(0, cache.stats().getSize());
+        assertEquals(3, cache.stats().getEvictions());
+
+        // an evicted key runs again
+        final var response = cache.execute("a", "deposit", ARGS, () -> HttpResponse.ok("again"));
+        assertTrue(response.getHeaders().get(IdempotencyCache.REPLAYED_HEADER) == null);
+        assertEquals("again", response.body());
+    }
+
+    @Test
+    void requestsAreComparedByValueNotByHash() {
+        final var cache = new IdempotencyCache(config(100, Duration.ofMinutes(1)));
+        final var executions = new AtomicInteger();
+
+        // the same amount at another scale is the same request
+        cache.execute("a", "deposit", new Object[]{"12345678", new BigDecimal("10")}, () -> HttpResponse.ok(executions.incrementAndGet()));
+        final var replayed = cache.execute("a", "deposit", new Object[]{"12345678", new BigDecimal("10.00")},
+                () -> HttpResponse.ok(executions.incrementAndGet()));
+        assertEquals(1, replayed.body());
+        final var batch = List.of(BatchOperation.builder()
+                .type(BatchOperation.Kind.DEPOSIT).account("12345678").amount(new BigDecimal("1.50")).build());
+        final var sameBatch = List.of(BatchOperation.builder()
+                .type(BatchOperation.Kind.DEPOSIT).account("12345678").amount(new BigDecimal("1.5")).build());
+        cache.execute("b", "batch", new Object[]{batch, false}, () -> HttpResponse.ok(executions.incrementAndGet()));
+        assertEquals(2, cache.execute("b", "batch", new Object[]{sameBatch, false},
+                () -> HttpResponse.ok(executions.incrementAndGet())).body());
+
+        // "Aa" and "BB" share a hash code, the requests still differ
+        cache.execute("c", "deposit", new Object[]{"Aa", BigDecimal.TEN}, () -> HttpResponse.ok(executions.incrementAndGet()));
+        assertThrows(LedgerExceptions.IdempotencyKeyReusedException.class, () -> cache.execute("c", "deposit",
+                new Object[]{"BB", BigDecimal.TEN}, () -> HttpResponse.ok(executions.incrementAndGet())));
+        assertEquals(3, executions.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static IdempotencyConfig config(int maxEntries, Duration ttl) {
+        final var config = new IdempotencyConfig();
+        config.setMaxEntries(maxEntries);
+        config.setTtl(ttl);
+        return config;
+    }
+}
@@ -1,7 +1,9 @@
 package com.app.api;
 
 import com.app.api.dto.AccountBalance;
+import com.app.api.dto.TransactionDTO;
 import com.app.ledger.LedgerService;
+import com.app.ledger.exception.LedgerExceptions;
 import com.app.transaction.Currency;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import io.restassured.http.ContentType;
@@ -11,10 +13,14 @@ import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @MicronautTest
@@ -157,11 +163,13 @@ class LedgerApiTest {
         .then()
             .statusCode(HttpStatus.SC_OK)
             .body("statusCode", equalTo(200))
-            .body("message", equalTo("Deposit successful"));
+            .body("message", equalTo("Deposit successful"))
+            .body("data.id", notNullValue());
 
         // control value in repo
         final var account = ledgerService.getTransactionHistory(result.getAccountNo());
-        assertEquals(BigDecimal.valueOf(1000), account.getFirst().getAmount());
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(account.getFirst().getAmount()));
+        assertNotNull(account.getFirst().getId());
     }
 
     @Test
@@ -172,7 +180,7 @@ class LedgerApiTest {
 
         // verify deposit
         final var newAccountBalance = ledgerService.getAccountBalance(account.getAccountNo()).getBalance();
-        assertEquals(BigDecimal.valueOf(1000), newAccountBalance);
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(newAccountBalance));
 
         // call endpoint
         given
@@ -187,7 +195,7 @@ class LedgerApiTest {
             .body("message", equalTo("Withdrawal successful"));
 
         final var balanceAfterWithdrawal = ledgerService.getAccountBalance(account.getAccountNo()).getBalance();
-        assertEquals(BigDecimal.valueOf(500), balanceAfterWithdrawal);
+        assertEquals(0, BigDecimal.valueOf(500).compareTo(balanceAfterWithdrawal));
     }
 
     @Test
@@ -218,7 +226,392 @@ class LedgerApiTest {
         final var acc1Balance = ledgerService.getAccountBalance(resultAcc1.getAccountNo()).getBalance();
         final var acc2Balance = ledgerService.getAccountBalance(resultAcc2.getAccountNo()).getBalance();
 
-        assertEquals(BigDecimal.valueOf(0), acc1Balance);
-        assertEquals(BigDecimal.valueOf(2000), acc2Balance);
+        assertEquals(0, BigDecimal.valueOf(0).compareTo(acc1Balance));
+        assertEquals(0, BigDecimal.valueOf(2000).compareTo(acc2Balance));
+    }
+
+    @Test
+    void publishFxRates(RequestSpecification given) {
+        final var previous = ledgerService.getFxRates(null);
+        final var account = ledgerService.openNewAccount(Currency.GBP);
+
+        // publish a new GBP rate, other pairs keep their rate
+        final int version = given
+            .contentType(ContentType.JSON)
+            .body("{\"USD\": {\"GBP\": 0.5}}")
+        .when()
+            .put("/ledger/fx/rates")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("message", equalTo("FX rates successfully published"))
+            .body("data.version", equalTo(previous.version() + 1))
+            .body("data.rates.USD.GBP", equalTo(0.5f))
+            .extract()
+            .path("data.version");
+
+        // conversions use the new table and record its version
+        final var deposit = ledgerService.depositIntoAccount(account.getAccountNo(), BigDecimal.valueOf(100), Currency.USD);
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(deposit.getAmount()));
+        assertEquals(version, deposit.getFxVersion());
+
+        // rates must be positive
+        given
+            .contentType(ContentType.JSON)
+            .body("{\"USD\": {\"GBP\": -1}}")
+        .when()
+            .put("/ledger/fx/rates")
+        .then()
+            .statusCode(HttpStatus.SC_BAD_REQUEST);
+
+        // the table that was replaced stays available
+        given
+            .pathParam("version", previous.version())
+        .when()
+            .get("/ledger/fx/rates/{version}")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("data.version", equalTo(previous.version()));
+    }
+
+    @Test
+    void getTransactionHistoryPages(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        for (int i = 1; i <= 5; i++) {
+            ledgerService.depositIntoAccount(account, BigDecimal.valueOf(i), Currency.GBP);
+        }
+        final var history = ledgerService.getTransactionHistory(account);
+
+        // oldest first, two at a time
+        final var first = ledgerService.getTransactionHistory(account, null, null, null, 2, false);
+        assertEquals(List.of(1L, 2L), first.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+        final var second = ledgerService.getTransactionHistory(account, first.getNextCursor(), null, null, 2, false);
+        assertEquals(List.of(3L, 4L), second.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+        final var last = ledgerService.getTransactionHistory(account, second.getNextCursor(), null, null, 2, false);
+        assertEquals(List.of(5L), last.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+        assertNull(last.getNextCursor());
+
+        // newest first within [third, fifth) by timestamp
+        final var from = history.get(2).getTimestamp();
+        final var to = history.get(4).getTimestamp();
+        final var range = ledgerService.getTransactionHistory(account, null, from, to, 10, true);
+        final var expected = history.reversed().stream()
+                .filter(txn -> !txn.getTimestamp().isBefore(from) && txn.getTimestamp().isBefore(to))
+                .map(TransactionDTO::getSequence)
+                .toList();
+        assertEquals(expected, range.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+
+        given
+            .pathParam("account", account)
+            .queryParam("limit", 3)
+            .queryParam("order", "desc")
+        .when()
+            .get("/ledger/accounts/{account}/transactions")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("data.sequence", contains(5, 4, 3))
+            .body("nextCursor", equalTo("3"));
+    }
+
+    @Test
+    void streamTransactionHistory(RequestSpecification given) {
+        // more transactions than one streamed chunk
+        final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        for (int i = 0; i < 300; i++) {
+            ledgerService.depositIntoAccount(account, BigDecimal.ONE, Currency.GBP);
+        }
+
+        final List<Integer> sequences = given
+            .pathParam("account", account)
+            .queryParam("order", "desc")
+        .when()
+            .get("/ledger/accounts/{account}/transactions/stream")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("$", hasSize(300))
+            .extract()
+            .path("sequence");
+        assertEquals(300, sequences.getFirst());
+        assertEquals(1, sequences.getLast());
+    }
+
+    @Test
+    void streamAllAccountBalances(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.EUR).getAccountNo();
+
+        given
+        .when()
+            .get("/ledger/accounts/stream")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("accountNo", hasItem(account));
+    }
+
+    @Test
+    void batch(RequestSpecification given) {
+        final var acc1 = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var acc2 = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var body = """
+                [
+                  {"type": "DEPOSIT", "account": "%1$s", "amount": 100},
+                  {"type": "TRANSFER", "account": "%1$s", "toAccount": "%2$s", "amount": 60},
+                  {"type": "WITHDRAWAL", "account": "%1$s", "amount": 50},
+                  {"type": "WITHDRAWAL", "account": "%2$s", "amount": 10}
+                ]
+                """.formatted(acc1, acc2);
+
+        // the third operation overdraws, the others still apply
+        given
+            .contentType(ContentType.JSON)
+            .body(body)
+        .when()
+            .post("/ledger/batch")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("data.statusCode", contains(200, 200, 400, 200))
+            .body("data[1].transactions", hasSize(2));
+
+        assertEquals(0, BigDecimal.valueOf(40).compareTo(ledgerService.getAccountBalance(acc1).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(ledgerService.getAccountBalance(acc2).getBalance()));
+    }
+
+    @Test
+    void atomicBatchAppliesNothingOnFailure(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var body = """
+                [
+                  {"type": "DEPOSIT", "account": "%1$s", "amount": 100},
+                  {"type": "WITHDRAWAL", "account": "%1$s", "amount": 150}
+                ]
+                """.formatted(account);
+
+        given
+            .contentType(ContentType.JSON)
+            .queryParam("atomic", true)
+            .body(body)
+        .when()
+            .post("/ledger/batch")
+        .then()
+            .statusCode(HttpStatus.SC_BAD_REQUEST)
+            .body("message", startsWith("Batch rejected, operation 1 failed"));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(ledgerService.getAccountBalance(account).getBalance()));
+        assertTrue(ledgerService.getTransactionHistory(account).isEmpty());
+    }
+
+    @Test
+    void depositOverflowingOnceConvertedIsOutOfRange(RequestSpecification given) {
+        final var usd = ledgerService.openNewAccount(Currency.USD).getAccountNo();
+        final var other = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        // fits in GBP minor units, not once converted to USD at more than 1
+        final var amount = new BigDecimal("90000000000000000");
+        ledgerService.depositIntoAccount(other, amount, Currency.GBP);
+
+        // in a batch only the operations converting it fail, a deposit and a transfer
+        final var body = """
+                [
+                  {"type": "DEPOSIT", "account": "%1$s", "amount": %3$s, "currency": "GBP"},
+                  {"type": "TRANSFER", "account": "%2$s", "toAccount": "%1$s", "amount": %3$s},
+                  {"type": "DEPOSIT", "account": "%1$s", "amount": 1, "currency": "GBP"}
+                ]
+                """.formatted(usd, other, amount.toPlainString());
+        given
+            .contentType(ContentType.JSON)
+            .body(body)
+        .when()
+            .post("/ledger/batch")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("data.statusCode", contains(400, 400, 200))
+            .body("data[0].message", equalTo("Amount out of range for account no: " + usd));
+
+        given
+            .contentType(ContentType.JSON)
+            .pathParam("account", usd)
+            .queryParam("amount", amount)
+            .queryParam("currency", Currency.GBP)
+        .when()
+            .post("/ledger/accounts/{account}/deposit")
+        .then()
+            .statusCode(HttpStatus.SC_BAD_REQUEST)
+            .body("message", equalTo("Amount out of range for account no: " + usd));
+
+        assertEquals(0, new BigDecimal("1.41").compareTo(ledgerService.getAccountBalance(usd).getBalance()));
+        assertEquals(0, amount.compareTo(ledgerService.getAccountBalance(other).getBalance()));
+    }
+
+    @Test
+    void retriedDepositIsPostedOnce(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+
+        given
+            .contentType(ContentType.JSON)
+            .header("Idempotency-Key", java.util.UUID.randomUUID().toString())
+            .pathParam("account", account)
+            .queryParam("amount", BigDecimal.valueOf(25))
+            .queryParam("currency", Currency.GBP);
+
+        // a retry gets the first response back
+        for (int attempt = 0; attempt < 2; attempt++) {
+            given
+            .when()
+                .post("/ledger/accounts/{account}/deposit")
+            .then()
+                .statusCode(HttpStatus.SC_OK)
+                .body("data.sequence", equalTo(1));
+        }
+        assertEquals(1, ledgerService.getTransactionHistory(account).size());
+
+        // the same key cannot be used for a different request
+        given
+        .when()
+            .post("/ledger/accounts/{account}/withdrawal")
+        .then()
+            .statusCode(HttpStatus.SC_UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void unchangedBalanceIsNotModified(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        ledgerService.depositIntoAccount(account, BigDecimal.TEN, Currency.GBP);
+
+        final var etag = given
+            .pathParam("account", account)
+        .when()
+            .get("/ledger/accounts/{account}/balance")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .header("ETag", notNullValue())
+            .extract()
+            .header("ETag");
+
+        // polling with the tag costs a 304 until the next posting
+        given
+            .header("If-None-Match", etag)
+        .when()
+            .get("/ledger/accounts/{account}/balance")
+        .then()
+            .statusCode(HttpStatus.SC_NOT_MODIFIED)
+            .header("ETag", equalTo(etag));
+        given
+        .when()
+            .get("/ledger/accounts/{account}/transactions")
+        .then()
+            .statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+        ledgerService.depositIntoAccount(account, BigDecimal.ONE, Currency.GBP);
+        given
+        .when()
+            .get("/ledger/accounts/{account}/balance")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .header("ETag", not(equalTo(etag)))
+            .body("data.balance", equalTo(11.0f));
+    }
+
+    @Test
+    void unchangedLedgerIsNotModified(RequestSpecification given) {
+        ledgerService.openNewAccount(Currency.GBP);
+
+        final var etag = given
+            .get("/ledger/accounts")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .extract()
+            .header("ETag");
+
+        given
+            .header("If-None-Match", "\"stale\", " + etag)
+        .when()
+            .get("/ledger/accounts")
+        .then()
+            .statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+        ledgerService.openNewAccount(Currency.GBP);
+        given
+        .when()
+            .get("/ledger/accounts")
+        .then()
+            .statusCode(HttpStatus.SC_OK);
+    }
+
+    @Test
+    void summary(RequestSpecification given) {
+        // USD is posted to by no other test
+        final var account = ledgerService.openNewAccount(Currency.USD).getAccountNo();
+        ledgerService.depositIntoAccount(account, BigDecimal.valueOf(100), Currency.USD);
+        ledgerService.depositIntoAccount(account, BigDecimal.valueOf(50), Currency.USD);
+        ledgerService.withdrawFromAccount(account, BigDecimal.valueOf(30));
+
+        // summed over the days, in case the postings straddle midnight
+        given
+            .queryParam("from", LocalDateTime.now().minusDays(2).toString())
+            .queryParam("granularity", "day")
+        .when()
+            .get("/ledger/reports/summary")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("data.findAll { it.currency == 'USD' && it.type == 'DEPOSIT' }.sum { it.count }", equalTo(2))
+            .body("data.findAll { it.currency == 'USD' && it.type == 'DEPOSIT' }.sum { it.total }", equalTo(150.0f))
+            .body("data.findAll { it.currency == 'USD' && it.type == 'WITHDRAWAL' }.sum { it.total }", equalTo(-30.0f));
+
+        given
+            .queryParam("granularity", "week")
+        .when()
+            .get("/ledger/reports/summary")
+        .then()
+            .statusCode(HttpStatus.SC_BAD_REQUEST);
+    }
+
+    @Test
+    void queryTransactions(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        ledgerService.depositIntoAccount(account, BigDecimal.valueOf(500), Currency.GBP);
+        ledgerService.depositIntoAccount(account, BigDecimal.valueOf(20000), Currency.GBP);
+        ledgerService.withdrawFromAccount(account, BigDecimal.valueOf(15000));
+        ledgerService.withdrawFromAccount(account, BigDecimal.valueOf(50));
+        ledgerService.depositIntoAccount(account, BigDecimal.valueOf(10), Currency.EUR);
+
+        // amounts compare by absolute value
+        given
+            .queryParam("account", account)
+            .queryParam("type", "WITHDRAWAL")
+            .queryParam("minAmount", 10000)
+        .when()
+            .get("/ledger/transactions")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body("data.sequence", contains(3))
+            .body("data[0].amount", equalTo(-15000.0f))
+            .body("data[0].accountNo", equalTo(account));
+
+        final var eur = ledgerService.queryTransactions(account, null, Currency.EUR, null, null, null, null, null, 10);
+        assertEquals(List.of(5L), eur.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+
+        // pages follow the cursor and the last one has none
+        final var first = ledgerService.queryTransactions(account, null, Currency.GBP, new BigDecimal("50.00"),
+                BigDecimal.valueOf(20000), null, null, null, 2);
+        assertEquals(List.of(1L, 2L), first.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+        assertEquals(account + ":2", first.getNextCursor());
+        final var second = ledgerService.queryTransactions(account, null, Currency.GBP, new BigDecimal("50.00"),
+                BigDecimal.valueOf(20000), null, null, first.getNextCursor(), 2);
+        assertEquals(List.of(3L, 4L), second.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+        assertNull(second.getNextCursor());
+
+        assertThrows(LedgerExceptions.InvalidQueryRequestException.class, () -> ledgerService.queryTransactions(
+                account, null, null, BigDecimal.TEN, BigDecimal.ONE, null, null, null, 10));
+    }
+
+    @Test
+    void prometheusScrape(RequestSpecification given) {
+        final var account = ledgerService.openNewAccount(Currency.EUR).getAccountNo();
+        ledgerService.depositIntoAccount(account, BigDecimal.TEN, Currency.EUR);
+
+        given
+            .get("/prometheus")
+        .then()
+            .statusCode(HttpStatus.SC_OK)
+            .body(containsString("ledger_postings_total{currency=\"EUR\",type=\"DEPOSIT\"}"))
+            .body(containsString("ledger_operation_seconds_bucket"))
+            .body(containsString("ledger_journal_queue"));
     }
 }
@@ -0,0 +1,286 @@
+package com.app.journal;
+
+import com.app.account.AccountRepository;
+import com.app.api.dto.SummaryRow;
+import com.app.api.dto.TransactionDTO;
+import com.app.ledger.LedgerAggregates;
+import com.app.ledger.LedgerRecovery;
+import com.app.ledger.LedgerService;
+import com.app.ledger.LedgerSnapshotter;
+import com.app.ledger.LedgerTiering;
+import com.app.transaction.Currency;
+import com.app.transaction.Money;
+import com.app.transaction.Transaction;
+import com.app.transaction.Type;
+import io.micronaut.context.ApplicationContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReplayedInOrderAfterReopen() {
+        final var written = new ArrayList<JournalRecord>();
+        final var journal = open(config(64 * 1024), 0, new ArrayList<>());
+        final var futures = new ArrayList<CompletableFuture<Long>>();
+        for (int i = 0; i < 100; i++) {
+            final var record = posting("0000000" + (i % 10), i);
+            written.add(record);
+            futures.add(journal.append(record));
+        }
+        futures.forEach(CompletableFuture::join);
+        journal.close();
+
+        final var replayed = new ArrayList<JournalRecord>();
+        open(config(64 * 1024), 0, replayed).close();
+        assertEquals(written, replayed);
+    }
+
+    @Test
+    void rollsSegmentsAndSkipsRecordsUpToTheGivenLsn() throws Exception {
+        final var journal = open(config(512), 0, new ArrayList<>());
+        for (int i = 0; i < 50; i++) {
+            journal.append(posting("12345678", i)).join();
+        }
+        journal.close();
+        assertTrue(Journal.listSegments(directory).size() > 1);
+
+        final var replayed = new ArrayList<JournalRecord>();
+        final var reopened = open(config(512), 40, replayed);
+        assertEquals(10, replayed.size());
+        assertEquals(51L, reopened.append(posting("12345678", 50)).join());
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsTruncatedAndAppendsContinue() throws Exception {
+        final var journal = open(config(64 * 1024), 0, new ArrayList<>());
+        journal.append(new JournalRecord.AccountOpened("id", "12345678", Currency.EUR, true)).join();
+        journal.append(posting("12345678", 1)).join();
+        journal.close();
+
+        final var segment = Journal.listSegments(directory).getFirst();
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        final var replayed = new ArrayList<JournalRecord>();
+        final var reopened = open(config(64 * 1024), 0, replayed);
+        assertEquals(2, replayed.size());
+        assertEquals(3L, reopened.append(new JournalRecord.AccountClosed("12345678")).join());
+        reopened.close();
+    }
+
+    @Test
+    void ledgerSurvivesRestart() {
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.toString());
+
+        final String accountNo;
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            accountNo = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            ledger.depositIntoAccount(accountNo, BigDecimal.valueOf(100), Currency.GBP);
+            ledger.withdrawFromAccount(accountNo, BigDecimal.valueOf(30));
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            assertEquals(0, BigDecimal.valueOf(70).compareTo(ledger.getAccountBalance(accountNo).getBalance()));
+            assertEquals(2, ledger.getTransactionHistory(accountNo).size());
+        }
+    }
+
+    @Test
+    void restartLoadsSnapshotAndReplaysOnlyTheTail() throws Exception {
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.journal.segment-size", 256,
+                "ledger.snapshot.enabled", true,
+                "ledger.snapshot.directory", directory.resolve("snapshots").toString());
+
+        final String accountNo;
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            accountNo = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            for (int i = 0; i < 20; i++) {
+                ledger.depositIntoAccount(accountNo, BigDecimal.TEN, Currency.GBP);
+            }
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+            ledger.withdrawFromAccount(accountNo, BigDecimal.valueOf(50));
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            final var recovery = context.getBean(LedgerRecovery.class);
+            assertEquals(21, recovery.getSnapshotLsn());
+            assertEquals(1, recovery.getReplayedRecords());
+            assertEquals(0, BigDecimal.valueOf(150).compareTo(ledger.getAccountBalance(accountNo).getBalance()));
+            assertEquals(21, ledger.getTransactionHistory(accountNo).size());
+        }
+    }
+
+    @Test
+    void fxRateVersionsSurviveRestart() throws Exception {
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.snapshot.enabled", true,
+                "ledger.snapshot.directory", directory.resolve("snapshots").toString());
+
+        final String accountNo;
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            accountNo = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            ledger.publishFxRates(Map.of(Currency.USD, Map.of(Currency.GBP, new BigDecimal("0.5"))));
+            // version 1 comes back from the snapshot, version 2 from the journal tail
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+            ledger.publishFxRates(Map.of(Currency.USD, Map.of(Currency.GBP, new BigDecimal("0.25"))));
+            ledger.depositIntoAccount(accountNo, BigDecimal.valueOf(100), Currency.USD);
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            assertEquals(2, ledger.getFxRates(null).version());
+            assertEquals(0, new BigDecimal("0.5").compareTo(
+                    ledger.getFxRates(1).decimalRate(Currency.USD, Currency.GBP)));
+            final var deposit = ledger.getTransactionHistory(accountNo).getFirst();
+            assertEquals(2, deposit.getFxVersion());
+            assertEquals(0, BigDecimal.valueOf(25).compareTo(deposit.getAmount()));
+        }
+    }
+
+    @Test
+    void transferDebitedBeforeACrashIsCreditedOnRestart() {
+        // a debit journaled by the source shard, the process died before the credit
+        final var journal = open(config(64 * 1024), 0, new ArrayList<>());
+        journal.append(new JournalRecord.AccountOpened("a", "11111111", Currency.GBP, true));
+        journal.append(new JournalRecord.AccountOpened("b", "22222222", Currency.EUR, true));
+        journal.append(new JournalRecord.Posted(List.of(transaction("11111111", Type.DEPOSIT, 10_000, 1))));
+        journal.append(new JournalRecord.TransferDebited(
+                transaction("11111111", Type.TRANSFER_OUT, -4_000, 2),
+                transaction("22222222", Type.TRANSFER_IN, 4_500, 0))).join();
+        journal.close();
+
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.toString());
+        for (int restart = 0; restart < 2; restart++) {
+            try (var context = ApplicationContext.run(properties)) {
+                final var ledger = context.getBean(LedgerService.class);
+                assertEquals(0, BigDecimal.valueOf(60).compareTo(ledger.getAccountBalance("11111111").getBalance()));
+                assertEquals(0, BigDecimal.valueOf(45).compareTo(ledger.getAccountBalance("22222222").getBalance()));
+                // settled once, the second restart replays the credit instead of applying it again
+                assertEquals(1, ledger.getTransactionHistory("22222222").size());
+            }
+        }
+    }
+
+    private Journal open(JournalConfig config, long afterLsn, List<JournalRecord> replayed) {
+        final var journal = new Journal(config);
+        journal.open(afterLsn, (record, lsn) -> replayed.add(record));
+        return journal;
+    }
+
+    @Test
+    void historyMovedToDiskIsReadAcrossTiersAndSurvivesRestart() throws Exception {
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.snapshot.enabled", true,
+                "ledger.snapshot.directory", directory.resolve("snapshots").toString(),
+                "ledger.history.enabled", true,
+                "ledger.history.directory", directory.resolve("history").toString(),
+                "ledger.history.hot-rows", 4,
+                "ledger.history.segment-rows", 8);
+
+        final String accountNo;
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            accountNo = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            for (int i = 1; i <= 30; i++) {
+                ledger.depositIntoAccount(accountNo, BigDecimal.valueOf(i), Currency.GBP);
+            }
+
+            // 30 rows keep 6 in memory after three segments of 8
+            assertEquals(3, context.getBean(LedgerTiering.class).sweep());
+            final var account = context.getBean(AccountRepository.class).findByAccountNo(accountNo).orElseThrow();
+            assertEquals(6, account.getTransactions().size());
+            assertEquals(0, BigDecimal.valueOf(465).compareTo(ledger.getAccountBalance(accountNo).getBalance()));
+
+            final var page = ledger.getTransactionHistory(accountNo, "5", null, null, 20, false);
+            assertEquals(LongStream.rangeClosed(6, 25).boxed().toList(),
+                    page.getTransactions().stream().map(TransactionDTO::getSequence).toList());
+            assertEquals(0, BigDecimal.valueOf(6).compareTo(page.getTransactions().getFirst().getAmount()));
+
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+            ledger.depositIntoAccount(accountNo, BigDecimal.valueOf(31), Currency.GBP);
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            final var history = ledger.getTransactionHistory(accountNo);
+            assertEquals(LongStream.rangeClosed(1, 31).boxed().toList(),
+                    history.stream().map(TransactionDTO::getSequence).toList());
+            assertEquals(0, BigDecimal.valueOf(496).compareTo(ledger.getAccountBalance(accountNo).getBalance()));
+            // the aggregates count the rows on disk as well
+            assertEquals(31, ledger.getSummary(null, null, LedgerAggregates.Granularity.DAY).stream()
+                    .mapToLong(SummaryRow::getCount).sum());
+            // and so do the query indexes, amounts 3 to 5 and 29 to 31 sit in segments and in memory
+            final var matches = ledger.queryTransactions(accountNo, null, null, BigDecimal.valueOf(3),
+                    BigDecimal.valueOf(5), null, null, null, 10).getTransactions();
+            assertEquals(List.of(3L, 4L, 5L), matches.stream().map(TransactionDTO::getSequence).toList());
+            assertEquals(List.of(29L, 30L, 31L), ledger.queryTransactions(accountNo, null, null,
+                    BigDecimal.valueOf(29), null, null, null, null, 10).getTransactions().stream()
+                    .map(TransactionDTO::getSequence).toList());
+        }
+    }
+
+    private JournalConfig config(long segmentSize) {
+        final var config = new JournalConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentSize(segmentSize);
+        return config;
+    }
+
+    private static Transaction transaction(String accountNo, Type type, long minor, long sequence) {
+        final var currency = accountNo.startsWith("1") ? Currency.GBP : Currency.EUR;
+        return Transaction.builder()
+                .accountNo(accountNo)
+                .type(type)
+                .amount(Money.ofMinor(minor, currency))
+                .currency(Currency.GBP)
+                .timestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .sequence(sequence)
+                .build();
+    }
+
+    private static JournalRecord posting(String accountNo, int i) {
+        return new JournalRecord.Posted(List.of(Transaction.builder()
+                .accountNo(accountNo)
+                .type(Type.DEPOSIT)
+                .amount(Money.ofMinor(i, Currency.USD))
+                .currency(Currency.USD)
+                .timestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build()));
+    }
+}
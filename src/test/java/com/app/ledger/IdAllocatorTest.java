@@ -0,0 +1,186 @@
+package com.app.ledger;
+
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import io.micronaut.context.ApplicationContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdAllocatorTest {
+
+    private static final int THREADS = 4;
+    private static final int PER_THREAD = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentAllocationsAreUniqueAndTransactionIdsIncreasePerThread() throws Exception {
+        final var ids = new IdAllocator();
+        ids.node = 7;
+        final Set<Long> transactionIds = ConcurrentHashMap.newKeySet();
+        final Set<String> accountNos = ConcurrentHashMap.newKeySet();
+        final var pool = Executors.newFixedThreadPool(THREADS);
+        final var start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                long previous = 0;
+                for (int i = 0; i < PER_THREAD; i++) {
+                    final long id = ids.nextTransactionId();
+                    assertTrue(id > previous);
+                    assertEquals(7, id & 1023);
+                    previous = id;
+                    transactionIds.add(id);
+                    final var accountNo = ids.nextAccountNo();
+                    assertTrue(IdAllocator.isValidAccountNo(accountNo), accountNo);
+                    accountNos.add(accountNo);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (var future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(THREADS * PER_THREAD, transactionIds.size());
+        assertEquals(THREADS * PER_THREAD, accountNos.size());
+        final long now = System.currentTimeMillis();
+        assertTrue(Math.abs(now - IdAllocator.timestampOf(transactionIds.iterator().next())) < 60_000);
+    }
+
+    @Test
+    void recoveredIdsAreNeverHandedOutAgain() {
+        final var before = new IdAllocator();
+        final var issued = new HashSet<String>();
+        for (int i = 0; i < 1000; i++) {
+            issued.add(before.nextAccountNo());
+        }
+        final long future = before.nextTransactionId() + (1L << 40);
+
+        // a restarted allocator learns what was issued from recovery
+        final var after = new IdAllocator();
+        issued.forEach(after::observeAccountNo);
+        after.observeTransactionId(future);
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(issued.contains(after.nextAccountNo()));
+        }
+        assertTrue(after.nextTransactionId() > future);
+    }
+
+    @Test
+    void highWaterCoversIdsNoLongerRecovered() {
+        final var before = new IdAllocator();
+        final var kept = before.nextAccountNo();
+        // closed, so recovery never sees it
+        final var closed = before.nextAccountNo();
+        final long trimmed = before.nextTransactionId() + (1L << 40);
+        before.observeTransactionId(trimmed);
+
+        final var after = new IdAllocator();
+        after.observe(before.highWater());
+        after.observeAccountNo(kept);
+        for (int i = 0; i < 1000; i++) {
+            final var accountNo = after.nextAccountNo();
+            assertNotEquals(kept, accountNo);
+            assertNotEquals(closed, accountNo);
+        }
+        assertTrue(after.nextTransactionId() > trimmed);
+    }
+
+    @Test
+    void closedAccountNumbersAreNotReusedAfterASnapshotPrunesTheirRecords() throws Exception {
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.journal.segment-size", 1024,
+                "ledger.snapshot.enabled", true,
+                "ledger.snapshot.directory", directory.resolve("snapshots").toString());
+
+        final String kept;
+        final String closed;
+        final long lastTransactionId;
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            kept = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            // the newest account, nothing left in the snapshot or the journal numbers past it
+            closed = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            for (int i = 0; i < 20; i++) {
+                ledger.depositIntoAccount(kept, BigDecimal.ONE, Currency.GBP);
+            }
+            ledger.depositIntoAccount(closed, BigDecimal.ONE, Currency.GBP);
+            ledger.withdrawFromAccount(closed, BigDecimal.ONE);
+            lastTransactionId = Long.parseLong(ledger.getTransactionHistory(closed).getLast().getId());
+            ledger.deleteAccount(closed);
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            assertEquals(0, BigDecimal.valueOf(20).compareTo(ledger.getAccountBalance(kept).getBalance()));
+            assertThrows(LedgerExceptions.AccountNotFoundException.class, () -> ledger.getAccountBalance(closed));
+            for (int i = 0; i < 200; i++) {
+                assertNotEquals(closed, ledger.openNewAccount(Currency.GBP).getAccountNo());
+            }
+            assertTrue(context.getBean(IdAllocator.class).nextTransactionId() > lastTransactionId);
+        }
+    }
+
+    @Test
+    void importedNumbersDoNotMoveTheAllocator() throws Exception {
+        // Luhn-valid, and the number of the very last counter
+        final var foreign = "8844076938";
+        assertTrue(IdAllocator.isValidAccountNo(foreign));
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.bulk.directory", directory.resolve("bulk").toString());
+        Files.createDirectories(directory.resolve("bulk"));
+        Files.writeString(directory.resolve("bulk/foreign.csv"),
+                LedgerBulk.HEADER + "\n" + foreign + ",GBP,,,,,,\n");
+
+        try (var context = ApplicationContext.run(properties)) {
+            assertEquals(0, context.getBean(LedgerBulk.class).importCsv("foreign.csv").getRejected());
+            context.getBean(LedgerService.class).openNewAccount(Currency.GBP);
+        }
+        // nor does replaying its journal record
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            assertEquals(0, BigDecimal.ZERO.compareTo(ledger.getAccountBalance(foreign).getBalance()));
+            assertNotEquals(foreign, ledger.openNewAccount(Currency.GBP).getAccountNo());
+        }
+    }
+
+    @Test
+    void checkDigitCatchesATypo() {
+        final var accountNo = new IdAllocator().nextAccountNo();
+        final var typo = accountNo.substring(0, 3) + (char) ('0' + (accountNo.charAt(3) - '0' + 1) % 10)
+                + accountNo.substring(4);
+        assertTrue(IdAllocator.isValidAccountNo(accountNo));
+        assertFalse(IdAllocator.isValidAccountNo(typo));
+        assertFalse(IdAllocator.isValidAccountNo("12345678"));
+    }
+}
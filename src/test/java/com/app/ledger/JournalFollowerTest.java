@@ -0,0 +1,137 @@
+package com.app.ledger;
+
+import com.app.api.ReplicationLagFilter;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalFollowerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void followerServesReadsAndTakesOverFromAStoppedPrimary() throws Exception {
+        final Map<String, Object> primaryProperties = Map.of(
+                "micronaut.server.port", -1,
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.toString());
+        final var followerProperties = new HashMap<>(primaryProperties);
+        followerProperties.put("ledger.replication.role", "FOLLOWER");
+        followerProperties.put("ledger.replication.poll-interval", "10ms");
+
+        final var primary = ApplicationContext.run(EmbeddedServer.class, primaryProperties);
+        try (var follower = ApplicationContext.run(EmbeddedServer.class, followerProperties)) {
+            final var primaryLedger = primary.getApplicationContext().getBean(LedgerService.class);
+            final var followerLedger = follower.getApplicationContext().getBean(LedgerService.class);
+            final var replication = follower.getApplicationContext().getBean(JournalFollower.class);
+
+            final var accountNo = primaryLedger.openNewAccount(Currency.GBP).getAccountNo();
+            primaryLedger.depositIntoAccount(accountNo, BigDecimal.valueOf(100), Currency.GBP);
+            awaitBalance(followerLedger, accountNo, 100);
+
+            // reads report the lag, writes are refused
+            final var client = HttpClient.newHttpClient();
+            final var balance = client.send(HttpRequest.newBuilder(
+                            follower.getURI().resolve("/ledger/accounts/" + accountNo + "/balance")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, balance.statusCode());
+            assertTrue(balance.headers().firstValue(ReplicationLagFilter.HEADER).isPresent());
+            final var deposit = client.send(HttpRequest.newBuilder(follower.getURI().resolve(
+                            "/ledger/accounts/" + accountNo + "/deposit?amount=1&currency=GBP"))
+                            .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, deposit.statusCode());
+
+            // the primary still holds the journal
+            assertThrows(LedgerExceptions.PromotionFailedException.class, replication::promote);
+
+            primaryLedger.withdrawFromAccount(accountNo, BigDecimal.valueOf(30));
+            primary.close();
+
+            final var status = replication.promote();
+            assertEquals(ReplicationConfig.Role.PRIMARY, status.getRole());
+            assertEquals(0, BigDecimal.valueOf(70).compareTo(followerLedger.getAccountBalance(accountNo).getBalance()));
+            followerLedger.depositIntoAccount(accountNo, BigDecimal.TEN, Currency.GBP);
+            assertEquals(3, followerLedger.getTransactionHistory(accountNo).size());
+        } finally {
+            primary.close();
+        }
+    }
+
+    @Test
+    void followerStopsWhenRecordsItHasNotReadArePruned() throws Exception {
+        final Map<String, Object> primaryProperties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.journal.segment-size", 1024,
+                "ledger.snapshot.directory", directory.resolve("snapshots").toString());
+        final var followerProperties = new HashMap<>(primaryProperties);
+        followerProperties.put("ledger.replication.role", "FOLLOWER");
+        // only polled by the test
+        followerProperties.put("ledger.replication.poll-interval", "1h");
+
+        try (var primary = ApplicationContext.run(primaryProperties);
+             var follower = ApplicationContext.run(followerProperties)) {
+            final var primaryLedger = primary.getBean(LedgerService.class);
+            final var followerLedger = follower.getBean(LedgerService.class);
+            final var replication = follower.getBean(JournalFollower.class);
+
+            final var accountNo = primaryLedger.openNewAccount(Currency.GBP).getAccountNo();
+            primaryLedger.depositIntoAccount(accountNo, BigDecimal.ONE, Currency.GBP);
+            replication.poll();
+            assertEquals(0, BigDecimal.ONE.compareTo(followerLedger.getAccountBalance(accountNo).getBalance()));
+
+            // while the follower is paused the primary rolls through several segments, then a
+            // snapshot prunes every one of them but the open one
+            for (int i = 0; i < 50; i++) {
+                primaryLedger.depositIntoAccount(accountNo, BigDecimal.ONE, Currency.GBP);
+            }
+            primary.getBean(LedgerSnapshotter.class).takeSnapshot();
+            primaryLedger.depositIntoAccount(accountNo, BigDecimal.ONE, Currency.GBP);
+            replication.poll();
+
+            // what it applied is complete up to a point, nothing after the gap is applied
+            final var status = replication.status();
+            assertTrue(status.getError().contains("no longer in"), status.getError());
+            final var balance = followerLedger.getAccountBalance(accountNo).getBalance();
+            final var applied = followerLedger.getTransactionHistory(accountNo);
+            assertEquals(applied.size(), applied.getLast().getSequence());
+            assertEquals(0, BigDecimal.valueOf(applied.size()).compareTo(balance));
+            assertTrue(applied.size() < 52);
+            replication.poll();
+            assertEquals(applied.size(), followerLedger.getTransactionHistory(accountNo).size());
+            assertThrows(LedgerExceptions.PromotionFailedException.class, replication::promote);
+        }
+    }
+
+    private static void awaitBalance(LedgerService ledger, String accountNo, int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            try {
+                if (ledger.getAccountBalance(accountNo).getBalance().compareTo(BigDecimal.valueOf(expected)) == 0) {
+                    return;
+                }
+            } catch (LedgerExceptions.AccountNotFoundException e) {
+                // not replicated yet
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("follower did not catch up");
+    }
+}
@@ -0,0 +1,93 @@
+package com.app.ledger;
+
+import com.app.api.dto.SummaryRow;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import com.app.transaction.EpochMicros;
+import com.app.transaction.Type;
+import io.micronaut.context.ApplicationContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LedgerAggregatesTest {
+
+    private static final long HOUR = 3_600_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void summaryIsTheSameAfterARestart() throws Exception {
+        final Map<String, Object> properties = Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve("journal").toString(),
+                "ledger.journal.segment-size", 1024,
+                "ledger.snapshot.enabled", true,
+                "ledger.snapshot.directory", directory.resolve("snapshots").toString(),
+                // all but the last two postings of an account are trimmed from snapshots
+                "ledger.snapshot.history-limit", 2);
+
+        final List<SummaryRow> before;
+        try (var context = ApplicationContext.run(properties)) {
+            final var ledger = context.getBean(LedgerService.class);
+            final var kept = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            final var closed = ledger.openNewAccount(Currency.USD).getAccountNo();
+            for (int i = 0; i < 10; i++) {
+                ledger.depositIntoAccount(kept, BigDecimal.TEN, Currency.GBP);
+            }
+            ledger.depositIntoAccount(closed, new BigDecimal("12.50"), Currency.USD);
+            ledger.transferMoney(kept, closed, BigDecimal.ONE);
+            ledger.withdrawFromAccount(closed, ledger.getAccountBalance(closed).getBalance());
+            ledger.deleteAccount(closed);
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+            // left in the journal tail
+            ledger.withdrawFromAccount(kept, BigDecimal.ONE);
+            before = ledger.getSummary(null, null, LedgerAggregates.Granularity.HOUR);
+        }
+        assertFalse(before.isEmpty());
+
+        try (var context = ApplicationContext.run(properties)) {
+            assertEquals(before, context.getBean(LedgerService.class)
+                    .getSummary(null, null, LedgerAggregates.Granularity.HOUR));
+            // carried into the next snapshot along with the tail
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            assertEquals(before, context.getBean(LedgerService.class)
+                    .getSummary(null, null, LedgerAggregates.Granularity.HOUR));
+        }
+    }
+
+    @Test
+    void aDayBucketEndingAfterToIsReportedWhole() {
+        final var aggregates = new LedgerAggregates();
+        final long day = EpochMicros.of(LocalDateTime.of(2024, 3, 1, 0, 0));
+        aggregates.record(Type.DEPOSIT, Currency.GBP, 100, day + 2 * HOUR);
+        aggregates.record(Type.DEPOSIT, Currency.GBP, 250, day + 20 * HOUR);
+
+        final var rows = aggregates.summarize(day + 6 * HOUR, day + 12 * HOUR, LedgerAggregates.Granularity.DAY);
+        assertEquals(List.of(new LedgerAggregates.Row(day, Type.DEPOSIT, Currency.GBP, 2, 350)), rows);
+    }
+
+    @Test
+    void aTotalOutOfRangeIsAnInvalidReport() {
+        final var aggregates = new LedgerAggregates();
+        aggregates.record(Type.DEPOSIT, Currency.GBP, Long.MAX_VALUE, 0);
+        aggregates.record(Type.DEPOSIT, Currency.GBP, Long.MAX_VALUE, HOUR);
+
+        assertEquals(2, aggregates.summarize(0, 2 * HOUR, LedgerAggregates.Granularity.HOUR).size());
+        assertThrows(LedgerExceptions.InvalidReportRequestException.class,
+                () -> aggregates.summarize(0, 2 * HOUR, LedgerAggregates.Granularity.DAY));
+    }
+}
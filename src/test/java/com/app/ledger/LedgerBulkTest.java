@@ -0,0 +1,181 @@
+package com.app.ledger;
+
+import com.app.api.dto.AccountBalance;
+import com.app.api.dto.TransactionDTO;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import io.micronaut.context.ApplicationContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerBulkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void exportedLedgerImportsIntoAnotherAndSurvivesRestart() throws Exception {
+        final String gbp;
+        final String usd;
+        final String empty;
+        final List<TransactionDTO> history;
+        final List<AccountBalance> balances;
+        try (var context = ApplicationContext.run(properties("source"))) {
+            final var ledger = context.getBean(LedgerService.class);
+            gbp = ledger.openNewAccount(Currency.GBP).getAccountNo();
+            usd = ledger.openNewAccount(Currency.USD).getAccountNo();
+            empty = ledger.openNewAccount(Currency.EUR).getAccountNo();
+            for (int i = 1; i <= 100; i++) {
+                ledger.depositIntoAccount(gbp, BigDecimal.valueOf(i), Currency.EUR);
+            }
+            ledger.transferMoney(gbp, usd, new BigDecimal("99.99"));
+            ledger.withdrawFromAccount(usd, BigDecimal.TEN);
+            history = ledger.getTransactionHistory(gbp);
+            balances = ledger.getAllAccounts();
+
+            final var report = context.getBean(LedgerBulk.class).exportCsv("book.csv");
+            assertEquals(104, report.getRows());
+            assertEquals(Files.size(directory.resolve("bulk/book.csv")), report.getBytes());
+            // no part files are left behind
+            try (var files = Files.list(directory.resolve("bulk"))) {
+                assertEquals(List.of(directory.resolve("bulk/book.csv")), files.toList());
+            }
+        }
+
+        // a few bad lines after the exported ones, rejected without stopping the import
+        Files.writeString(directory.resolve("bulk/book.csv"), String.join("\n",
+                gbp + ",USD,,DEPOSIT,1,,2024-01-01T00:00,0",
+                usd + ",USD,,WITHDRAWAL,-1000000,,2024-01-01T00:00,0",
+                "not,enough,columns",
+                "../../escape,GBP,,,,,,",
+                ""), StandardOpenOption.APPEND);
+
+        final Map<String, Object> target = properties("target");
+        try (var context = ApplicationContext.run(target)) {
+            final var report = context.getBean(LedgerBulk.class).importCsv("book.csv");
+            assertEquals(108, report.getRows());
+            assertEquals(4, report.getRejected());
+            assertEquals(List.of(
+                    "line 106: account " + gbp + " is a GBP account",
+                    "line 107: would overdraw account " + usd,
+                    "line 108: expected 8 columns, got 3",
+                    "line 109: invalid account number ../../escape"), report.getErrors());
+
+            assertThrows(LedgerExceptions.InvalidBulkRequestException.class,
+                    () -> context.getBean(LedgerBulk.class).importCsv("../escape.csv"));
+        }
+
+        try (var context = ApplicationContext.run(target)) {
+            final var ledger = context.getBean(LedgerService.class);
+            assertEquals(history, ledger.getTransactionHistory(gbp));
+            assertEquals(Set.copyOf(balances), Set.copyOf(ledger.getAllAccounts()));
+            assertTrue(ledger.getAllAccounts().stream().map(AccountBalance::getAccountNo).toList().contains(empty));
+        }
+    }
+
+    @Test
+    void shardsApplyTheRowsOfTheirAccountsInFileOrder() throws Exception {
+        final var lines = new ArrayList<String>();
+        lines.add(LedgerBulk.HEADER);
+        for (int round = 0; round < 3; round++) {
+            for (int account = 0; account < 20; account++) {
+                final var accountNo = "ACC" + account;
+                lines.add(switch (round) {
+                    case 0 -> accountNo + ",GBP,,DEPOSIT,10,,2024-01-01T00:00,0";
+                    case 1 -> accountNo + ",GBP,,WITHDRAWAL,-4,,2024-01-01T01:00,0";
+                    // only 6 left
+                    default -> accountNo + ",GBP,,WITHDRAWAL,-7,,2024-01-01T02:00,0";
+                });
+            }
+        }
+        lines.add("BIG,GBP,,DEPOSIT,90000000000000000,,2024-01-01T00:00,0");
+        // past the largest balance once added, not an overdraft
+        lines.add("BIG,GBP,,DEPOSIT,10000000000000000,,2024-01-01T00:00,0");
+        Files.createDirectories(directory.resolve("bulk"));
+        Files.writeString(directory.resolve("bulk/sharded.csv"), String.join("\n", lines) + "\n");
+
+        final var properties = new HashMap<>(properties("sharded"));
+        properties.put("ledger.engine.mode", "SHARDED");
+        properties.put("ledger.engine.shards", 4);
+        try (var context = ApplicationContext.run(properties)) {
+            final var report = context.getBean(LedgerBulk.class).importCsv("sharded.csv");
+            assertEquals(62, report.getRows());
+            assertEquals(21, report.getRejected());
+            final var errors = new ArrayList<String>();
+            for (int account = 0; account < 20; account++) {
+                errors.add("line " + (42 + account) + ": would overdraw account ACC" + account);
+            }
+            errors.add("line 63: amount out of range for account BIG");
+            assertEquals(errors, report.getErrors());
+
+            final var ledger = context.getBean(LedgerService.class);
+            for (int account = 0; account < 20; account++) {
+                final var history = ledger.getTransactionHistory("ACC" + account);
+                assertEquals(List.of(1L, 2L), history.stream().map(TransactionDTO::getSequence).toList());
+                assertEquals(0, new BigDecimal("6").compareTo(ledger.getAccountBalance("ACC" + account).getBalance()));
+            }
+            assertEquals(0, new BigDecimal("90000000000000000").compareTo(ledger.getAccountBalance("BIG").getBalance()));
+        }
+    }
+
+    @Test
+    void reimportedRowsWithIdsAreRejected() throws Exception {
+        Files.createDirectories(directory.resolve("bulk"));
+        Files.writeString(directory.resolve("bulk/again.csv"), String.join("\n",
+                LedgerBulk.HEADER,
+                "ACC1,GBP,10,DEPOSIT,5,GBP,2024-01-01T00:00,0",
+                "ACC1,GBP,11,DEPOSIT,7,GBP,2024-01-01T01:00,0",
+                // no id, given a new one each time
+                "ACC1,GBP,,DEPOSIT,1,GBP,2024-01-01T02:00,0",
+                ""));
+
+        final var properties = new HashMap<>(properties("again"));
+        properties.put("ledger.snapshot.enabled", true);
+        properties.put("ledger.snapshot.directory", directory.resolve("snapshots").toString());
+        // the snapshot keeps only the newest posting, the newest id is kept apart from it
+        properties.put("ledger.snapshot.history-limit", 1);
+        try (var context = ApplicationContext.run(properties)) {
+            assertEquals(0, context.getBean(LedgerBulk.class).importCsv("again.csv").getRejected());
+            // older than the newest id in the account
+            Files.writeString(directory.resolve("bulk/older.csv"), String.join("\n",
+                    LedgerBulk.HEADER, "ACC1,GBP,9,DEPOSIT,3,GBP,2024-01-01T03:00,0", ""));
+            assertEquals(List.of("line 2: transaction 9 is not newer than the last one in account ACC1"),
+                    context.getBean(LedgerBulk.class).importCsv("older.csv").getErrors());
+            context.getBean(LedgerSnapshotter.class).takeSnapshot();
+        }
+
+        try (var context = ApplicationContext.run(properties)) {
+            final var report = context.getBean(LedgerBulk.class).importCsv("again.csv");
+            assertEquals(List.of(
+                    "line 2: transaction 10 is not newer than the last one in account ACC1",
+                    "line 3: transaction 11 is not newer than the last one in account ACC1"), report.getErrors());
+            final var ledger = context.getBean(LedgerService.class);
+            assertEquals(0, new BigDecimal("14").compareTo(ledger.getAccountBalance("ACC1").getBalance()));
+        }
+    }
+
+    // each ledger has its own journal, both share the bulk directory; small chunks and two threads
+    // make the import parse many chunks in parallel
+    private Map<String, Object> properties(String ledger) {
+        return Map.of(
+                "ledger.journal.enabled", true,
+                "ledger.journal.directory", directory.resolve(ledger).toString(),
+                "ledger.bulk.directory", directory.resolve("bulk").toString(),
+                "ledger.bulk.chunk-size", 512,
+                "ledger.bulk.parallelism", 2);
+    }
+}
@@ -0,0 +1,80 @@
+package com.app.ledger;
+
+import com.app.account.AccountRepository;
+import com.app.api.dto.Discrepancy;
+import com.app.transaction.Currency;
+import com.app.transaction.Money;
+import com.app.transaction.Transaction;
+import com.app.transaction.Type;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@MicronautTest
+@Property(name = "ledger.reconciliation.grace", value = "0s")
+@Property(name = "ledger.reconciliation.parallelism", value = "4")
+class LedgerReconcilerTest {
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    LedgerReconciler reconciler;
+
+    @Inject
+    AccountRepository accountRepository;
+
+    @Test
+    void transfersPairAcrossCurrenciesAndDiscrepanciesAreReported() {
+        final var gbp = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var otherGbp = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var usd = ledgerService.openNewAccount(Currency.USD).getAccountNo();
+        final var eur = ledgerService.openNewAccount(Currency.EUR).getAccountNo();
+        ledgerService.depositIntoAccount(gbp, BigDecimal.valueOf(1000), Currency.GBP);
+        ledgerService.transferMoney(gbp, usd, new BigDecimal("123.45"));
+        ledgerService.transferMoney(usd, eur, new BigDecimal("50.01"));
+        ledgerService.transferMoney(gbp, otherGbp, BigDecimal.TEN);
+
+        final var clean = reconciler.reconcile(true);
+        assertEquals(0, clean.getDiscrepancyCount(), clean.getDiscrepancies().toString());
+        assertEquals(3, clean.getTransfersMatched());
+        assertEquals(4, clean.getAccountsChecked());
+
+        // a credit no debit accounts for, only its account changed since the checkpoint
+        final var account = accountRepository.findByAccountNo(otherGbp).orElseThrow();
+        account.lock();
+        try {
+            account.post(Transaction.builder()
+                    .accountNo(otherGbp)
+                    .type(Type.TRANSFER_IN)
+                    .amount(Money.ofMinor(500, Currency.GBP))
+                    .currency(Currency.GBP)
+                    .timestamp(LocalDateTime.now().minusMinutes(1))
+                    .build());
+        } finally {
+            account.unlock();
+        }
+        final var incremental = reconciler.reconcile(false);
+        assertEquals(1, incremental.getAccountsChecked());
+        assertEquals(3, incremental.getAccountsUnchanged());
+        assertEquals(List.of(Discrepancy.Kind.UNMATCHED_TRANSFER_IN),
+                incremental.getDiscrepancies().stream().map(Discrepancy::getKind).toList());
+        assertEquals(0, new BigDecimal("5.00").compareTo(incremental.getTransferImbalance().get(Currency.GBP)));
+
+        // a balance that drifted from its postings is only seen by a full run, as nothing was posted
+        final var drifted = accountRepository.findByAccountNo(eur).orElseThrow();
+        drifted.setBalance(drifted.getBalance() + 1);
+        assertEquals(1, reconciler.reconcile(false).getDiscrepancyCount());
+        final var full = reconciler.reconcile(true);
+        assertEquals(List.of(Discrepancy.Kind.BALANCE, Discrepancy.Kind.UNMATCHED_TRANSFER_IN),
+                full.getDiscrepancies().stream().map(Discrepancy::getKind).toList());
+        assertEquals(eur, full.getDiscrepancies().getFirst().getAccountNo());
+    }
+}
@@ -0,0 +1,134 @@
+package com.app.ledger;
+
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+class LedgerServiceConcurrencyTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Test
+    void concurrentTransfersAndWithdrawalsNeverOverdrawAndConserveMoney() throws Exception {
+        // create and fund accounts
+        final List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+            ledgerService.depositIntoAccount(account, BigDecimal.valueOf(1000), Currency.GBP);
+            accounts.add(account);
+        }
+
+        // hammer the accounts with opposing transfers and withdrawals
+        final var withdrawn = new AtomicReference<>(BigDecimal.ZERO);
+        final var pool = Executors.newFixedThreadPool(THREADS);
+        final var start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                final var random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    final var from = accounts.get(random.nextInt(ACCOUNTS));
+                    final var to = accounts.get(random.nextInt(ACCOUNTS));
+                    final var amount = BigDecimal.valueOf(random.nextInt(1, 60));
+                    try {
+                        if (random.nextInt(10) == 0) {
+                            ledgerService.withdrawFromAccount(from, amount);
+                            withdrawn.accumulateAndGet(amount, BigDecimal::add);
+                        } else {
+                            ledgerService.transferMoney(from, to, amount);
+                        }
+                    } catch (LedgerExceptions.InsufficientFundsException ignored) {
+                        // expected once an account runs dry
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (var future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // no account is overdrawn and the total only moved by the withdrawals
+        var total = BigDecimal.ZERO;
+        for (var account : accounts) {
+            final var balance = ledgerService.getAccountBalance(account).getBalance();
+            assertTrue(balance.compareTo(BigDecimal.ZERO) >= 0, "overdrawn: " + account);
+            total = total.add(balance);
+        }
+        assertEquals(0, BigDecimal.valueOf(1000L * ACCOUNTS).subtract(withdrawn.get()).compareTo(total));
+    }
+
+    @Test
+    void everyListingSeesTheTotalAsOfOnePointInTime() throws Exception {
+        final List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+            ledgerService.depositIntoAccount(account, BigDecimal.valueOf(1000), Currency.GBP);
+            accounts.add(account);
+        }
+        final var expected = BigDecimal.valueOf(1000L * ACCOUNTS);
+        final var ours = Set.copyOf(accounts);
+
+        final var pool = Executors.newFixedThreadPool(THREADS);
+        final var writing = new CountDownLatch(THREADS - 1);
+        final List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS - 1; t++) {
+            writers.add(pool.submit(() -> {
+                final var random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        try {
+                            ledgerService.transferMoney(accounts.get(random.nextInt(ACCOUNTS)),
+                                    accounts.get(random.nextInt(ACCOUNTS)), BigDecimal.valueOf(random.nextInt(1, 60)));
+                        } catch (LedgerExceptions.InsufficientFundsException ignored) {
+                            // expected once an account runs dry
+                        }
+                    }
+                } finally {
+                    writing.countDown();
+                }
+                return null;
+            }));
+        }
+
+        // a listing taken mid-transfer would show the debit without the credit
+        final var reader = pool.submit(() -> {
+            int listings = 0;
+            do {
+                final var total = ledgerService.getAllAccounts().stream()
+                        .filter(balance -> ours.contains(balance.getAccountNo()))
+                        .map(balance -> balance.getBalance())
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                assertEquals(0, expected.compareTo(total), "listing " + listings);
+                listings++;
+            } while (writing.getCount() > 0);
+            return listings;
+        });
+        for (var future : writers) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+        pool.shutdown();
+    }
+}
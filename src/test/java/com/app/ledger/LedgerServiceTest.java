@@ -0,0 +1,125 @@
+package com.app.ledger;
+
+import com.app.api.dto.BatchOperation;
+import com.app.api.dto.TransactionDTO;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Balances are read from the running balance only, never recomputed, so they are checked here
+// against the sum of the postings instead
+@MicronautTest
+@Property(name = "ledger.verify-balances", value = "false")
+class LedgerServiceTest {
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Test
+    void runningBalanceIsTheSumOfThePostings() {
+        final var gbp = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var otherGbp = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var usd = ledgerService.openNewAccount(Currency.USD).getAccountNo();
+
+        ledgerService.depositIntoAccount(gbp, new BigDecimal("100.00"), Currency.GBP);
+        ledgerService.depositIntoAccount(gbp, new BigDecimal("20.5"), Currency.EUR);
+        ledgerService.withdrawFromAccount(gbp, new BigDecimal("0.01"));
+        ledgerService.transferMoney(gbp, otherGbp, new BigDecimal("30"));
+        ledgerService.transferMoney(gbp, usd, new BigDecimal("12.34"));
+        ledgerService.transferMoney(usd, otherGbp, new BigDecimal("1.01"));
+        ledgerService.postBatch(List.of(
+                operation(BatchOperation.Kind.DEPOSIT, otherGbp, null, "5"),
+                operation(BatchOperation.Kind.TRANSFER, otherGbp, gbp, "2.5"),
+                operation(BatchOperation.Kind.WITHDRAWAL, usd, null, "0.5")), true);
+
+        for (var account : List.of(gbp, otherGbp, usd)) {
+            assertBalanceIsSumOfPostings(account);
+        }
+    }
+
+    @Test
+    void rejectedOperationsLeaveBalancesUnchanged() {
+        final var gbp = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var other = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        ledgerService.depositIntoAccount(gbp, new BigDecimal("10"), Currency.GBP);
+
+        assertThrows(LedgerExceptions.InsufficientFundsException.class,
+                () -> ledgerService.withdrawFromAccount(gbp, new BigDecimal("10.01")));
+        assertThrows(LedgerExceptions.InsufficientFundsException.class,
+                () -> ledgerService.transferMoney(gbp, other, new BigDecimal("10.01")));
+        assertThrows(LedgerExceptions.InvalidAmountException.class,
+                () -> ledgerService.depositIntoAccount(gbp, new BigDecimal("-1"), Currency.GBP));
+        assertThrows(LedgerExceptions.InvalidAmountException.class,
+                () -> ledgerService.withdrawFromAccount(gbp, new BigDecimal("0.001")));
+        assertThrows(LedgerExceptions.AccountNotFoundException.class,
+                () -> ledgerService.transferMoney(gbp, "0000000000", BigDecimal.ONE));
+        // the second operation fails, so the first is not applied either
+        assertThrows(LedgerExceptions.BatchRejectedException.class, () -> ledgerService.postBatch(List.of(
+                operation(BatchOperation.Kind.TRANSFER, gbp, other, "5"),
+                operation(BatchOperation.Kind.WITHDRAWAL, gbp, null, "5.01")), true));
+        // the largest balance is Long.MAX_VALUE minor units, a deposit past it is refused whole
+        ledgerService.depositIntoAccount(other, new BigDecimal("90000000000000000"), Currency.GBP);
+        assertThrows(LedgerExceptions.AmountOutOfRangeException.class,
+                () -> ledgerService.depositIntoAccount(other, new BigDecimal("10000000000000000"), Currency.GBP));
+
+        assertEquals(0, new BigDecimal("10").compareTo(ledgerService.getAccountBalance(gbp).getBalance()));
+        assertEquals(0, new BigDecimal("90000000000000000").compareTo(ledgerService.getAccountBalance(other).getBalance()));
+        assertBalanceIsSumOfPostings(gbp);
+        assertBalanceIsSumOfPostings(other);
+    }
+
+    @Test
+    void eachOperationIsTimedOnce() {
+        final var from = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final var to = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        final long deposits = timed("deposit");
+        final long withdrawals = timed("withdrawal");
+        final long transfers = timed("transfer");
+
+        ledgerService.depositIntoAccount(from, BigDecimal.TEN, Currency.GBP);
+        ledgerService.withdrawFromAccount(from, BigDecimal.ONE);
+        ledgerService.transferMoney(from, to, BigDecimal.ONE);
+        ledgerService.depositIntoAccountAsync(from, BigDecimal.TEN, Currency.GBP).join();
+
+        assertEquals(deposits + 2, timed("deposit"));
+        assertEquals(withdrawals + 1, timed("withdrawal"));
+        assertEquals(transfers + 1, timed("transfer"));
+    }
+
+    private void assertBalanceIsSumOfPostings(String accountNo) {
+        final var sum = ledgerService.getTransactionHistory(accountNo).stream()
+                .map(TransactionDTO::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, sum.compareTo(ledgerService.getAccountBalance(accountNo).getBalance()), accountNo);
+    }
+
+    private long timed(String operation) {
+        // one timer per exception tag, failures from other tests included
+        return registry.find("ledger.operation").tag("operation", operation).timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    private static BatchOperation operation(BatchOperation.Kind type, String account, String toAccount, String amount) {
+        return BatchOperation.builder()
+                .type(type)
+                .account(account)
+                .toAccount(toAccount)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.app.ledger;
+
+import com.app.api.dto.BatchItemResult;
+import com.app.api.dto.BatchOperation;
+import com.app.ledger.exception.LedgerExceptions;
+import com.app.transaction.Currency;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+@Property(name = "ledger.engine.mode", value = "SHARDED")
+@Property(name = "ledger.engine.shards", value = "4")
+@Property(name = "ledger.reconciliation.grace", value = "0s")
+class ShardedLedgerTest {
+
+    private static final int ACCOUNTS = 16;
+    private static final int OPERATIONS = 20_000;
+
+    @Inject
+    LedgerService ledgerService;
+
+    @Inject
+    LedgerShards shards;
+
+    @Inject
+    LedgerReconciler reconciler;
+
+    @Test
+    void transfersAcrossShardsNeverOverdrawAndConserveMoney() throws Exception {
+        assertTrue(shards.isEnabled());
+        final List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final var account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+            ledgerService.depositIntoAccount(account, BigDecimal.valueOf(1000), Currency.GBP);
+            accounts.add(account);
+        }
+
+        // everything is submitted without waiting, the shards run it concurrently
+        final var random = new Random(42);
+        final var results = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final var from = accounts.get(random.nextInt(ACCOUNTS));
+            final var to = accounts.get(random.nextInt(ACCOUNTS));
+            results.add(ledgerService.transferMoneyAsync(from, to, BigDecimal.valueOf(random.nextInt(1, 200)))
+                    .exceptionally(e -> {
+                        // only insufficient funds, or a full queue, are acceptable failures
+                        assertTrue(e.getCause() instanceof LedgerExceptions.InsufficientFundsException
+                                || e.getCause() instanceof LedgerExceptions.LedgerBusyException, e.toString());
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+
+        var total = BigDecimal.ZERO;
+        for (var account : accounts) {
+            final var balance = ledgerService.getAccountBalance(account).getBalance();
+            assertTrue(balance.signum() >= 0, "overdrawn: " + account);
+            total = total.add(balance);
+        }
+        assertEquals(0, BigDecimal.valueOf(1000L * ACCOUNTS).compareTo(total));
+
+        // every debit settled on another shard pairs with its credit
+        final var report = reconciler.reconcile(true);
+        assertEquals(0, report.getDiscrepancyCount(), report.getDiscrepancies().toString());
+        assertEquals(0, report.getTransfersAwaiting());
+    }
+
+    @Test
+    void creditToAnAccountClosedMeanwhileIsRefunded() throws Exception {
+        // accounts on different shards, so the credit is settled apart from the debit
+        final var from = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        String account;
+        do {
+            account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        } while (shards.sameShard(from, account));
+        final var to = account;
+        ledgerService.depositIntoAccount(from, BigDecimal.valueOf(100), Currency.GBP);
+
+        // hold the destination's shard so the account can be closed between debit and credit
+        final var release = new CountDownLatch(1);
+        shards.submit(to, () -> {
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        final var transfer = ledgerService.transferMoneyAsync(from, to, BigDecimal.valueOf(100));
+        while (ledgerService.getAccountBalance(from).getBalance().signum() > 0) {
+            Thread.onSpinWait();
+        }
+        // emptied by the debit, but still owed the credit or its refund
+        assertThrows(LedgerExceptions.TransferInFlightException.class, () -> ledgerService.deleteAccount(from));
+        ledgerService.deleteAccount(to);
+        release.countDown();
+
+        final var failure = assertThrows(ExecutionException.class, () -> transfer.get(10, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof LedgerExceptions.AccountNotFoundException);
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(ledgerService.getAccountBalance(from).getBalance()));
+        assertEquals(3, ledgerService.getTransactionHistory(from).size());
+    }
+
+    @Test
+    void batchesRunOnTheShardsOwningTheirAccounts() {
+        final var from = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        String account;
+        do {
+            account = ledgerService.openNewAccount(Currency.GBP).getAccountNo();
+        } while (shards.sameShard(from, account));
+        final var to = account;
+
+        // one shard, applied whole
+        final var sameShard = ledgerService.postBatch(List.of(
+                operation(BatchOperation.Kind.DEPOSIT, from, null, "100"),
+                operation(BatchOperation.Kind.WITHDRAWAL, from, null, "30")), true);
+        assertEquals(List.of(200, 200), sameShard.stream().map(BatchItemResult::getStatusCode).toList());
+
+        // an atomic batch cannot span shards
+        assertThrows(LedgerExceptions.InvalidBatchOperationException.class, () -> ledgerService.postBatch(List.of(
+                operation(BatchOperation.Kind.TRANSFER, from, to, "10")), true));
+
+        // one operation at a time otherwise, each seeing the balances left by the ones before
+        final var results = ledgerService.postBatch(List.of(
+                operation(BatchOperation.Kind.TRANSFER, from, to, "50"),
+                operation(BatchOperation.Kind.WITHDRAWAL, to, null, "20"),
+                operation(BatchOperation.Kind.TRANSFER, from, to, "50")), false);
+        assertEquals(List.of(200, 200, 400), results.stream().map(BatchItemResult::getStatusCode).toList());
+        assertEquals(0, BigDecimal.valueOf(20).compareTo(ledgerService.getAccountBalance(from).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(30).compareTo(ledgerService.getAccountBalance(to).getBalance()));
+    }
+
+    private static BatchOperation operation(BatchOperation.Kind type, String account, String toAccount, String amount) {
+        return BatchOperation.builder()
+                .type(type)
+                .account(account)
+                .toAccount(toAccount)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.app.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void amountsMustFitTheCurrencyScale() {
+        assertEquals(1234, Money.of(new BigDecimal("12.34"), Currency.GBP).minor());
+        assertEquals(1200, Money.of(new BigDecimal("12"), Currency.GBP).minor());
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("12.345"), Currency.GBP));
+    }
+
+    @Test
+    void conversionAppliesTheRequestedRounding() {
+        // 0.05 GBP at 1.5 = 0.075 USD
+        final var amount = Money.ofMinor(5, Currency.GBP);
+        final long rate = 150_000_000L;
+
+        assertEquals(8, amount.convert(Currency.USD, rate, FxRate.RATE_SCALE, RoundingMode.HALF_EVEN).minor());
+        assertEquals(7, amount.convert(Currency.USD, rate, FxRate.RATE_SCALE, RoundingMode.DOWN).minor());
+        assertEquals(-8, amount.negate().convert(Currency.USD, rate, FxRate.RATE_SCALE, RoundingMode.HALF_UP).minor());
+        assertEquals(-7, amount.negate().convert(Currency.USD, rate, FxRate.RATE_SCALE, RoundingMode.CEILING).minor());
+    }
+
+    @Test
+    void arithmeticRejectsOverflowAndMixedCurrencies() {
+        final var max = Money.ofMinor(Long.MAX_VALUE, Currency.EUR);
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1, Currency.EUR)));
+        assertThrows(IllegalArgumentException.class, () -> max.plus(Money.ofMinor(1, Currency.GBP)));
+    }
+
+    @Test
+    void conversionRejectsResultsPastTheLargestAmount() {
+        // 9 * 10^18 minor units fit, times 1.414 they do not
+        final var large = Money.ofMinor(9_000_000_000_000_000_000L, Currency.GBP);
+        final long rate = 141_400_000L;
+        assertThrows(ArithmeticException.class,
+                () -> large.convert(Currency.USD, rate, FxRate.RATE_SCALE, RoundingMode.HALF_EVEN));
+        // at a rate below 1 the same amount converts
+        assertEquals(4_500_000_000_000_000_000L,
+                large.convert(Currency.USD, 50_000_000L, FxRate.RATE_SCALE, RoundingMode.HALF_EVEN).minor());
+    }
+}
@@ -0,0 +1,79 @@
+package com.app.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionIndexTest {
+
+    @Test
+    void selectionMatchesAScanOfTheRows() {
+        final var random = new Random(42);
+        final var rows = new HeapTransactionStore();
+        final var index = new TransactionIndex();
+        final var types = Type.values();
+        final var currencies = Currency.values();
+        for (int i = 0; i < 5000; i++) {
+            final var type = types[random.nextInt(types.length)];
+            final long magnitude = random.nextLong(1, 1_000_000);
+            final long amount = type == Type.WITHDRAWAL || type == Type.TRANSFER_OUT ? -magnitude : magnitude;
+            rows.append(i + 1, type, currencies[random.nextInt(currencies.length)], amount, i, 0);
+        }
+        // sequences start at 1
+        index.addAll(rows, 1);
+
+        for (int query = 0; query < 200; query++) {
+            final var type = random.nextBoolean() ? types[random.nextInt(types.length)] : null;
+            final var currency = random.nextBoolean() ? currencies[random.nextInt(currencies.length)] : null;
+            final long a = random.nextLong(0, 1_100_000);
+            final long b = random.nextLong(0, 1_100_000);
+            final long from = random.nextLong(1, 5001);
+            final long to = random.nextLong(from, 5002);
+
+            final List<Long> expected = new ArrayList<>();
+            for (long sequence = from; sequence < to; sequence++) {
+                final int i = (int) (sequence - 1);
+                final long magnitude = Math.abs(rows.amount(i));
+                if ((type == null || rows.type(i) == type) && (currency == null || rows.currency(i) == currency)
+                        && magnitude >= Math.min(a, b) && magnitude <= Math.max(a, b)) {
+                    expected.add(sequence);
+                }
+            }
+            final List<Long> actual = new ArrayList<>();
+            index.select(from, to, type, currency, Math.min(a, b), Math.max(a, b),
+                    sequence -> rows.amount((int) (sequence - 1)))
+                    .forEach((int position) -> actual.add(Integer.toUnsignedLong(position)));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void binsFollowTheOrderOfAmounts() {
+        int previous = 0;
+        for (long amount = 0; amount < 100_000; amount++) {
+            final int bin = TransactionIndex.bin(amount);
+            assertTrue(bin >= previous);
+            previous = bin;
+        }
+        assertTrue(TransactionIndex.bin(Long.MAX_VALUE) < Long.SIZE * 4);
+    }
+
+    @Test
+    void valuesNeverPostedMatchNothing() {
+        final var index = new TransactionIndex();
+        assertEquals(9, index.select(1, 10, null, null, 0, Long.MAX_VALUE, sequence -> 0).getCardinality());
+        index.add(1, Type.DEPOSIT, Currency.GBP, 500);
+        index.add(2, Type.DEPOSIT, Currency.GBP, 5);
+
+        assertTrue(index.select(1, 3, Type.WITHDRAWAL, null, 0, Long.MAX_VALUE, sequence -> 0).isEmpty());
+        assertTrue(index.select(1, 3, null, Currency.USD, 0, Long.MAX_VALUE, sequence -> 0).isEmpty());
+        assertTrue(index.select(1, 3, null, null, 1000, 2000, sequence -> 0).isEmpty());
+        assertEquals(List.of(1), index.select(1, 3, Type.DEPOSIT, Currency.GBP, 100, 1000,
+                sequence -> sequence == 1 ? 500 : 5).stream().boxed().toList());
+    }
+}